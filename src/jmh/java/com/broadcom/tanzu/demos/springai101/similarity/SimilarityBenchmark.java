@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.similarity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare similarity kernels with naive loops.
+ * <p>
+ * Dimensions are the ones used in this app: 384 (local embedding model),
+ * 1536 (<code>text-embedding-3-small</code>) and 3072 (<code>text-embedding-3-large</code>).
+ * Batched benchmarks score a query against as many vectors as there are movies in the dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SimilarityBenchmark {
+    @Param({"384", "1536", "3072"})
+    int dimensions;
+
+    @Param("1000")
+    int count;
+
+    private float[] query;
+    private float[] vector;
+    private float[] vectors;
+    private byte[] int8Query;
+    private byte[] int8Vectors;
+    private long[] binaryQuery;
+    private long[] binaryVectors;
+    private float[] scores;
+    private int[] intScores;
+
+    @Setup
+    public void setup() {
+        final var random = new Random(42);
+        query = new float[dimensions];
+        vectors = new float[dimensions * count];
+        int8Query = new byte[dimensions];
+        int8Vectors = new byte[dimensions * count];
+        binaryQuery = new long[(dimensions + 63) / 64];
+        binaryVectors = new long[binaryQuery.length * count];
+        for (int i = 0; i < query.length; ++i) {
+            query[i] = (float) random.nextGaussian();
+            int8Query[i] = (byte) (random.nextInt(255) - 127);
+        }
+        for (int i = 0; i < vectors.length; ++i) {
+            vectors[i] = (float) random.nextGaussian();
+            int8Vectors[i] = (byte) (random.nextInt(255) - 127);
+        }
+        for (int i = 0; i < binaryQuery.length; ++i) {
+            binaryQuery[i] = random.nextLong();
+        }
+        for (int i = 0; i < binaryVectors.length; ++i) {
+            binaryVectors[i] = random.nextLong();
+        }
+        vector = Arrays.copyOf(vectors, dimensions);
+        scores = new float[count];
+        intScores = new int[count];
+    }
+
+    @Benchmark
+    public float dotNaive() {
+        float sum = 0;
+        for (int i = 0; i < dimensions; ++i) {
+            sum += query[i] * vectors[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float dot() {
+        return VectorSimilarity.dot(query, 0, vectors, 0, dimensions);
+    }
+
+    @Benchmark
+    public double cosineNaive() {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < dimensions; ++i) {
+            dot += query[i] * vector[i];
+            na += query[i] * query[i];
+            nb += vector[i] * vector[i];
+        }
+        return na == 0 || nb == 0 ? 0 : dot / Math.sqrt(na * nb);
+    }
+
+    @Benchmark
+    public float cosine() {
+        return VectorSimilarity.cosine(query, vector);
+    }
+
+    @Benchmark
+    public int int8DotNaive() {
+        int sum = 0;
+        for (int i = 0; i < dimensions; ++i) {
+            sum += int8Query[i] * int8Vectors[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int int8Dot() {
+        return VectorSimilarity.dot(int8Query, 0, int8Vectors, 0, dimensions);
+    }
+
+    @Benchmark
+    public int hammingNaive() {
+        int distance = 0;
+        for (int i = 0; i < binaryQuery.length; ++i) {
+            distance += Long.bitCount(binaryQuery[i] ^ binaryVectors[i]);
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int hamming() {
+        return VectorSimilarity.hamming(binaryQuery, 0, binaryVectors, 0, binaryQuery.length);
+    }
+
+    @Benchmark
+    public float[] dotManyNaive() {
+        for (int n = 0; n < count; ++n) {
+            final int offset = n * dimensions;
+            float sum = 0;
+            for (int i = 0; i < dimensions; ++i) {
+                sum += query[i] * vectors[offset + i];
+            }
+            scores[n] = sum;
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public float[] dotMany() {
+        VectorSimilarity.dotMany(query, vectors, 0, count, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public float[] asymmetricInt8DotManyNaive() {
+        for (int n = 0; n < count; ++n) {
+            final int offset = n * dimensions;
+            float sum = 0;
+            for (int i = 0; i < dimensions; ++i) {
+                sum += query[i] * int8Vectors[offset + i];
+            }
+            scores[n] = sum;
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public float[] asymmetricInt8DotMany() {
+        VectorSimilarity.dotMany(query, int8Vectors, 0, count, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public int[] int8DotManyNaive() {
+        for (int n = 0; n < count; ++n) {
+            final int offset = n * dimensions;
+            int sum = 0;
+            for (int i = 0; i < dimensions; ++i) {
+                sum += int8Query[i] * int8Vectors[offset + i];
+            }
+            intScores[n] = sum;
+        }
+        return intScores;
+    }
+
+    @Benchmark
+    public int[] int8DotMany() {
+        VectorSimilarity.dotMany(int8Query, int8Vectors, 0, count, intScores);
+        return intScores;
+    }
+
+    @Benchmark
+    public int[] hammingManyNaive() {
+        final int length = binaryQuery.length;
+        for (int n = 0; n < count; ++n) {
+            final int offset = n * length;
+            int distance = 0;
+            for (int i = 0; i < length; ++i) {
+                distance += Long.bitCount(binaryQuery[i] ^ binaryVectors[offset + i]);
+            }
+            intScores[n] = distance;
+        }
+        return intScores;
+    }
+
+    @Benchmark
+    public int[] hammingMany() {
+        VectorSimilarity.hammingMany(binaryQuery, binaryVectors, 0, count, intScores);
+        return intScores;
+    }
+}
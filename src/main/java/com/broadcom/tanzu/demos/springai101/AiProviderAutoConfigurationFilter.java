@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101;
+
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.AutoConfigurationMetadata;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+import java.util.Map;
+
+/**
+ * Skip auto-configurations for AI providers which are not in use.
+ * <p>
+ * This app embeds many AI provider starters: only auto-configurations for the provider
+ * set with <code>app.ai-provider</code> are evaluated, which saves time on startup.
+ * Other auto-configurations are filtered out before any condition is evaluated.
+ */
+public class AiProviderAutoConfigurationFilter implements AutoConfigurationImportFilter, EnvironmentAware {
+    private static final Map<String, String> PROVIDER_PACKAGES = Map.of(
+            "openai", "org.springframework.ai.autoconfigure.openai.",
+            "mistralai", "org.springframework.ai.autoconfigure.mistralai.",
+            "ollama", "org.springframework.ai.autoconfigure.ollama.",
+            "azure", "org.springframework.ai.autoconfigure.azure.openai."
+    );
+    private String aiProvider;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.aiProvider = environment.getProperty("app.ai-provider");
+    }
+
+    @Override
+    public boolean[] match(String[] autoConfigurationClasses, AutoConfigurationMetadata autoConfigurationMetadata) {
+        final var matches = new boolean[autoConfigurationClasses.length];
+        for (int i = 0; i < autoConfigurationClasses.length; ++i) {
+            matches[i] = autoConfigurationClasses[i] == null || !isUnusedProvider(autoConfigurationClasses[i]);
+        }
+        return matches;
+    }
+
+    private boolean isUnusedProvider(String autoConfigurationClass) {
+        if (aiProvider == null || !PROVIDER_PACKAGES.containsKey(aiProvider)) {
+            // Unknown provider: keep everything.
+            return false;
+        }
+        for (final var e : PROVIDER_PACKAGES.entrySet()) {
+            if (!e.getKey().equals(aiProvider) && autoConfigurationClass.startsWith(e.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -16,28 +16,32 @@
 
 package com.broadcom.tanzu.demos.springai101;
 
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
+import com.broadcom.tanzu.demos.springai101.usage.EmbeddingUsageMeter;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.azure.openai.AzureOpenAiChatModel;
 import org.springframework.ai.azure.openai.AzureOpenAiEmbeddingModel;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
 @Configuration(proxyBeanMethods = false)
-@EnableAutoConfiguration()
 @ConditionalOnProperty(name = "app.ai-provider", havingValue = "azure")
 class AzureOpenAIConfig {
     @Bean
-    ChatClient.Builder chatClientBuilder(AzureOpenAiChatModel openAiChatModel) {
-        return ChatClient.builder(openAiChatModel);
+    ChatClient.Builder chatClientBuilder(AzureOpenAiChatModel openAiChatModel, TokenUsageAdvisor tokenUsageAdvisor,
+                                         CircuitBreakers circuitBreakers) {
+        return ChatClient.builder(circuitBreakers.wrap(openAiChatModel)).defaultAdvisors(tokenUsageAdvisor);
     }
 
     @Bean
     @Primary
-    EmbeddingModel embeddingModel(AzureOpenAiEmbeddingModel openAiEmbeddingModel) {
-        return openAiEmbeddingModel;
+    @ConditionalOnProperty(name = "app.embedding.local.enabled", havingValue = "false", matchIfMissing = true)
+    EmbeddingModel embeddingModel(AzureOpenAiEmbeddingModel openAiEmbeddingModel, CircuitBreakers circuitBreakers,
+                                  EmbeddingUsageMeter embeddingUsageMeter) {
+        return embeddingUsageMeter.wrap(circuitBreakers.wrap(openAiEmbeddingModel));
     }
 }
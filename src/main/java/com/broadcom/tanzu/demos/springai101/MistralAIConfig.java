@@ -16,47 +16,62 @@
 
 package com.broadcom.tanzu.demos.springai101;
 
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
+import com.broadcom.tanzu.demos.springai101.usage.EmbeddingUsageMeter;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import io.github.bucket4j.Bucket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.mistralai.MistralAiChatModel;
 import org.springframework.ai.mistralai.MistralAiEmbeddingModel;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 
 @Configuration(proxyBeanMethods = false)
 @ConditionalOnProperty(name = "app.ai-provider", havingValue = "mistralai")
-@EnableAutoConfiguration(excludeName = "org.springframework.ai.autoconfigure.azure.openai.AzureOpenAiAutoConfiguration")
 class MistralAIConfig {
     private final Logger logger = LoggerFactory.getLogger(MistralAIConfig.class);
+    private final Bucket bucket;
+
+    MistralAIConfig(@Value("${app.mistralai.rps}") int rps) {
+        // The same rate limiter is shared by blocking and streaming requests.
+        this.bucket = Bucket.builder()
+                .addLimit(limit -> limit.capacity(rps).refillGreedy(rps, Duration.ofMillis(1500)))
+                .build();
+    }
 
     @Bean
-    ChatClient.Builder chatClientBuilder(MistralAiChatModel mistralAiChatModel) {
-        return ChatClient.builder(mistralAiChatModel);
+    ChatClient.Builder chatClientBuilder(MistralAiChatModel mistralAiChatModel, TokenUsageAdvisor tokenUsageAdvisor,
+                                         CircuitBreakers circuitBreakers) {
+        return ChatClient.builder(circuitBreakers.wrap(rateLimited(mistralAiChatModel))).defaultAdvisors(tokenUsageAdvisor);
     }
 
     @Bean
     @Primary
-    EmbeddingModel embeddingModel(MistralAiEmbeddingModel mistralAiEmbeddingModel) {
-        return mistralAiEmbeddingModel;
+    @ConditionalOnProperty(name = "app.embedding.local.enabled", havingValue = "false", matchIfMissing = true)
+    EmbeddingModel embeddingModel(MistralAiEmbeddingModel mistralAiEmbeddingModel, CircuitBreakers circuitBreakers,
+                                  EmbeddingUsageMeter embeddingUsageMeter) {
+        return embeddingUsageMeter.wrap(circuitBreakers.wrap(mistralAiEmbeddingModel));
     }
 
     @Bean
-    RestClientCustomizer apiRateLimiter(@Value("${app.mistralai.rps}") int rps) {
+    RestClientCustomizer apiRateLimiter() {
         // Mistral AI client has no built-in API rate limiter.
         // Let's bring our own implementation.
-        final var bucket = Bucket.builder()
-                .addLimit(limit -> limit.capacity(rps).refillGreedy(rps, Duration.ofMillis(1500)))
-                .build();
         return restClientBuilder -> {
             restClientBuilder.requestInitializer(request -> {
                 try {
@@ -68,4 +83,35 @@ class MistralAIConfig {
             });
         };
     }
+
+    private ChatModel rateLimited(ChatModel delegate) {
+        // Mistral AI streams responses with its own WebClient instance (no customizer is applied):
+        // streaming requests are rate limited here instead.
+        // Blocking is not allowed when streaming: a token is reserved, and the request
+        // is delayed until this token is available.
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                // Blocking requests are rate limited by the RestClient customizer.
+                return delegate.call(prompt);
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.defer(() -> {
+                    final long delayNanos = bucket.consumeIgnoringRateLimits(1);
+                    if (delayNanos == 0) {
+                        return delegate.stream(prompt);
+                    }
+                    logger.trace("Delaying request by {} ms", delayNanos / 1_000_000);
+                    return Mono.delay(Duration.ofNanos(delayNanos)).thenMany(Flux.defer(() -> delegate.stream(prompt)));
+                });
+            }
+
+            @Override
+            public ChatOptions getDefaultOptions() {
+                return delegate.getDefaultOptions();
+            }
+        };
+    }
 }
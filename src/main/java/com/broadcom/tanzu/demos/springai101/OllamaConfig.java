@@ -16,11 +16,13 @@
 
 package com.broadcom.tanzu.demos.springai101;
 
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
+import com.broadcom.tanzu.demos.springai101.usage.EmbeddingUsageMeter;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,16 +30,18 @@ import org.springframework.context.annotation.Primary;
 
 @Configuration(proxyBeanMethods = false)
 @ConditionalOnProperty(name = "app.ai-provider", havingValue = "ollama")
-@EnableAutoConfiguration(excludeName = "org.springframework.ai.autoconfigure.azure.openai.AzureOpenAiAutoConfiguration")
 class OllamaConfig {
     @Bean
-    ChatClient.Builder chatClientBuilder(OllamaChatModel ollamaChatModel) {
-        return ChatClient.builder(ollamaChatModel);
+    ChatClient.Builder chatClientBuilder(OllamaChatModel ollamaChatModel, TokenUsageAdvisor tokenUsageAdvisor,
+                                         CircuitBreakers circuitBreakers) {
+        return ChatClient.builder(circuitBreakers.wrap(ollamaChatModel)).defaultAdvisors(tokenUsageAdvisor);
     }
 
     @Bean
     @Primary
-    EmbeddingModel embeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel) {
-        return ollamaEmbeddingModel;
+    @ConditionalOnProperty(name = "app.embedding.local.enabled", havingValue = "false", matchIfMissing = true)
+    EmbeddingModel embeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel, CircuitBreakers circuitBreakers,
+                                  EmbeddingUsageMeter embeddingUsageMeter) {
+        return embeddingUsageMeter.wrap(circuitBreakers.wrap(ollamaEmbeddingModel));
     }
 }
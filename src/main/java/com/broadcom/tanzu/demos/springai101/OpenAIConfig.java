@@ -16,35 +16,41 @@
 
 package com.broadcom.tanzu.demos.springai101;
 
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
+import com.broadcom.tanzu.demos.springai101.usage.EmbeddingUsageMeter;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.image.ImageModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
 import org.springframework.ai.openai.OpenAiImageModel;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
 
 @Configuration(proxyBeanMethods = false)
 @ConditionalOnProperty(name = "app.ai-provider", havingValue = "openai")
-@EnableAutoConfiguration(excludeName = "org.springframework.ai.autoconfigure.azure.openai.AzureOpenAiAutoConfiguration")
 class OpenAIConfig {
     @Bean
-    ChatClient.Builder chatClientBuilder(OpenAiChatModel openAiChatModel) {
-        return ChatClient.builder(openAiChatModel);
+    ChatClient.Builder chatClientBuilder(OpenAiChatModel openAiChatModel, TokenUsageAdvisor tokenUsageAdvisor,
+                                         CircuitBreakers circuitBreakers) {
+        return ChatClient.builder(circuitBreakers.wrap(openAiChatModel)).defaultAdvisors(tokenUsageAdvisor);
     }
 
     @Bean
-    ImageModel imageModel(OpenAiImageModel openAiImageModel) {
-        return openAiImageModel;
+    @Lazy
+    ImageModel imageModel(OpenAiImageModel openAiImageModel, CircuitBreakers circuitBreakers) {
+        return circuitBreakers.wrap(openAiImageModel);
     }
 
     @Bean
     @Primary
-    EmbeddingModel embeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel) {
-        return openAiEmbeddingModel;
+    @ConditionalOnProperty(name = "app.embedding.local.enabled", havingValue = "false", matchIfMissing = true)
+    EmbeddingModel embeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel, CircuitBreakers circuitBreakers,
+                                  EmbeddingUsageMeter embeddingUsageMeter) {
+        return embeddingUsageMeter.wrap(circuitBreakers.wrap(openAiEmbeddingModel));
     }
 }
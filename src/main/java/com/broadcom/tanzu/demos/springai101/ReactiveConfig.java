@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.client.ReactorResourceFactory;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Configuration for the reactive web stack (enabled with the Spring profile <code>reactive</code>).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveConfig implements WebFluxConfigurer {
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        // Controllers which are not reactive (such as image generation) run on virtual threads,
+        // keeping event loop threads available for reactive endpoints.
+        final var executor = new SimpleAsyncTaskExecutor("blocking-");
+        executor.setVirtualThreads(true);
+        configurer.setExecutor(executor);
+    }
+
+    @Bean
+    ReactorResourceFactory reactorResourceFactory(@Value("${app.reactive.max-connections}") int maxConnections) {
+        // Every streamed response holds an HTTP connection to the AI provider until it is complete:
+        // the default connection pool is too small for thousands of concurrent streams.
+        final var factory = new ReactorResourceFactory();
+        factory.setUseGlobalResources(false);
+        factory.setConnectionProviderSupplier(() -> ConnectionProvider.builder("http")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build());
+        return factory;
+    }
+}
@@ -16,10 +16,10 @@
 
 package com.broadcom.tanzu.demos.springai101;
 
+import com.broadcom.tanzu.demos.springai101.deadline.DeadlineAwareClientHttpRequestFactory;
 import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
 import java.time.Duration;
 
@@ -28,9 +28,10 @@ class RestClientConfig {
     @Bean
     RestClientCustomizer restClientBuilderCustomizer() {
         return restClientBuilder -> {
-            final var reqFactory = new SimpleClientHttpRequestFactory();
+            final var reqFactory = new DeadlineAwareClientHttpRequestFactory();
             // Override timeouts for the default RestClient.Builder instance.
             // which is used by Spring AI when sending outbound requests.
+            // These timeouts are shortened when the request deadline is closer.
             reqFactory.setConnectTimeout(Duration.ofSeconds(10));
             reqFactory.setReadTimeout(Duration.ofSeconds(60));
             restClientBuilder.requestFactory(reqFactory);
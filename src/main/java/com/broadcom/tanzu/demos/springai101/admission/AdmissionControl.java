@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.admission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decide whether a request is admitted, for both the servlet and the reactive web stacks.
+ * <p>
+ * Tenants are identified by their API key, or by their client address when no API key is set.
+ * When the number of in-flight requests gets close to the limit, tenants using more than
+ * their fair share are shed first: a noisy tenant cannot starve other tenants.
+ */
+@Component
+class AdmissionControl {
+    private final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final TenantBudgets budgets;
+    private final List<String> paths;
+    private final String apiKeyHeader;
+    private final int maxInFlight;
+    private final int shedThreshold;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicInteger> inFlightByTenant = new ConcurrentHashMap<>();
+
+    AdmissionControl(TenantBudgets budgets,
+                     @Value("${app.admission.paths}") List<String> paths,
+                     @Value("${app.admission.api-key-header}") String apiKeyHeader,
+                     @Value("${app.admission.max-in-flight}") int maxInFlight,
+                     @Value("${app.admission.shed-threshold}") double shedThreshold) {
+        this.budgets = budgets;
+        this.paths = paths;
+        this.apiKeyHeader = apiKeyHeader;
+        this.maxInFlight = maxInFlight;
+        this.shedThreshold = (int) Math.ceil(maxInFlight * shedThreshold);
+    }
+
+    /**
+     * Check whether requests to this path (within the application) are subject to admission control.
+     */
+    boolean applies(String path) {
+        return paths.stream().anyMatch(p -> pathMatcher.match(p, path));
+    }
+
+    String apiKeyHeader() {
+        return apiKeyHeader;
+    }
+
+    /**
+     * Admit a request: this method may block, as tenant budgets are checked in Redis.
+     * <p>
+     * An admitted request is counted as in flight until {@link Admission#release()} is called.
+     *
+     * @param apiKey        API key sent by the client, if any
+     * @param clientAddress client address
+     * @return admission decision
+     */
+    Admission admit(String apiKey, String clientAddress) {
+        final var tenant = tenantId(apiKey, clientAddress);
+
+        // Load shedding comes first: no need to call Redis when the request is rejected anyway.
+        if (shouldShed(tenant)) {
+            logger.debug("Shedding request from tenant {}: {} request(s) in flight", tenant, inFlight.get());
+            return Admission.rejected(tenant, HttpStatus.SERVICE_UNAVAILABLE, "Server is overloaded", 1);
+        }
+        final var decision = budgets.tryAcquire(tenant);
+        if (!decision.accepted()) {
+            logger.debug("Rejecting request from tenant {}: {}", tenant, decision.reason());
+            return Admission.rejected(tenant, HttpStatus.TOO_MANY_REQUESTS, decision.reason(), decision.retryAfterSeconds());
+        }
+
+        final var tenantInFlight = inFlightByTenant.computeIfAbsent(tenant, k -> new AtomicInteger());
+        tenantInFlight.incrementAndGet();
+        inFlight.incrementAndGet();
+        final var released = new AtomicBoolean();
+        return new Admission(tenant, null, null, 0, () -> {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                if (tenantInFlight.decrementAndGet() == 0) {
+                    inFlightByTenant.remove(tenant, tenantInFlight);
+                }
+            }
+        });
+    }
+
+    private boolean shouldShed(String tenant) {
+        final int total = inFlight.get();
+        if (total >= maxInFlight) {
+            return true;
+        }
+        if (total < shedThreshold) {
+            return false;
+        }
+        // Close to saturation: only shed tenants using more than their fair share.
+        final var tenantInFlight = inFlightByTenant.get(tenant);
+        final int fairShare = Math.max(1, maxInFlight / Math.max(1, inFlightByTenant.size()));
+        return tenantInFlight != null && tenantInFlight.get() >= fairShare;
+    }
+
+    private static String tenantId(String apiKey, String clientAddress) {
+        // Callers without an API key get a budget for each client address, instead of sharing a single budget.
+        // Client addresses are resolved from forwarded headers when server.forward-headers-strategy is set.
+        if (apiKey == null || apiKey.isBlank()) {
+            return "ip-" + hash(clientAddress);
+        }
+        return hash(apiKey);
+    }
+
+    private static String hash(String value) {
+        // Never store API keys (or client addresses) in Redis.
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Admission decision: a rejected request has a status, an admitted request must be released when it completes.
+     */
+    record Admission(String tenant, HttpStatus status, String reason, long retryAfterSeconds, Runnable release) {
+        static Admission rejected(String tenant, HttpStatus status, String reason, long retryAfterSeconds) {
+            return new Admission(tenant, status, reason, Math.max(1, retryAfterSeconds), () -> {
+            });
+        }
+
+        boolean accepted() {
+            return status == null;
+        }
+    }
+}
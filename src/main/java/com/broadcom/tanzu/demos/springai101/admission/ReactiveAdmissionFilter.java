@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.admission;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reject requests before any AI provider is called, using the reactive web stack
+ * (see {@link AdmissionControl}).
+ * <p>
+ * The tenant is stored in the reactive context, and requests are counted as in flight
+ * until the response is complete (or until the client goes away).
+ *
+ * @see AdmissionFilter
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveAdmissionFilter implements WebFilter {
+    private final AdmissionControl admissionControl;
+
+    ReactiveAdmissionFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (!admissionControl.applies(request.getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        final var apiKey = request.getHeaders().getFirst(admissionControl.apiKeyHeader());
+        final var address = request.getRemoteAddress();
+        final var clientAddress = address == null ? "unknown"
+                : address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+
+        // Budgets are checked with a blocking Redis call: keep it off event loop threads.
+        return Mono.fromCallable(() -> admissionControl.admit(apiKey, clientAddress))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(admission -> {
+                    if (!admission.accepted()) {
+                        return reject(exchange, admission);
+                    }
+                    return chain.filter(exchange)
+                            .doFinally(signal -> admission.release().run())
+                            .contextWrite(ctx -> ctx.put(Tenant.KEY, admission.tenant()));
+                });
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, AdmissionControl.Admission admission) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(admission.status());
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(admission.retryAfterSeconds()));
+        response.getHeaders().setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        final var body = response.bufferFactory().wrap(admission.reason().getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
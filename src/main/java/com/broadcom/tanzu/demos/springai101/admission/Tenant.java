@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.broadcom.tanzu.demos.springai101.admission;
+
+/**
+ * Tenant of the request being processed.
+ * <p>
+ * The current tenant is bound to the request thread, and it is propagated to executor tasks
+ * (see {@link TenantThreadLocalAccessor}): tokens used by a request are attributed to its tenant,
+ * even when the model response is received in another thread.
+ */
+public final class Tenant {
+    /**
+     * Key used to store the current tenant in a reactive context.
+     */
+    public static final String KEY = "app.tenant";
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private Tenant() {
+    }
+
+    /**
+     * Get the tenant bound to the current thread, if any.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    static void set(String tenant) {
+        CURRENT.set(tenant);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.admission;
+
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Track request and token budgets for each tenant in Redis.
+ * <p>
+ * Budgets are tracked using fixed time windows, so that all app instances share the same budgets.
+ * A single Redis call is made before a request is accepted.
+ */
+@Component
+class TenantBudgets {
+    // Check the token budget, then count the request: this is done atomically in Redis.
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local tokens = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if tokens >= tonumber(ARGV[2]) then
+                return -1
+            end
+            local requests = redis.call('INCR', KEYS[1])
+            if requests == 1 then
+                redis.call('EXPIRE', KEYS[1], ARGV[3])
+            end
+            if requests > tonumber(ARGV[1]) then
+                return -2
+            end
+            return requests
+            """, Long.class);
+    private static final RedisScript<Long> ADD_TOKENS = new DefaultRedisScript<>("""
+            local tokens = redis.call('INCRBY', KEYS[1], ARGV[1])
+            if tokens == tonumber(ARGV[1]) then
+                redis.call('EXPIRE', KEYS[1], ARGV[2])
+            end
+            return tokens
+            """, Long.class);
+
+    private final Logger logger = LoggerFactory.getLogger(TenantBudgets.class);
+    private final StringRedisTemplate redis;
+    private final long windowSeconds;
+    private final int maxRequests;
+    private final long maxTokens;
+
+    TenantBudgets(StringRedisTemplate redis,
+                  @Value("${app.admission.window}") Duration window,
+                  @Value("${app.admission.max-requests}") int maxRequests,
+                  @Value("${app.admission.max-tokens}") long maxTokens) {
+        this.redis = redis;
+        this.windowSeconds = Math.max(1, window.toSeconds());
+        this.maxRequests = maxRequests;
+        this.maxTokens = maxTokens;
+    }
+
+    Decision tryAcquire(String tenant) {
+        final long now = System.currentTimeMillis() / 1000;
+        final long windowId = now / windowSeconds;
+        final long retryAfter = (windowId + 1) * windowSeconds - now;
+        try {
+            final var result = redis.execute(ACQUIRE, List.of(key(tenant, "requests", windowId), key(tenant, "tokens", windowId)),
+                    String.valueOf(maxRequests), String.valueOf(maxTokens), String.valueOf(windowSeconds * 2));
+            if (result != null && result == -1) {
+                return Decision.rejected("Token budget exceeded", retryAfter);
+            }
+            if (result != null && result == -2) {
+                return Decision.rejected("Request budget exceeded", retryAfter);
+            }
+        } catch (RuntimeException e) {
+            // Don't make Redis a single point of failure: let requests through.
+            logger.warn("Failed to check budget for tenant {}: accepting request", tenant, e);
+        }
+        return Decision.ACCEPTED;
+    }
+
+    @EventListener
+    void onTokenUsage(TokenUsageEvent e) {
+        // Tokens are attributed to the tenant which sent the request:
+        // the tenant is restored with the context captured when the chat request started.
+        final var tenant = Tenant.current();
+        if (tenant == null) {
+            return;
+        }
+        if (e.totalTokens() == 0) {
+            return;
+        }
+        final long windowId = System.currentTimeMillis() / 1000 / windowSeconds;
+        try {
+            redis.execute(ADD_TOKENS, List.of(key(tenant, "tokens", windowId)),
+                    String.valueOf(e.totalTokens()), String.valueOf(windowSeconds * 2));
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to record {} token(s) for tenant {}", e.totalTokens(), tenant, ex);
+        }
+    }
+
+    private static String key(String tenant, String budget, long windowId) {
+        return "admission:" + tenant + ":" + budget + ":" + windowId;
+    }
+
+    record Decision(boolean accepted, String reason, long retryAfterSeconds) {
+        static final Decision ACCEPTED = new Decision(true, null, 0);
+
+        static Decision rejected(String reason, long retryAfterSeconds) {
+            return new Decision(false, reason, retryAfterSeconds);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.broadcom.tanzu.demos.springai101.admission;
+
+import io.micrometer.context.ThreadLocalAccessor;
+
+/**
+ * Propagate the current tenant to executor tasks and reactive streams.
+ * <p>
+ * This accessor is registered with <code>META-INF/services</code>.
+ */
+public class TenantThreadLocalAccessor implements ThreadLocalAccessor<String> {
+    @Override
+    public Object key() {
+        return Tenant.KEY;
+    }
+
+    @Override
+    public String getValue() {
+        return Tenant.current();
+    }
+
+    @Override
+    public void setValue(String value) {
+        Tenant.set(value);
+    }
+
+    @Override
+    public void setValue() {
+        Tenant.clear();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keep track of the progress of a batch job, so that it can be resumed.
+ * <p>
+ * Successful results are appended to a NDJSON file as soon as they're available:
+ * when a job is resumed, these results are replayed and the matching requests are skipped.
+ */
+public class BatchCheckpoint implements Closeable {
+    private final String jobId;
+    private final Path resultsFile;
+    private final Path providerRefFile;
+    private final ObjectMapper objectMapper;
+    private final List<BatchResult> results = new ArrayList<>();
+    private final Set<String> completedIds = new HashSet<>();
+    private final BufferedWriter writer;
+    private final Runnable onClose;
+
+    BatchCheckpoint(String jobId, Path dir, ObjectMapper objectMapper, Runnable onClose) throws IOException {
+        this.jobId = jobId;
+        this.onClose = onClose;
+        this.resultsFile = dir.resolve(jobId + ".ndjson");
+        this.providerRefFile = dir.resolve(jobId + ".provider");
+        this.objectMapper = objectMapper;
+
+        if (Files.exists(resultsFile)) {
+            try (final var lines = Files.lines(resultsFile, StandardCharsets.UTF_8)) {
+                for (final var line : (Iterable<String>) lines::iterator) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    final var result = objectMapper.readValue(line, BatchResult.class);
+                    if (completedIds.add(result.id())) {
+                        results.add(result);
+                    }
+                }
+            }
+        }
+        this.writer = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public String jobId() {
+        return jobId;
+    }
+
+    /**
+     * Get results which were completed before this job was (re)started.
+     */
+    public List<BatchResult> results() {
+        return List.copyOf(results);
+    }
+
+    public Set<String> completedIds() {
+        return Set.copyOf(completedIds);
+    }
+
+    /**
+     * Save a result. Failed results are not saved, so that they're processed again when the job is resumed.
+     */
+    public synchronized void append(BatchResult result) {
+        if (result.failed()) {
+            return;
+        }
+        try {
+            writer.write(objectMapper.writeValueAsString(result));
+            writer.newLine();
+            // Make sure the result is saved, should this process be killed.
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save checkpoint for batch job " + jobId, e);
+        }
+    }
+
+    /**
+     * Get the reference of the job submitted to the AI provider, if any.
+     */
+    public String providerRef() throws IOException {
+        if (!Files.exists(providerRefFile)) {
+            return null;
+        }
+        final var ref = Files.readString(providerRefFile, StandardCharsets.UTF_8).strip();
+        return ref.isEmpty() ? null : ref;
+    }
+
+    public void setProviderRef(String ref) throws IOException {
+        Files.writeString(providerRefFile, ref, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+@Component
+class BatchCheckpointStore {
+    private static final Pattern JOB_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private final Path dir;
+    private final ObjectMapper objectMapper;
+    private final Set<String> openJobs = ConcurrentHashMap.newKeySet();
+
+    BatchCheckpointStore(@Value("${app.batch.checkpoint-dir}") Path dir, ObjectMapper objectMapper) {
+        this.dir = dir;
+        this.objectMapper = objectMapper;
+    }
+
+    static boolean isValidJobId(String jobId) {
+        return jobId != null && JOB_ID.matcher(jobId).matches();
+    }
+
+    /**
+     * Open the checkpoint of a job, or return <code>null</code> if this job is already running.
+     * The job is released when the checkpoint is closed.
+     */
+    BatchCheckpoint open(String jobId) throws IOException {
+        if (!isValidJobId(jobId)) {
+            throw new IllegalArgumentException("Invalid batch job id: " + jobId);
+        }
+        // A job must not be run twice at the same time: results and model calls would be duplicated.
+        if (!openJobs.add(jobId)) {
+            return null;
+        }
+        try {
+            Files.createDirectories(dir);
+            return new BatchCheckpoint(jobId, dir, objectMapper, () -> openJobs.remove(jobId));
+        } catch (IOException | RuntimeException e) {
+            openJobs.remove(jobId);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class BatchController {
+    private final Logger logger = LoggerFactory.getLogger(BatchController.class);
+    private final ChatBatchBackend backend;
+    private final BatchCheckpointStore checkpointStore;
+    private final ObjectMapper objectMapper;
+    private final String systemText;
+    private final String userText;
+
+    BatchController(ChatBatchBackend backend, BatchCheckpointStore checkpointStore, ObjectMapper objectMapper,
+                    @Value("classpath:/system-chat.st") Resource sysRes,
+                    @Value("classpath:/user-chat.st") Resource userRes) throws IOException {
+        this.backend = backend;
+        this.checkpointStore = checkpointStore;
+        this.objectMapper = objectMapper;
+        this.systemText = sysRes.getContentAsString(StandardCharsets.UTF_8);
+        this.userText = userRes.getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping(value = "/chat/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<BatchResult> batch(@RequestParam(name = "job", required = false) String jobId,
+                            HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Reuse the job id to resume a batch: completed requests are not processed again.
+        final var job = jobId == null ? UUID.randomUUID().toString() : jobId;
+        if (!BatchCheckpointStore.isValidJobId(job)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid batch job id: " + job);
+        }
+        resp.setHeader("X-Batch-Job", job);
+
+        final var checkpoint = checkpointStore.open(job);
+        if (checkpoint == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Batch job is already running: " + job);
+        }
+        final var completedIds = checkpoint.completedIds();
+        logger.info("Starting batch job {} ({} request(s) already completed)", job, completedIds.size());
+
+        // Requests are read as a stream: there's no need to load the whole batch in memory.
+        final var lineNumber = new AtomicInteger();
+        // Invalid requests are reported as failed results, without stopping the batch.
+        final var invalidRequests = new ConcurrentLinkedQueue<BatchResult>();
+        final Flux<BatchPrompt> prompts = Flux.using(
+                        () -> new BufferedReader(new InputStreamReader(req.getInputStream(), StandardCharsets.UTF_8)),
+                        reader -> Flux.fromStream(reader.lines()),
+                        reader -> {
+                            try {
+                                reader.close();
+                            } catch (IOException ignore) {
+                            }
+                        })
+                .filter(line -> !line.isBlank())
+                .<BatchPrompt>handle((line, sink) -> {
+                    final int n = lineNumber.incrementAndGet();
+                    try {
+                        sink.next(toPrompt(line, n));
+                    } catch (UncheckedIOException | IllegalArgumentException e) {
+                        logger.warn("Skipping invalid request in batch job {}: {}", job, e.getMessage());
+                        invalidRequests.add(BatchResult.failure(String.valueOf(n), e.getMessage()));
+                    }
+                })
+                .filter(p -> !completedIds.contains(p.id()))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        // Replay results from the previous run, then stream new results as soon as they're available.
+        return Flux.concat(Flux.fromIterable(checkpoint.results()),
+                        backend.process(checkpoint, prompts).doOnNext(checkpoint::append),
+                        Flux.defer(() -> Flux.fromIterable(invalidRequests)))
+                .doFinally(signal -> {
+                    logger.info("Batch job {} ended: {}", job, signal);
+                    try {
+                        checkpoint.close();
+                    } catch (IOException e) {
+                        logger.warn("Failed to close checkpoint for batch job {}", job, e);
+                    }
+                });
+    }
+
+    private BatchPrompt toPrompt(String line, int lineNumber) {
+        final BatchRequest req;
+        try {
+            req = objectMapper.readValue(line, BatchRequest.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse batch request at line " + lineNumber, e);
+        }
+        // Use the line number when no id is set.
+        final var id = req.id() == null ? String.valueOf(lineNumber) : req.id();
+        if (req.topic() != null) {
+            // Same prompt as /chat/v3: tell a joke about a topic.
+            return new BatchPrompt(id, systemText,
+                    new PromptTemplate(userText, Map.of("topic", req.topic())).render());
+        }
+        if (req.prompt() == null) {
+            throw new IllegalArgumentException("Missing topic or prompt in batch request at line " + lineNumber);
+        }
+        return new BatchPrompt(id, req.system(), req.prompt());
+    }
+
+    /**
+     * A request in a batch: set either a topic (to get a joke) or a prompt.
+     */
+    record BatchRequest(
+            String id,
+            String topic,
+            String system,
+            String prompt
+    ) {
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+/**
+ * A prompt ready to be sent to the AI provider as part of a batch.
+ *
+ * @param id     request id, used to match results with requests
+ * @param system system prompt (may be <code>null</code>)
+ * @param user   user prompt
+ */
+public record BatchPrompt(
+        String id,
+        String system,
+        String user
+) {
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Hold the result of a batch request.
+ *
+ * @param id      request id
+ * @param content generated content, if the request succeeded
+ * @param error   error message, if the request failed
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(
+        String id,
+        String content,
+        String error
+) {
+    public static BatchResult success(String id, String content) {
+        return new BatchResult(id, content, null);
+    }
+
+    public static BatchResult failure(String id, String error) {
+        return new BatchResult(id, null, error == null ? "Unknown error" : error);
+    }
+
+    public boolean failed() {
+        return error != null;
+    }
+}
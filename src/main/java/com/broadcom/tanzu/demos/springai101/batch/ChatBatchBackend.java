@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Process batches of prompts using an AI provider.
+ */
+public interface ChatBatchBackend {
+    /**
+     * Process prompts, emitting results as soon as they're available.
+     * <p>
+     * This method is called in the request thread: the caller context (such as the tenant)
+     * may be captured at this point.
+     *
+     * @param checkpoint checkpoint of the batch job
+     * @param prompts    prompts to process (already completed prompts are excluded)
+     * @return results, in no particular order
+     */
+    Flux<BatchResult> process(BatchCheckpoint checkpoint, Flux<BatchPrompt> prompts);
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch.impl;
+
+import com.broadcom.tanzu.demos.springai101.admission.Tenant;
+import com.broadcom.tanzu.demos.springai101.batch.BatchCheckpoint;
+import com.broadcom.tanzu.demos.springai101.batch.BatchPrompt;
+import com.broadcom.tanzu.demos.springai101.batch.BatchResult;
+import com.broadcom.tanzu.demos.springai101.batch.ChatBatchBackend;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import io.github.bucket4j.Bucket;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * Process batches by sending prompts to the AI provider as regular chat requests,
+ * with bounded concurrency and a rate limiter.
+ * <p>
+ * This backend works with any AI provider.
+ */
+@Component
+@ConditionalOnProperty(name = "app.batch.backend", havingValue = "local", matchIfMissing = true)
+class LocalChatBatchBackend implements ChatBatchBackend {
+    private final Logger logger = LoggerFactory.getLogger(LocalChatBatchBackend.class);
+    private final ChatClient chatClient;
+    private final int maxConcurrency;
+    private final Bucket rateLimiter;
+    // Only the tenant is propagated: batch requests must not be bound by the deadline of the HTTP request.
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder()
+            .captureKeyPredicate(Tenant.KEY::equals).build();
+
+    LocalChatBatchBackend(ChatClient.Builder chatClientBuilder,
+                          @Value("${app.batch.max-concurrency}") int maxConcurrency,
+                          @Value("${app.batch.rps}") int rps) {
+        this.chatClient = chatClientBuilder.build();
+        this.maxConcurrency = maxConcurrency;
+        this.rateLimiter = Bucket.builder()
+                .addLimit(limit -> limit.capacity(rps).refillGreedy(rps, Duration.ofSeconds(1)))
+                .build();
+    }
+
+    @Override
+    public Flux<BatchResult> process(BatchCheckpoint checkpoint, Flux<BatchPrompt> prompts) {
+        // Prompts are processed in worker threads: tokens are charged to the tenant which sent the batch.
+        final var context = contextSnapshotFactory.captureAll();
+
+        // Prompts are processed concurrently (up to a limit), and results are emitted as soon as they're available.
+        return prompts.flatMap(p -> Mono.fromCallable(() -> call(context, p)).subscribeOn(Schedulers.boundedElastic()),
+                maxConcurrency);
+    }
+
+    private BatchResult call(ContextSnapshot context, BatchPrompt p) throws InterruptedException {
+        rateLimiter.asBlocking().consume(1);
+        try (final var ignored = context.setThreadLocals()) {
+            // Batch requests are not run in the HTTP request thread: set the endpoint used in usage metrics.
+            var req = chatClient.prompt().advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/batch"));
+            if (p.system() != null) {
+                req = req.system(p.system());
+            }
+            return BatchResult.success(p.id(), req.user(p.user()).call().content());
+        } catch (Exception e) {
+            logger.warn("Failed to process batch request: {}", p.id(), e);
+            return BatchResult.failure(p.id(), e.getMessage());
+        }
+    }
+}
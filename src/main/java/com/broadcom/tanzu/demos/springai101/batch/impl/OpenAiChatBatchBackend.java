@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.batch.impl;
+
+import com.broadcom.tanzu.demos.springai101.batch.BatchCheckpoint;
+import com.broadcom.tanzu.demos.springai101.batch.BatchPrompt;
+import com.broadcom.tanzu.demos.springai101.batch.BatchResult;
+import com.broadcom.tanzu.demos.springai101.batch.ChatBatchBackend;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Process batches using the OpenAI Batch API, which is cheaper than regular chat requests
+ * in exchange for a longer completion window.
+ * <p>
+ * Prompts are written to a JSONL file as they're received, then the file is uploaded
+ * and the batch is polled until it's done.
+ * The provider batch id is saved in the job checkpoint:
+ * resuming a job waits for the existing batch instead of submitting a new one.
+ * Once a batch is done, failed requests are submitted again in a new batch.
+ * Polling stops when the client disconnects: the batch keeps running, and the job can be resumed later.
+ */
+@Component
+@ConditionalOnProperty(name = "app.batch.backend", havingValue = "openai")
+class OpenAiChatBatchBackend implements ChatBatchBackend {
+    private static final Set<String> FAILED_STATUSES = Set.of("failed", "expired", "cancelling", "cancelled");
+
+    private final Logger logger = LoggerFactory.getLogger(OpenAiChatBatchBackend.class);
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final String model;
+    private final Duration pollInterval;
+    private final int maxRetries;
+
+    OpenAiChatBatchBackend(RestClient.Builder rcb, ObjectMapper objectMapper,
+                           @Value("${spring.ai.openai.base-url:https://api.openai.com}") String baseUrl,
+                           @Value("${spring.ai.openai.api-key}") String apiKey,
+                           @Value("${spring.ai.openai.chat.options.model}") String model,
+                           @Value("${app.batch.openai.poll-interval}") Duration pollInterval,
+                           @Value("${app.batch.openai.max-retries}") int maxRetries) {
+        this.restClient = rcb.clone()
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .build();
+        this.objectMapper = objectMapper;
+        this.model = model;
+        this.pollInterval = pollInterval;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public Flux<BatchResult> process(BatchCheckpoint checkpoint, Flux<BatchPrompt> prompts) {
+        // The whole batch must be submitted at once: prompts are written to a file
+        // instead of being kept in memory.
+        return Flux.using(
+                () -> Files.createTempFile("batch-", ".jsonl"),
+                requests -> writeRequests(requests, prompts)
+                        .filter(count -> count > 0)
+                        .flatMapMany(count -> Flux.<BatchResult>create(sink -> {
+                            final var cancelled = new CountDownLatch(1);
+                            sink.onCancel(cancelled::countDown);
+                            try {
+                                submitAndWait(checkpoint, requests, count, cancelled, sink::next);
+                                sink.complete();
+                            } catch (Exception e) {
+                                sink.error(e);
+                            }
+                        }).subscribeOn(Schedulers.boundedElastic())),
+                requests -> {
+                    try {
+                        Files.deleteIfExists(requests);
+                    } catch (IOException e) {
+                        logger.warn("Failed to delete batch file: {}", requests, e);
+                    }
+                });
+    }
+
+    private Mono<Long> writeRequests(Path requests, Flux<BatchPrompt> prompts) {
+        return Mono.using(
+                () -> Files.newBufferedWriter(requests, StandardCharsets.UTF_8),
+                writer -> prompts.doOnNext(p -> writeRequest(writer, p)).count(),
+                writer -> {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to write batch file: " + requests, e);
+                    }
+                });
+    }
+
+    private void writeRequest(BufferedWriter writer, BatchPrompt p) {
+        // Each line is a chat completion request.
+        final var body = objectMapper.createObjectNode().put("model", model);
+        final var messages = body.putArray("messages");
+        if (p.system() != null) {
+            messages.addObject().put("role", "system").put("content", p.system());
+        }
+        messages.addObject().put("role", "user").put("content", p.user());
+        final ObjectNode line = objectMapper.createObjectNode()
+                .put("custom_id", p.id())
+                .put("method", "POST")
+                .put("url", "/v1/chat/completions");
+        line.set("body", body);
+        try {
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write batch request: " + p.id(), e);
+        }
+    }
+
+    private void submitAndWait(BatchCheckpoint checkpoint, Path requests, long count, CountDownLatch cancelled,
+                               Consumer<BatchResult> results) throws IOException, InterruptedException {
+        var batchId = checkpoint.providerRef();
+        if (batchId != null) {
+            logger.info("Resuming OpenAI batch {} for job {}", batchId, checkpoint.jobId());
+        }
+        for (int attempt = 0; ; ++attempt) {
+            if (batchId == null) {
+                batchId = submit(checkpoint.jobId(), requests, count);
+                checkpoint.setProviderRef(batchId);
+            }
+            final var batch = await(checkpoint, batchId, cancelled);
+            if (batch == null) {
+                // The batch reference is kept, so that resuming the job waits for this batch.
+                logger.info("Stopped polling OpenAI batch {} for job {}: request was cancelled", batchId, checkpoint.jobId());
+                return;
+            }
+
+            // Successful results are emitted right away, failures are kept until they can't be retried.
+            final var failures = new HashMap<String, BatchResult>();
+            final Consumer<BatchResult> collector = r -> {
+                if (r.failed()) {
+                    failures.put(r.id(), r);
+                } else {
+                    results.accept(r);
+                }
+            };
+            readResults(batch.path("output_file_id").asText(null), collector);
+            readResults(batch.path("error_file_id").asText(null), collector);
+
+            if (failures.isEmpty() || attempt >= maxRetries) {
+                // This batch is done: resuming the job must not wait for it again.
+                checkpoint.setProviderRef("");
+                failures.values().forEach(results);
+                return;
+            }
+            logger.info("Resubmitting {} failed request(s) from OpenAI batch {} for job {}",
+                    failures.size(), batchId, checkpoint.jobId());
+            count = retain(requests, failures.keySet());
+            batchId = submit(checkpoint.jobId(), requests, count);
+            // Move on to the new batch, which only includes failed requests.
+            checkpoint.setProviderRef(batchId);
+        }
+    }
+
+    /**
+     * Wait for a batch to complete, or return <code>null</code> if waiting was cancelled.
+     */
+    private JsonNode await(BatchCheckpoint checkpoint, String batchId, CountDownLatch cancelled) throws IOException, InterruptedException {
+        for (; ; ) {
+            final var batch = restClient.get().uri("/v1/batches/{id}", batchId).retrieve().body(JsonNode.class);
+            final var status = batch.path("status").asText();
+            logger.debug("OpenAI batch {} status: {}", batchId, status);
+            if ("completed".equals(status)) {
+                return batch;
+            }
+            if (FAILED_STATUSES.contains(status)) {
+                // Forget about this batch: a new one will be submitted when the job is resumed.
+                checkpoint.setProviderRef("");
+                throw new IllegalStateException("OpenAI batch " + batchId + " ended with status: " + status);
+            }
+            if (cancelled.await(pollInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+        }
+    }
+
+    private long retain(Path requests, Set<String> ids) throws IOException {
+        // Only keep requests matching these ids.
+        final var retained = Files.createTempFile("batch-", ".jsonl");
+        long count = 0;
+        try (final var reader = Files.newBufferedReader(requests, StandardCharsets.UTF_8);
+             final var writer = Files.newBufferedWriter(retained, StandardCharsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (!line.isBlank() && ids.contains(objectMapper.readTree(line).path("custom_id").asText())) {
+                    writer.write(line);
+                    writer.newLine();
+                    ++count;
+                }
+            }
+        }
+        Files.move(retained, requests, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    private String submit(String jobId, Path requests, long count) {
+        final var form = new LinkedMultiValueMap<String, Object>();
+        form.add("purpose", "batch");
+        form.add("file", new FileSystemResource(requests) {
+            @Override
+            public String getFilename() {
+                return jobId + ".jsonl";
+            }
+        });
+        final var file = restClient.post().uri("/v1/files")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(form)
+                .retrieve().body(JsonNode.class);
+
+        final var batch = restClient.post().uri("/v1/batches")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of(
+                        "input_file_id", file.path("id").asText(),
+                        "endpoint", "/v1/chat/completions",
+                        "completion_window", "24h"))
+                .retrieve().body(JsonNode.class);
+        final var batchId = batch.path("id").asText();
+        logger.info("Submitted OpenAI batch {} for job {} ({} request(s))", batchId, jobId, count);
+        return batchId;
+    }
+
+    private void readResults(String fileId, Consumer<BatchResult> results) {
+        if (fileId == null || fileId.isEmpty()) {
+            return;
+        }
+        // Results are read line by line, as they may not fit in memory.
+        restClient.get().uri("/v1/files/{id}/content", fileId).exchange((req, resp) -> {
+            if (resp.getStatusCode().isError()) {
+                throw new IOException("Failed to read OpenAI batch results from file " + fileId + ": " + resp.getStatusCode());
+            }
+            try (final var reader = new BufferedReader(new InputStreamReader(resp.getBody(), StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    if (!line.isBlank()) {
+                        results.accept(toResult(objectMapper.readTree(line)));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private BatchResult toResult(JsonNode node) {
+        final var id = node.path("custom_id").asText();
+        final var body = node.path("response").path("body");
+        final var text = body.path("choices").path(0).path("message").path("content");
+        if (text.isTextual()) {
+            return BatchResult.success(id, text.asText());
+        }
+        final var error = node.path("error").path("message").asText(body.path("error").path("message").asText(null));
+        return BatchResult.failure(id, error);
+    }
+}
@@ -16,13 +16,16 @@
 
 package com.broadcom.tanzu.demos.springai101.chat;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class ChatV1Controller {
     private final ChatClient chatClient;
 
@@ -33,6 +36,8 @@ class ChatV1Controller {
     @GetMapping(value = "/chat/v1", produces = MediaType.TEXT_PLAIN_VALUE)
     String chat(@RequestParam("q") String query) {
         // A single line API call to connect to your favorite LLM and get a response.
-        return chatClient.prompt().user(query).call().content();
+        return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v1"))
+                .user(query).call().content();
     }
 }
@@ -16,8 +16,10 @@
 
 package com.broadcom.tanzu.demos.springai101.chat;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +27,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class ChatV2Controller {
     private final ChatClient chatClient;
 
@@ -40,6 +43,7 @@ class ChatV2Controller {
         // Note the use of a system prompt to provide the LLM with hints.
         // User prompt is actually loaded from an external resource.
         return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v2"))
                 .system("""
                         You're a comedian.
                         You tell non-offensive jokes.
@@ -16,8 +16,10 @@
 
 package com.broadcom.tanzu.demos.springai101.chat;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +27,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class ChatV3Controller {
     private final ChatClient chatClient;
 
@@ -43,6 +46,7 @@ class ChatV3Controller {
         // Not only we use prompt templating to format the query,
         // but we also convert the response to a Java construct.
         return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v3"))
                 .system(sysText)
                 .user(p -> p.text(userText).param("topic", topic))
                 .call()
@@ -16,18 +16,44 @@
 
 package com.broadcom.tanzu.demos.springai101.chat;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
 @RestController
 class ChatV4Controller {
+    private static final String DEFAULT_TEXT = """
+            Marie Curie, born in 1867, was a Polish and naturalised-French physicist and chemist who conducted pioneering research on radioactivity.
+            She was the first woman to win a Nobel Prize, the first person to win a Nobel Prize twice, and the only person to win a Nobel Prize in two scientific fields.
+            Her husband, Pierre Curie, was a co-winner of her first Nobel Prize, making them the first-ever married couple to win the Nobel Prize and launching the Curie family legacy of five Nobel Prizes.
+            She was, in 1906, the first woman to become a professor at the University of Paris.
+            """;
+    static final String PROMPT = """
+            Analyze this text and split it into Nodes and Relationships :
+            {text}
+            """;
+
+    private final Logger logger = LoggerFactory.getLogger(ChatV4Controller.class);
     private final ChatClient chatClient;
+    private final GraphExtractor graphExtractor;
+    private final ObjectMapper objectMapper;
+    private final BeanOutputConverter<Result> resultConverter = new BeanOutputConverter<>(Result.class);
 
     @Value("classpath:/user-chat.st")
     private Resource userText;
@@ -35,25 +61,85 @@ class ChatV4Controller {
     @Value("classpath:/system-chat.st")
     private Resource sysText;
 
-    ChatV4Controller(ChatClient.Builder chatClientBuilder) {
+    ChatV4Controller(ChatClient.Builder chatClientBuilder, GraphExtractor graphExtractor, ObjectMapper objectMapper) {
         this.chatClient = chatClientBuilder.build();
+        this.graphExtractor = graphExtractor;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping(value = "/chat/v4", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_XML_VALUE})
-    Result chat() {
-        var text = """
-                Analyze this text and split it into Nodes and Relationships :
-                Marie Curie, born in 1867, was a Polish and naturalised-French physicist and chemist who conducted pioneering research on radioactivity.
-                She was the first woman to win a Nobel Prize, the first person to win a Nobel Prize twice, and the only person to win a Nobel Prize in two scientific fields.
-                Her husband, Pierre Curie, was a co-winner of her first Nobel Prize, making them the first-ever married couple to win the Nobel Prize and launching the Curie family legacy of five Nobel Prizes.
-                She was, in 1906, the first woman to become a professor at the University of Paris.
-                """;
-
+    Result chat(@RequestParam(name = "text", required = false) String text) {
+        // Input text is set as a template parameter, so that it may safely contain any character.
         return chatClient.prompt()
-                .user(p -> p.text(text)).call()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v4"))
+                .user(p -> p.text(PROMPT).param("text", text == null || text.isBlank() ? DEFAULT_TEXT : text)).call()
                 .entity(Result.class);
     }
 
+    @PostMapping(value = "/chat/v4", consumes = MediaType.TEXT_PLAIN_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_XML_VALUE})
+    Result chatWithText(@RequestBody String text) {
+        return chat(text);
+    }
+
+    @GetMapping(value = "/chat/v4/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<GraphEvent> stream(@RequestParam(name = "text", required = false) String text) {
+        // Instead of waiting for the whole result to be generated,
+        // stream the model output and emit every Node / Relationship as soon as it's complete.
+        final var input = text == null || text.isBlank() ? DEFAULT_TEXT : text;
+        return Flux.defer(() -> {
+            // The parser keeps track of the JSON structure: use one instance per stream.
+            final var parser = new GraphStreamParser();
+            // The stream may be consumed outside of the request thread: the endpoint is set explicitly.
+            return chatClient.prompt()
+                    .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v4/stream"))
+                    .user(p -> p.text(PROMPT + "\n{format}")
+                            .param("text", input)
+                            .param("format", resultConverter.getFormat()))
+                    .stream()
+                    .content()
+                    .concatMapIterable(parser::feed)
+                    .mapNotNull(this::toGraphEvent);
+        });
+    }
+
+    @PostMapping(value = "/chat/v4/stream", consumes = MediaType.TEXT_PLAIN_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<GraphEvent> streamWithText(@RequestBody String text) {
+        return stream(text);
+    }
+
+    @PostMapping(value = "/chat/v4/graph", consumes = MediaType.TEXT_PLAIN_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_XML_VALUE})
+    Result graph(@RequestBody String text) {
+        // Large documents are split into chunks, which are processed concurrently.
+        // Resulting graphs are merged into a single one, where duplicated nodes are resolved.
+        return graphExtractor.extract(text, "/chat/v4/graph").toResult();
+    }
+
+    @PostMapping(value = "/chat/v4/graph/compact", consumes = MediaType.TEXT_PLAIN_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    GraphMerger.CompactGraph compactGraph(@RequestBody String text) {
+        // Same as above, using a compact representation of the graph.
+        return graphExtractor.extract(text, "/chat/v4/graph/compact").toCompactGraph();
+    }
+
+    private GraphEvent toGraphEvent(GraphStreamParser.Element e) {
+        try {
+            return switch (e.field()) {
+                case "nodes" -> new GraphEvent(objectMapper.readValue(e.json(), Node.class), null);
+                case "relationships" -> new GraphEvent(null, objectMapper.readValue(e.json(), Relationship.class));
+                case null, default -> {
+                    logger.debug("Ignoring unexpected element from field {}: {}", e.field(), e.json());
+                    yield null;
+                }
+            };
+        } catch (JsonProcessingException ex) {
+            logger.warn("Failed to parse streamed element: {}", e.json(), ex);
+            return null;
+        }
+    }
+
     record Node(String id, String type) {
     }
 
@@ -62,4 +148,11 @@ class ChatV4Controller {
 
     record Result(List<Node> nodes, List<Relationship> relationships) {
     }
+
+    /**
+     * A streamed graph element: either a node or a relationship.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record GraphEvent(Node node, Relationship relationship) {
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.chat;
+
+import com.broadcom.tanzu.demos.springai101.chat.ChatV4Controller.Result;
+import com.broadcom.tanzu.demos.springai101.deadline.Deadline;
+import com.broadcom.tanzu.demos.springai101.deadline.DeadlineExceededException;
+import com.broadcom.tanzu.demos.springai101.text.SentenceTextSplitter;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Extract a knowledge graph from documents of any size.
+ * <p>
+ * Input text is split into overlapping chunks which are processed concurrently:
+ * graphs extracted from these chunks are then merged into a single graph.
+ * A graph is only returned when every chunk was processed: a partial graph would silently miss data.
+ */
+@Component
+class GraphExtractor {
+    private final Logger logger = LoggerFactory.getLogger(GraphExtractor.class);
+    private final ChatClient chatClient;
+    private final AsyncTaskExecutor taskExecutor;
+    private final SentenceTextSplitter textSplitter;
+    private final int maxConcurrency;
+
+    GraphExtractor(ChatClient.Builder chatClientBuilder, AsyncTaskExecutor taskExecutor,
+                   @Value("${app.graph.chunk-tokens}") int chunkTokens,
+                   @Value("${app.graph.chunk-overlap-tokens}") int chunkOverlapTokens,
+                   @Value("${app.graph.max-concurrency}") int maxConcurrency) {
+        this.chatClient = chatClientBuilder.build();
+        this.taskExecutor = taskExecutor;
+        this.textSplitter = new SentenceTextSplitter(chunkTokens, chunkOverlapTokens);
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    GraphMerger extract(String text, String endpoint) {
+        final var chunks = textSplitter.split(text);
+        logger.info("Extracting graph from {} chunk(s) using up to {} concurrent requests", chunks.size(), maxConcurrency);
+
+        // Bound the number of in-flight requests to stay within the AI provider rate limits:
+        // a new chunk is only submitted when a permit is available.
+        final var permits = new Semaphore(maxConcurrency);
+        final var tasks = new ArrayList<CompletableFuture<Result>>(chunks.size());
+        final var failed = new AtomicBoolean();
+        for (int i = 0; i < chunks.size(); ++i) {
+            final int chunkIndex = i;
+            final var chunk = chunks.get(i);
+            try {
+                acquire(permits);
+            } catch (RuntimeException e) {
+                tasks.forEach(t -> t.cancel(true));
+                throw e;
+            }
+            if (failed.get()) {
+                // Stop submitting chunks: this failure is reported below.
+                permits.release();
+                break;
+            }
+            try {
+                tasks.add(taskExecutor.submitCompletable(() -> {
+                    try {
+                        return extractChunk(chunkIndex, chunk, endpoint);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        final var merger = new GraphMerger();
+        for (int i = 0; i < tasks.size(); ++i) {
+            try {
+                // Don't wait past the request deadline.
+                merger.add(Deadline.join(tasks.get(i)));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to extract graph from chunk {}", i, e);
+                tasks.forEach(t -> t.cancel(true));
+                throw e;
+            }
+        }
+        return merger;
+    }
+
+    private static void acquire(Semaphore permits) {
+        // Waiting for a permit is bound by the request deadline (if any).
+        final var deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new DeadlineExceededException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException(e);
+        }
+    }
+
+    private Result extractChunk(int chunkIndex, String chunk, String endpoint) {
+        logger.debug("Extracting graph from chunk {}", chunkIndex);
+        // Chunks are processed in worker threads, outside of the request thread.
+        return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, endpoint))
+                .user(p -> p.text(ChatV4Controller.PROMPT).param("text", chunk))
+                .call()
+                .entity(Result.class);
+    }
+}
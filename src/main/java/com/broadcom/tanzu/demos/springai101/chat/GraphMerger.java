@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.chat;
+
+import com.broadcom.tanzu.demos.springai101.chat.ChatV4Controller.Node;
+import com.broadcom.tanzu.demos.springai101.chat.ChatV4Controller.Relationship;
+import com.broadcom.tanzu.demos.springai101.chat.ChatV4Controller.Result;
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Merge graphs extracted from different chunks of a document.
+ * <p>
+ * Nodes are resolved using a normalized form of their id (case, accents and punctuation are ignored):
+ * the first seen id is kept, along with the most frequent type.
+ * Relationships are deduplicated using their resolved source and target nodes, and their type.
+ * <p>
+ * This class is not thread-safe.
+ */
+class GraphMerger {
+    private final Map<String, NodeEntry> nodes = new LinkedHashMap<>();
+    private final Map<String, RelationshipEntry> relationships = new LinkedHashMap<>();
+
+    void add(Result result) {
+        if (result == null) {
+            return;
+        }
+        if (result.nodes() != null) {
+            result.nodes().forEach(this::resolve);
+        }
+        if (result.relationships() != null) {
+            for (final var rel : result.relationships()) {
+                final var source = resolve(rel.source());
+                final var target = resolve(rel.target());
+                if (source == null || target == null || rel.type() == null || rel.type().isBlank()) {
+                    continue;
+                }
+                final var type = rel.type().strip().toUpperCase(Locale.ROOT);
+                relationships.putIfAbsent(source + '\u0000' + type + '\u0000' + target,
+                        new RelationshipEntry(source, target, type));
+            }
+        }
+    }
+
+    private String resolve(Node node) {
+        if (node == null || node.id() == null) {
+            return null;
+        }
+        final var key = TextNormalizer.normalize(node.id());
+        if (key.isEmpty()) {
+            return null;
+        }
+        nodes.computeIfAbsent(key, k -> new NodeEntry(node.id().strip())).countType(node.type());
+        return key;
+    }
+
+    Result toResult() {
+        final var canonicalNodes = new LinkedHashMap<String, Node>(nodes.size());
+        nodes.forEach((key, entry) -> canonicalNodes.put(key, new Node(entry.id, entry.type())));
+        final var rels = new ArrayList<Relationship>(relationships.size());
+        for (final var rel : relationships.values()) {
+            rels.add(new Relationship(canonicalNodes.get(rel.source), canonicalNodes.get(rel.target), rel.type));
+        }
+        return new Result(List.copyOf(canonicalNodes.values()), rels);
+    }
+
+    CompactGraph toCompactGraph() {
+        final var ids = new ArrayList<String>(nodes.size());
+        final var nodeIndexes = new HashMap<String, Integer>(nodes.size());
+        final var types = new ArrayList<String>();
+        final var typeIndexes = new HashMap<String, Integer>();
+        final var nodeTypes = new int[nodes.size()];
+        for (final var e : nodes.entrySet()) {
+            final int i = ids.size();
+            nodeIndexes.put(e.getKey(), i);
+            ids.add(e.getValue().id);
+            final var type = e.getValue().type();
+            nodeTypes[i] = type == null ? -1 : typeIndexes.computeIfAbsent(type, t -> {
+                types.add(t);
+                return types.size() - 1;
+            });
+        }
+        final var edges = new int[relationships.size() * 3];
+        int i = 0;
+        for (final var rel : relationships.values()) {
+            edges[i++] = nodeIndexes.get(rel.source);
+            edges[i++] = nodeIndexes.get(rel.target);
+            edges[i++] = typeIndexes.computeIfAbsent(rel.type, t -> {
+                types.add(t);
+                return types.size() - 1;
+            });
+        }
+        return new CompactGraph(ids, nodeTypes, types, edges);
+    }
+
+    private static class NodeEntry {
+        private final String id;
+        private final Map<String, Integer> typeCounts = new HashMap<>(2);
+
+        NodeEntry(String id) {
+            this.id = id;
+        }
+
+        void countType(String type) {
+            if (type != null && !type.isBlank()) {
+                typeCounts.merge(type.strip(), 1, Integer::sum);
+            }
+        }
+
+        String type() {
+            return typeCounts.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey).orElse(null);
+        }
+    }
+
+    private record RelationshipEntry(String source, String target, String type) {
+    }
+
+    /**
+     * Compact graph representation, where every string is only listed once.
+     *
+     * @param nodes     node ids
+     * @param nodeTypes index of the type of each node in <code>types</code> (-1 if unknown)
+     * @param types     node and relationship types
+     * @param edges     relationships as flattened triples: source node index, target node index, type index
+     */
+    record CompactGraph(List<String> nodes, int[] nodeTypes, List<String> types, int[] edges) {
+    }
+}
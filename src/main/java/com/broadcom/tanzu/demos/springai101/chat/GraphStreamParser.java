@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Incremental parser extracting array elements from a JSON document while it is being streamed.
+ * <p>
+ * The parser expects a root object holding arrays of objects (such as <code>{"nodes": [...], "relationships": [...]}</code>):
+ * every object found in one of these arrays is emitted as soon as its closing brace is received.
+ * Any text outside the root object (such as Markdown code fences) is ignored.
+ * <p>
+ * This class is not thread-safe: use one instance per stream.
+ */
+class GraphStreamParser {
+    private final Deque<Character> containers = new ArrayDeque<>();
+    private final StringBuilder key = new StringBuilder(32);
+    private final StringBuilder element = new StringBuilder(256);
+    private String lastKey;
+    private String arrayField;
+    private boolean inString;
+    private boolean escaped;
+    private boolean capturing;
+
+    /**
+     * Feed the parser with the next chunk of text.
+     *
+     * @param chunk text received from the model
+     * @return elements completed by this chunk
+     */
+    List<Element> feed(CharSequence chunk) {
+        final var completed = new ArrayList<Element>(2);
+        for (int i = 0; i < chunk.length(); ++i) {
+            final char c = chunk.charAt(i);
+            if (capturing) {
+                element.append(c);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (containers.size() == 1) {
+                        // Keep track of field names in the root object.
+                        lastKey = key.toString();
+                    }
+                } else if (containers.size() == 1) {
+                    key.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    key.setLength(0);
+                }
+                case '{', '[' -> {
+                    if (c == '{' && !capturing && containers.size() == 2 && containers.peek() == '[') {
+                        // We just entered an element in one of the root arrays.
+                        capturing = true;
+                        element.setLength(0);
+                        element.append(c);
+                    }
+                    containers.push(c);
+                    if (c == '[' && containers.size() == 2) {
+                        arrayField = lastKey;
+                    }
+                }
+                case '}', ']' -> {
+                    if (!containers.isEmpty()) {
+                        containers.pop();
+                    }
+                    if (capturing && containers.size() == 2) {
+                        capturing = false;
+                        completed.add(new Element(arrayField, element.toString()));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * A complete JSON element.
+     *
+     * @param field name of the root array holding this element
+     * @param json  element as a JSON string
+     */
+    record Element(String field, String json) {
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.chat;
+
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive version of chat endpoints (v1 to v3).
+ * <p>
+ * Model responses are streamed: a slow response does not hold a thread.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveChatController {
+    private final ChatClient chatClient;
+    private final BeanOutputConverter<JokeResponse> jokeConverter = new BeanOutputConverter<>(JokeResponse.class);
+    private final Resource userText;
+    private final String userTextWithFormat;
+
+    @Value("classpath:/system-chat.st")
+    private Resource sysText;
+
+    ReactiveChatController(ChatClient.Builder chatClientBuilder,
+                           @Value("classpath:/user-chat.st") Resource userText) throws IOException {
+        this.chatClient = chatClientBuilder.build();
+        this.userText = userText;
+        // Streamed responses are not converted by the client: format instructions are added to the prompt.
+        this.userTextWithFormat = userText.getContentAsString(StandardCharsets.UTF_8) + "\n{format}";
+    }
+
+    @GetMapping(value = "/chat/v1", produces = MediaType.TEXT_PLAIN_VALUE)
+    Flux<String> chat(@RequestParam("q") String query) {
+        // Response chunks are sent to the client as soon as they are generated.
+        return chatClient.prompt()
+                .user(query)
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v1"))
+                .stream()
+                .content();
+    }
+
+    @GetMapping(value = "/chat/v2", produces = MediaType.TEXT_PLAIN_VALUE)
+    Flux<String> chatWithTopic(@RequestParam("topic") String topic) {
+        return chatClient.prompt()
+                .system("""
+                        You're a comedian.
+                        You tell non-offensive jokes.
+                        """)
+                .user(p -> p.text(userText).param("topic", topic))
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v2"))
+                .stream()
+                .content();
+    }
+
+    @GetMapping(value = "/chat/v3", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<JokeResponse> chatWithEntity(@RequestParam("topic") String topic) {
+        // A Java construct can only be built from the whole response:
+        // collect streamed chunks before converting the result.
+        return chatClient.prompt()
+                .system(sysText)
+                .user(p -> p.text(userTextWithFormat).param("topic", topic).param("format", jokeConverter.getFormat()))
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/chat/v3"))
+                .stream()
+                .content()
+                .collect(Collectors.joining())
+                .map(jokeConverter::convert);
+    }
+
+    record JokeResponse(
+            String joke,
+            String topic
+    ) {
+    }
+}
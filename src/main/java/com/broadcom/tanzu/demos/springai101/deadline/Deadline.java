@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deadline of the request being processed.
+ * <p>
+ * The current deadline is bound to the request thread, and it is propagated to executor tasks
+ * and reactive streams (see {@link DeadlineThreadLocalAccessor}).
+ * When the deadline expires (or when the client goes away), the deadline is cancelled:
+ * in-flight calls to remote services are aborted.
+ */
+public final class Deadline {
+    /**
+     * Key used to store the current deadline in a reactive context.
+     */
+    public static final String KEY = "app.deadline";
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private final long expiresAt;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Get the deadline bound to the current thread, if any.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    static void set(Deadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Fail if the deadline bound to the current thread has expired.
+     */
+    public static void checkCurrent() {
+        if (isCurrentExpired()) {
+            throw new DeadlineExceededException();
+        }
+    }
+
+    /**
+     * Check whether the deadline bound to the current thread (if any) has expired.
+     */
+    public static boolean isCurrentExpired() {
+        final var deadline = current();
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * Wait for a task to complete, without waiting past the current deadline (if any).
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        final var deadline = current();
+        if (deadline == null) {
+            return future.join();
+        }
+        try {
+            return future.get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Duration remaining() {
+        if (cancelled.get()) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return remaining().isZero();
+    }
+
+    /**
+     * Register a callback invoked when this deadline is cancelled.
+     */
+    public void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (cancelled.get() && cancelCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Unregister a callback, once the work it would abort is done.
+     */
+    public void removeOnCancel(Runnable callback) {
+        cancelCallbacks.remove(callback);
+    }
+
+    /**
+     * Cancel this deadline: in-flight work bound to this deadline is aborted.
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (final var callback : cancelCallbacks) {
+                if (cancelCallbacks.remove(callback)) {
+                    callback.run();
+                }
+            }
+        }
+    }
+}
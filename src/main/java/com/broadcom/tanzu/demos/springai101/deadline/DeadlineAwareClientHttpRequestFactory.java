@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Bound HTTP timeouts to the current deadline (if any).
+ * <p>
+ * The connection is closed when the deadline is cancelled, which aborts any blocked read.
+ * I/O errors raised once the deadline has expired are reported as {@link DeadlineExceededException}:
+ * the remote service is not at fault.
+ */
+public class DeadlineAwareClientHttpRequestFactory extends SimpleClientHttpRequestFactory {
+    // Hand over the cancel callback registered for the connection being created.
+    private static final ThreadLocal<Runnable> PENDING_CALLBACK = new ThreadLocal<>();
+    private int connectTimeout = -1;
+    private int readTimeout = -1;
+
+    @Override
+    public void setConnectTimeout(int connectTimeout) {
+        super.setConnectTimeout(connectTimeout);
+        this.connectTimeout = connectTimeout;
+    }
+
+    @Override
+    public void setConnectTimeout(Duration connectTimeout) {
+        setConnectTimeout((int) connectTimeout.toMillis());
+    }
+
+    @Override
+    public void setReadTimeout(int readTimeout) {
+        super.setReadTimeout(readTimeout);
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public void setReadTimeout(Duration readTimeout) {
+        setReadTimeout((int) readTimeout.toMillis());
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        final var deadline = Deadline.current();
+        if (deadline == null) {
+            return;
+        }
+        final long remaining = deadline.remaining().toMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException();
+        }
+        connection.setConnectTimeout(bound(connectTimeout, remaining));
+        connection.setReadTimeout(bound(readTimeout, remaining));
+        final Runnable disconnect = connection::disconnect;
+        deadline.onCancel(disconnect);
+        PENDING_CALLBACK.set(disconnect);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        final var deadline = Deadline.current();
+        final ClientHttpRequest request;
+        final Runnable disconnect;
+        try {
+            request = super.createRequest(uri, httpMethod);
+        } finally {
+            disconnect = PENDING_CALLBACK.get();
+            PENDING_CALLBACK.remove();
+        }
+        if (deadline == null || disconnect == null) {
+            return request;
+        }
+        return new DeadlineRequest(request, deadline, disconnect);
+    }
+
+    private static int bound(int timeout, long remaining) {
+        // A timeout set to 0 means no timeout.
+        return (int) (timeout > 0 ? Math.min(timeout, remaining) : remaining);
+    }
+
+    private record DeadlineRequest(ClientHttpRequest delegate, Deadline deadline,
+                                   Runnable disconnect) implements ClientHttpRequest {
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            try {
+                return new DeadlineResponse(delegate.execute(), deadline, disconnect);
+            } catch (IOException e) {
+                // Do not disconnect a connection which may be reused for another request.
+                deadline.removeOnCancel(disconnect);
+                if (deadline.isExpired()) {
+                    throw new DeadlineExceededException(e);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+    }
+
+    private record DeadlineResponse(ClientHttpResponse delegate, Deadline deadline,
+                                    Runnable disconnect) implements ClientHttpResponse {
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            // The response is complete: the connection goes back to the pool.
+            deadline.removeOnCancel(disconnect);
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+
+@Configuration(proxyBeanMethods = false)
+class DeadlineConfig {
+    @Bean
+    WebClientCustomizer deadlineWebClientCustomizer() {
+        // Bound WebClient calls (such as streaming requests) to the current deadline:
+        // the call is cancelled when the deadline expires.
+        return webClientBuilder -> webClientBuilder.filter((request, next) -> Mono.deferContextual(ctx -> {
+            final Deadline deadline = ctx.getOrDefault(Deadline.KEY, Deadline.current());
+            if (deadline == null) {
+                return next.exchange(request);
+            }
+            if (deadline.isExpired()) {
+                return Mono.error(new DeadlineExceededException());
+            }
+            return next.exchange(request)
+                    .timeout(deadline.remaining(), Mono.defer(() -> Mono.error(new DeadlineExceededException())));
+        }));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bind a deadline to incoming requests.
+ * <p>
+ * When the deadline expires, in-flight calls to remote services are aborted and the request fails with status 504.
+ * Streamed responses are also cancelled when the client goes away.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class DeadlineFilter extends OncePerRequestFilter {
+    private final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+    private final DeadlinePolicy policy;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    DeadlineFilter(DeadlinePolicy policy) {
+        this.policy = policy;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, Executors.defaultThreadFactory());
+        // Most deadlines never expire: do not keep cancelled tasks in the queue.
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        final var path = request.getRequestURI().substring(request.getContextPath().length());
+        final var timeout = policy.timeout(path, request.getHeader(policy.header()));
+        if (timeout == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final var deadline = Deadline.after(timeout);
+        final ScheduledFuture<?> expiry = scheduler.schedule(() -> {
+            logger.debug("Request deadline expired ({}): {}", timeout, path);
+            deadline.cancel();
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        Deadline.set(deadline);
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            if (!deadline.isExpired() || response.isCommitted()) {
+                throw e;
+            }
+            // Upstream calls were aborted because the deadline has expired.
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline exceeded");
+        } finally {
+            Deadline.clear();
+            if (request.isAsyncStarted()) {
+                // Streamed responses are still in flight: the deadline is released when they complete.
+                request.getAsyncContext().addListener(new DeadlineListener(deadline, expiry));
+            } else {
+                expiry.cancel(false);
+            }
+        }
+    }
+
+    private record DeadlineListener(Deadline deadline, ScheduledFuture<?> expiry) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            expiry.cancel(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            expiry.cancel(false);
+            deadline.cancel();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // The client went away: abort in-flight work.
+            expiry.cancel(false);
+            deadline.cancel();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
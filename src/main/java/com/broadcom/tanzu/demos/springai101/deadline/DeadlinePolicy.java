@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compute request deadlines, using a default timeout by path.
+ * <p>
+ * Clients may ask for a shorter deadline using a request header (such as <code>10s</code> or <code>500ms</code>),
+ * down to a minimum timeout: a tiny deadline would only abort remote calls as soon as they are started.
+ */
+@Component
+class DeadlinePolicy {
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, Duration> timeouts = new LinkedHashMap<>();
+    private final String header;
+    private final Duration minTimeout;
+
+    DeadlinePolicy(@Value("${app.deadline.header}") String header,
+                   @Value("${app.deadline.paths}") List<String> paths,
+                   @Value("${app.deadline.min-timeout}") Duration minTimeout) {
+        this.header = header;
+        this.minTimeout = minTimeout;
+        for (final var entry : paths) {
+            final int i = entry.lastIndexOf('=');
+            if (i == -1) {
+                throw new IllegalArgumentException("Invalid deadline entry (expected path=timeout): " + entry);
+            }
+            timeouts.put(entry.substring(0, i).strip(), DurationStyle.detectAndParse(entry.substring(i + 1).strip()));
+        }
+    }
+
+    String header() {
+        return header;
+    }
+
+    /**
+     * Get the timeout for a request, or <code>null</code> if this request has no deadline.
+     */
+    Duration timeout(String path, String headerValue) {
+        Duration timeout = null;
+        for (final var e : timeouts.entrySet()) {
+            if (pathMatcher.match(e.getKey(), path)) {
+                timeout = e.getValue();
+                break;
+            }
+        }
+        if (timeout == null || headerValue == null || headerValue.isBlank()) {
+            return timeout;
+        }
+        try {
+            // The default timeout is an upper bound: clients can only ask for a shorter deadline.
+            final var requested = DurationStyle.detectAndParse(headerValue.strip());
+            if (requested.isNegative() || requested.compareTo(timeout) >= 0) {
+                return timeout;
+            }
+            return requested.compareTo(minTimeout) < 0 ? min(minTimeout, timeout) : requested;
+        } catch (IllegalArgumentException e) {
+            return timeout;
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import io.micrometer.context.ThreadLocalAccessor;
+
+/**
+ * Propagate the current deadline to executor tasks and reactive streams.
+ * <p>
+ * This accessor is registered with <code>META-INF/services</code>.
+ */
+public class DeadlineThreadLocalAccessor implements ThreadLocalAccessor<Deadline> {
+    @Override
+    public Object key() {
+        return Deadline.KEY;
+    }
+
+    @Override
+    public Deadline getValue() {
+        return Deadline.current();
+    }
+
+    @Override
+    public void setValue(Deadline value) {
+        Deadline.set(value);
+    }
+
+    @Override
+    public void setValue() {
+        Deadline.clear();
+    }
+}
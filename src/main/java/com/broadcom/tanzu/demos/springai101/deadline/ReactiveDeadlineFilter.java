@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.deadline;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bind a deadline to incoming requests, using the reactive web stack.
+ * <p>
+ * When the deadline expires, the request is cancelled (including in-flight calls to remote services)
+ * and fails with status 504. Requests are also cancelled when the client goes away.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveDeadlineFilter implements WebFilter {
+    private final DeadlinePolicy policy;
+
+    ReactiveDeadlineFilter(DeadlinePolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        final var timeout = policy.timeout(request.getPath().pathWithinApplication().value(),
+                request.getHeaders().getFirst(policy.header()));
+        if (timeout == null) {
+            return chain.filter(exchange);
+        }
+        return Mono.defer(() -> {
+            final var deadline = Deadline.after(timeout);
+            return chain.filter(exchange)
+                    .timeout(timeout, Mono.defer(() -> Mono.error(new DeadlineExceededException())))
+                    .doFinally(signal -> deadline.cancel())
+                    .contextWrite(ctx -> ctx.put(Deadline.KEY, deadline));
+        });
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import com.broadcom.tanzu.demos.springai101.similarity.VectorSimilarity;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Sentence encoder based on a BERT model (such as <code>all-MiniLM-L6-v2</code>).
+ * <p>
+ * Token embeddings computed by the transformer layers are averaged (mean pooling) and normalized:
+ * this is how most sentence-transformers models compute sentence embeddings.
+ * This class is thread-safe: weights are read-only, and every call uses its own buffers.
+ */
+final class BertEncoder {
+    private final int hidden;
+    private final int heads;
+    private final int intermediate;
+    private final int maxPositions;
+    private final float eps;
+    private final float[] wordEmbeddings;
+    private final float[] positionEmbeddings;
+    private final float[] tokenTypeEmbeddings;
+    private final float[] embeddingsNormWeight;
+    private final float[] embeddingsNormBias;
+    private final Layer[] layers;
+
+    private BertEncoder(Config config, SafeTensors weights) {
+        this.hidden = config.hiddenSize();
+        this.heads = config.numAttentionHeads();
+        this.intermediate = config.intermediateSize();
+        this.maxPositions = config.maxPositionEmbeddings();
+        // Default value used by BERT models.
+        this.eps = config.layerNormEps() > 0 ? (float) config.layerNormEps() : 1e-12f;
+
+        // Some models prefix weight names with the model type.
+        final var prefix = weights.contains("bert.embeddings.word_embeddings.weight") ? "bert." : "";
+        this.wordEmbeddings = weights.get(prefix + "embeddings.word_embeddings.weight");
+        this.positionEmbeddings = weights.get(prefix + "embeddings.position_embeddings.weight");
+        final var tokenTypes = prefix + "embeddings.token_type_embeddings.weight";
+        this.tokenTypeEmbeddings = weights.contains(tokenTypes) ? weights.get(tokenTypes) : null;
+        this.embeddingsNormWeight = weights.get(prefix + "embeddings.LayerNorm.weight");
+        this.embeddingsNormBias = weights.get(prefix + "embeddings.LayerNorm.bias");
+
+        this.layers = new Layer[config.numHiddenLayers()];
+        for (int i = 0; i < layers.length; ++i) {
+            final var p = prefix + "encoder.layer." + i + ".";
+            layers[i] = new Layer(
+                    weights.get(p + "attention.self.query.weight"), weights.get(p + "attention.self.query.bias"),
+                    weights.get(p + "attention.self.key.weight"), weights.get(p + "attention.self.key.bias"),
+                    weights.get(p + "attention.self.value.weight"), weights.get(p + "attention.self.value.bias"),
+                    weights.get(p + "attention.output.dense.weight"), weights.get(p + "attention.output.dense.bias"),
+                    weights.get(p + "attention.output.LayerNorm.weight"), weights.get(p + "attention.output.LayerNorm.bias"),
+                    weights.get(p + "intermediate.dense.weight"), weights.get(p + "intermediate.dense.bias"),
+                    weights.get(p + "output.dense.weight"), weights.get(p + "output.dense.bias"),
+                    weights.get(p + "output.LayerNorm.weight"), weights.get(p + "output.LayerNorm.bias"));
+        }
+    }
+
+    /**
+     * Load a model from a directory, holding <code>config.json</code> and <code>model.safetensors</code>.
+     */
+    static BertEncoder load(Path modelDir, ObjectMapper objectMapper) throws IOException {
+        final var config = objectMapper.readValue(Files.readAllBytes(modelDir.resolve("config.json")), Config.class);
+        if (config.hiddenSize() % config.numAttentionHeads() != 0) {
+            throw new IOException("Invalid model configuration: hidden size is not a multiple of attention heads");
+        }
+        return new BertEncoder(config, SafeTensors.open(modelDir.resolve("model.safetensors"), objectMapper));
+    }
+
+    int dimensions() {
+        return hidden;
+    }
+
+    int maxTokens() {
+        return maxPositions;
+    }
+
+    /**
+     * Compute the sentence embedding for a sequence of tokens.
+     */
+    float[] encode(int[] tokens) {
+        final int n = Math.min(tokens.length, maxPositions);
+        final var x = new float[n * hidden];
+        for (int t = 0; t < n; ++t) {
+            final int off = t * hidden;
+            System.arraycopy(wordEmbeddings, tokens[t] * hidden, x, off, hidden);
+            MatrixKernels.axpy(1, positionEmbeddings, t * hidden, x, off, hidden);
+            if (tokenTypeEmbeddings != null) {
+                MatrixKernels.axpy(1, tokenTypeEmbeddings, 0, x, off, hidden);
+            }
+        }
+        layerNorm(x, n, embeddingsNormWeight, embeddingsNormBias);
+
+        final var buffers = new Buffers(n, hidden, intermediate);
+        for (final var layer : layers) {
+            forward(layer, x, n, buffers);
+        }
+
+        // Mean pooling, then L2 normalization.
+        final var embedding = new float[hidden];
+        for (int t = 0; t < n; ++t) {
+            MatrixKernels.axpy(1f / n, x, t * hidden, embedding, 0, hidden);
+        }
+        final double norm = Math.sqrt(VectorSimilarity.dot(embedding, 0, embedding, 0, hidden));
+        if (norm > 0) {
+            for (int i = 0; i < hidden; ++i) {
+                embedding[i] /= (float) norm;
+            }
+        }
+        return embedding;
+    }
+
+    private void forward(Layer l, float[] x, int n, Buffers b) {
+        // Self-attention.
+        MatrixKernels.linear(x, n, hidden, l.queryWeight(), l.queryBias(), hidden, b.q);
+        MatrixKernels.linear(x, n, hidden, l.keyWeight(), l.keyBias(), hidden, b.k);
+        MatrixKernels.linear(x, n, hidden, l.valueWeight(), l.valueBias(), hidden, b.v);
+        final int headSize = hidden / heads;
+        final float scale = (float) (1 / Math.sqrt(headSize));
+        Arrays.fill(b.context, 0);
+        for (int h = 0; h < heads; ++h) {
+            final int headOffset = h * headSize;
+            for (int i = 0; i < n; ++i) {
+                float max = Float.NEGATIVE_INFINITY;
+                for (int j = 0; j < n; ++j) {
+                    final float score = VectorSimilarity.dot(b.q, i * hidden + headOffset, b.k, j * hidden + headOffset, headSize) * scale;
+                    b.scores[j] = score;
+                    max = Math.max(max, score);
+                }
+                float sum = 0;
+                for (int j = 0; j < n; ++j) {
+                    b.scores[j] = (float) Math.exp(b.scores[j] - max);
+                    sum += b.scores[j];
+                }
+                for (int j = 0; j < n; ++j) {
+                    MatrixKernels.axpy(b.scores[j] / sum, b.v, j * hidden + headOffset, b.context, i * hidden + headOffset, headSize);
+                }
+            }
+        }
+        MatrixKernels.linear(b.context, n, hidden, l.attentionOutputWeight(), l.attentionOutputBias(), hidden, b.out);
+        for (int i = 0; i < x.length; ++i) {
+            x[i] += b.out[i];
+        }
+        layerNorm(x, n, l.attentionNormWeight(), l.attentionNormBias());
+
+        // Feed-forward network.
+        MatrixKernels.linear(x, n, hidden, l.intermediateWeight(), l.intermediateBias(), intermediate, b.intermediate);
+        for (int i = 0; i < b.intermediate.length; ++i) {
+            b.intermediate[i] = gelu(b.intermediate[i]);
+        }
+        MatrixKernels.linear(b.intermediate, n, intermediate, l.outputWeight(), l.outputBias(), hidden, b.out);
+        for (int i = 0; i < x.length; ++i) {
+            x[i] += b.out[i];
+        }
+        layerNorm(x, n, l.outputNormWeight(), l.outputNormBias());
+    }
+
+    private void layerNorm(float[] x, int n, float[] weight, float[] bias) {
+        for (int t = 0; t < n; ++t) {
+            final int off = t * hidden;
+            float mean = 0;
+            for (int i = 0; i < hidden; ++i) {
+                mean += x[off + i];
+            }
+            mean /= hidden;
+            float variance = 0;
+            for (int i = 0; i < hidden; ++i) {
+                final float d = x[off + i] - mean;
+                variance += d * d;
+            }
+            variance /= hidden;
+            final float inv = (float) (1 / Math.sqrt(variance + eps));
+            for (int i = 0; i < hidden; ++i) {
+                x[off + i] = (x[off + i] - mean) * inv * weight[i] + bias[i];
+            }
+        }
+    }
+
+    private static float gelu(float x) {
+        return (float) (0.5 * x * (1 + erf(x / Math.sqrt(2))));
+    }
+
+    private static double erf(double x) {
+        // Abramowitz and Stegun approximation (7.1.26), max error: 1.5e-7.
+        final double t = 1 / (1 + 0.3275911 * Math.abs(x));
+        final double y = 1 - (((((1.061405429 * t - 1.453152027) * t) + 1.421413741) * t - 0.284496736) * t + 0.254829592) * t * Math.exp(-x * x);
+        return x >= 0 ? y : -y;
+    }
+
+    /**
+     * Model configuration, read from <code>config.json</code>.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Config(
+            @JsonProperty("hidden_size") int hiddenSize,
+            @JsonProperty("num_hidden_layers") int numHiddenLayers,
+            @JsonProperty("num_attention_heads") int numAttentionHeads,
+            @JsonProperty("intermediate_size") int intermediateSize,
+            @JsonProperty("max_position_embeddings") int maxPositionEmbeddings,
+            @JsonProperty("layer_norm_eps") double layerNormEps
+    ) {
+    }
+
+    private record Layer(
+            float[] queryWeight, float[] queryBias,
+            float[] keyWeight, float[] keyBias,
+            float[] valueWeight, float[] valueBias,
+            float[] attentionOutputWeight, float[] attentionOutputBias,
+            float[] attentionNormWeight, float[] attentionNormBias,
+            float[] intermediateWeight, float[] intermediateBias,
+            float[] outputWeight, float[] outputBias,
+            float[] outputNormWeight, float[] outputNormBias
+    ) {
+    }
+
+    /**
+     * Buffers reused by all layers when encoding a sequence.
+     */
+    private static final class Buffers {
+        final float[] q;
+        final float[] k;
+        final float[] v;
+        final float[] context;
+        final float[] out;
+        final float[] intermediate;
+        final float[] scores;
+
+        Buffers(int n, int hidden, int intermediate) {
+            this.q = new float[n * hidden];
+            this.k = new float[n * hidden];
+            this.v = new float[n * hidden];
+            this.context = new float[n * hidden];
+            this.out = new float[n * hidden];
+            this.intermediate = new float[n * intermediate];
+            this.scores = new float[n];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Use an embedding model running in-process instead of the AI provider
+ * (enabled with <code>app.embedding.local.enabled</code>).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "app.embedding.local.enabled", havingValue = "true")
+class LocalEmbeddingConfig {
+    private final Logger logger = LoggerFactory.getLogger(LocalEmbeddingConfig.class);
+
+    @Bean
+    @Primary
+    EmbeddingModel embeddingModel(ObjectMapper objectMapper,
+                                  @Value("${app.embedding.local.model-dir}") Path modelDir,
+                                  @Value("${app.embedding.local.threads}") int threads,
+                                  @Value("${app.embedding.local.max-tokens}") int maxTokens) throws IOException {
+        // Model files are the ones published on Hugging Face for sentence-transformers models.
+        final var encoder = BertEncoder.load(modelDir, objectMapper);
+        final var tokenizer = WordPieceTokenizer.load(modelDir.resolve("vocab.txt"), lowerCase(modelDir, objectMapper));
+
+        final var threadCount = new AtomicInteger();
+        final var executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), r -> {
+            final var t = new Thread(r, "embedding-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        logger.info("Using local embedding model from {}: dimensions={}, SIMD={}",
+                modelDir, encoder.dimensions(), MatrixKernels.SIMD);
+        return new LocalEmbeddingModel(encoder, tokenizer, executor, maxTokens);
+    }
+
+    private static boolean lowerCase(Path modelDir, ObjectMapper objectMapper) throws IOException {
+        final var tokenizerConfig = modelDir.resolve("tokenizer_config.json");
+        if (!Files.exists(tokenizerConfig)) {
+            return true;
+        }
+        final JsonNode node = objectMapper.readTree(tokenizerConfig.toFile());
+        return node.path("do_lower_case").asBoolean(true);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Embedding model running in-process, on CPU.
+ * <p>
+ * Inputs of a request are encoded in parallel using a dedicated thread pool:
+ * no network call is made.
+ */
+class LocalEmbeddingModel implements EmbeddingModel, AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(LocalEmbeddingModel.class);
+    private final BertEncoder encoder;
+    private final WordPieceTokenizer tokenizer;
+    private final ExecutorService executor;
+    private final int maxTokens;
+
+    LocalEmbeddingModel(BertEncoder encoder, WordPieceTokenizer tokenizer, ExecutorService executor, int maxTokens) {
+        this.encoder = encoder;
+        this.tokenizer = tokenizer;
+        this.executor = executor;
+        this.maxTokens = Math.min(maxTokens, encoder.maxTokens());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        final var inputs = request.getInstructions();
+        if (inputs.size() == 1) {
+            // No need to use another thread for a single input (such as a query).
+            return new EmbeddingResponse(List.of(new Embedding(embed(inputs.getFirst()), 0)));
+        }
+
+        final var tasks = new ArrayList<Future<float[]>>(inputs.size());
+        for (final var input : inputs) {
+            tasks.add(executor.submit(() -> embed(input)));
+        }
+        final var embeddings = new ArrayList<Embedding>(inputs.size());
+        try {
+            for (int i = 0; i < tasks.size(); ++i) {
+                embeddings.add(new Embedding(tasks.get(i).get(), i));
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(t -> t.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing embeddings", e);
+        } catch (ExecutionException e) {
+            tasks.forEach(t -> t.cancel(true));
+            throw new IllegalStateException("Failed to compute embeddings", e.getCause());
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        final long start = System.nanoTime();
+        final var tokens = tokenizer.encode(text, maxTokens);
+        final var embedding = encoder.encode(tokens);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Computed embedding for {} tokens in {} us", tokens.length, (System.nanoTime() - start) / 1000);
+        }
+        return embedding;
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public int dimensions() {
+        return encoder.dimensions();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import com.broadcom.tanzu.demos.springai101.similarity.VectorSimilarity;
+
+/**
+ * Matrix kernels used by the local embedding model.
+ * <p>
+ * The Java Vector API is used when the module <code>jdk.incubator.vector</code> is available
+ * (run the JVM with <code>--add-modules jdk.incubator.vector</code>), scalar loops are used otherwise.
+ */
+final class MatrixKernels {
+    static final boolean SIMD = VectorSimilarity.SIMD;
+    // Output rows are processed by blocks, so that weights are reused while they are in CPU caches.
+    private static final int BLOCK_SIZE = 64;
+
+    private MatrixKernels() {
+    }
+
+    /**
+     * Compute <code>y[offset + i] += alpha * x[offset + i]</code>.
+     */
+    static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        if (SIMD) {
+            SimdKernels.axpy(alpha, x, xOffset, y, yOffset, length);
+            return;
+        }
+        for (int i = 0; i < length; ++i) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    /**
+     * Apply a linear layer: <code>y = x * transpose(w) + bias</code>.
+     *
+     * @param x    input matrix (<code>rows x in</code>)
+     * @param w    weights (<code>out x in</code>, as stored by PyTorch linear layers)
+     * @param bias bias (<code>out</code>), may be <code>null</code>
+     * @param y    output matrix (<code>rows x out</code>)
+     */
+    static void linear(float[] x, int rows, int in, float[] w, float[] bias, int out, float[] y) {
+        for (int block = 0; block < out; block += BLOCK_SIZE) {
+            final int blockEnd = Math.min(block + BLOCK_SIZE, out);
+            for (int r = 0; r < rows; ++r) {
+                final int xOffset = r * in;
+                final int yOffset = r * out;
+                for (int o = block; o < blockEnd; ++o) {
+                    y[yOffset + o] = VectorSimilarity.dot(x, xOffset, w, o * in, in) + (bias == null ? 0 : bias[o]);
+                }
+            }
+        }
+    }
+}
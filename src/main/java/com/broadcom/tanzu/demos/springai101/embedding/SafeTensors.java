@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read model weights from a file using the safetensors format.
+ * <p>
+ * Such a file starts with a JSON header describing tensors (type, shape and offsets),
+ * followed by raw tensor data in little-endian order. The file is memory-mapped.
+ */
+final class SafeTensors {
+    private final ByteBuffer data;
+    private final Map<String, Tensor> tensors;
+
+    private SafeTensors(ByteBuffer data, Map<String, Tensor> tensors) {
+        this.data = data;
+        this.tensors = tensors;
+    }
+
+    static SafeTensors open(Path file, ObjectMapper objectMapper) throws IOException {
+        try (final var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            final long headerSize = buf.getLong(0);
+            if (headerSize <= 0 || headerSize > buf.capacity() - 8) {
+                throw new IOException("Invalid safetensors file: " + file);
+            }
+            final var headerBytes = new byte[(int) headerSize];
+            buf.get(8, headerBytes);
+            final JsonNode header = objectMapper.readTree(headerBytes);
+
+            final var tensors = new HashMap<String, Tensor>();
+            final var fields = header.fields();
+            while (fields.hasNext()) {
+                final var e = fields.next();
+                if ("__metadata__".equals(e.getKey())) {
+                    continue;
+                }
+                final var node = e.getValue();
+                final var shape = new int[node.get("shape").size()];
+                for (int i = 0; i < shape.length; ++i) {
+                    shape[i] = node.get("shape").get(i).asInt();
+                }
+                final var offsets = node.get("data_offsets");
+                tensors.put(e.getKey(), new Tensor(node.get("dtype").asText(), shape, offsets.get(0).asLong(), offsets.get(1).asLong()));
+            }
+            final var data = buf.slice((int) (8 + headerSize), (int) (buf.capacity() - 8 - headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+            return new SafeTensors(data, tensors);
+        }
+    }
+
+    Set<String> names() {
+        return tensors.keySet();
+    }
+
+    boolean contains(String name) {
+        return tensors.containsKey(name);
+    }
+
+    int[] shape(String name) {
+        return tensor(name).shape().clone();
+    }
+
+    /**
+     * Read a tensor as a flat array of floats (row-major order).
+     */
+    float[] get(String name) {
+        final var t = tensor(name);
+        final long length = t.end() - t.start();
+        return switch (t.dtype()) {
+            case "F32" -> {
+                final var values = new float[(int) (length / 4)];
+                data.slice((int) t.start(), (int) length).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+                yield values;
+            }
+            case "F16", "BF16" -> {
+                final var shorts = data.slice((int) t.start(), (int) length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                final var values = new float[(int) (length / 2)];
+                final boolean bf16 = "BF16".equals(t.dtype());
+                for (int i = 0; i < values.length; ++i) {
+                    final short s = shorts.get(i);
+                    values[i] = bf16 ? Float.intBitsToFloat((s & 0xFFFF) << 16) : Float.float16ToFloat(s);
+                }
+                yield values;
+            }
+            default -> throw new IllegalArgumentException("Unsupported tensor type for " + name + ": " + t.dtype());
+        };
+    }
+
+    private Tensor tensor(String name) {
+        final var t = tensors.get(name);
+        if (t == null) {
+            throw new IllegalArgumentException("Tensor not found: " + name);
+        }
+        return t;
+    }
+
+    private record Tensor(String dtype, int[] shape, long start, long end) {
+    }
+}
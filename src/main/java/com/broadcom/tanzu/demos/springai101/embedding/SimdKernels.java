@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels implemented with the Java Vector API.
+ * <p>
+ * This class is only loaded when the module <code>jdk.incubator.vector</code> is available.
+ */
+final class SimdKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private SimdKernels() {
+    }
+
+    static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        final var va = FloatVector.broadcast(SPECIES, alpha);
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final var vx = FloatVector.fromArray(SPECIES, x, xOffset + i);
+            final var vy = FloatVector.fromArray(SPECIES, y, yOffset + i);
+            vx.fma(va, vy).intoArray(y, yOffset + i);
+        }
+        for (; i < length; ++i) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+}
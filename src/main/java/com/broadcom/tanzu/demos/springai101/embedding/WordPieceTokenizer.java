@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizer used by BERT models: text is split on whitespaces and punctuation,
+ * then words are split into sub-words found in the vocabulary (greedy longest match first).
+ */
+final class WordPieceTokenizer {
+    private static final int MAX_WORD_LENGTH = 100;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{Mn}+");
+    private final Map<String, Integer> vocab;
+    private final boolean lowerCase;
+    private final int cls;
+    private final int sep;
+    private final int unk;
+
+    private WordPieceTokenizer(Map<String, Integer> vocab, boolean lowerCase) {
+        this.vocab = vocab;
+        this.lowerCase = lowerCase;
+        this.cls = id("[CLS]");
+        this.sep = id("[SEP]");
+        this.unk = id("[UNK]");
+    }
+
+    static WordPieceTokenizer load(Path vocabFile, boolean lowerCase) throws IOException {
+        final var lines = Files.readAllLines(vocabFile, StandardCharsets.UTF_8);
+        final var vocab = new HashMap<String, Integer>(lines.size() * 2);
+        for (int i = 0; i < lines.size(); ++i) {
+            vocab.putIfAbsent(lines.get(i).strip(), i);
+        }
+        return new WordPieceTokenizer(vocab, lowerCase);
+    }
+
+    private int id(String token) {
+        final var id = vocab.get(token);
+        if (id == null) {
+            throw new IllegalArgumentException("Token not found in vocabulary: " + token);
+        }
+        return id;
+    }
+
+    /**
+     * Convert a text to token ids, including special tokens.
+     *
+     * @param text      text to encode
+     * @param maxTokens max number of tokens (text is truncated)
+     * @return token ids
+     */
+    int[] encode(String text, int maxTokens) {
+        final var ids = new ArrayList<Integer>(64);
+        ids.add(cls);
+        for (final var word : basicTokens(text)) {
+            if (ids.size() >= maxTokens - 1) {
+                break;
+            }
+            wordPiece(word, ids);
+        }
+        if (ids.size() > maxTokens - 1) {
+            ids.subList(maxTokens - 1, ids.size()).clear();
+        }
+        ids.add(sep);
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private List<String> basicTokens(String text) {
+        var str = text;
+        if (lowerCase) {
+            // Remove accents as well.
+            str = ACCENTS.matcher(Normalizer.normalize(str.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+        }
+        final var tokens = new ArrayList<String>(64);
+        final var buf = new StringBuilder(32);
+        for (int i = 0; i < str.length(); ) {
+            final int c = str.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                flush(buf, tokens);
+            } else if (isPunctuation(c) || isCjk(c)) {
+                flush(buf, tokens);
+                tokens.add(new String(Character.toChars(c)));
+            } else {
+                buf.appendCodePoint(c);
+            }
+        }
+        flush(buf, tokens);
+        return tokens;
+    }
+
+    private void wordPiece(String word, List<Integer> ids) {
+        if (word.length() > MAX_WORD_LENGTH) {
+            ids.add(unk);
+            return;
+        }
+        final int mark = ids.size();
+        int start = 0;
+        while (start < word.length()) {
+            Integer match = null;
+            int end = word.length();
+            for (; end > start; --end) {
+                final var piece = start == 0 ? word.substring(start, end) : "##" + word.substring(start, end);
+                match = vocab.get(piece);
+                if (match != null) {
+                    break;
+                }
+            }
+            if (match == null) {
+                // The whole word is unknown.
+                ids.subList(mark, ids.size()).clear();
+                ids.add(unk);
+                return;
+            }
+            ids.add(match);
+            start = end;
+        }
+    }
+
+    private static void flush(StringBuilder buf, List<String> tokens) {
+        if (!buf.isEmpty()) {
+            tokens.add(buf.toString());
+            buf.setLength(0);
+        }
+    }
+
+    private static boolean isPunctuation(int c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        return switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isCjk(int c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0x20000 && c <= 0x2A6DF)
+                || (c >= 0xF900 && c <= 0xFAFF) || (c >= 0x2F800 && c <= 0x2FA1F);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.broadcom.tanzu.demos.springai101.hello;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.PromptChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
@@ -39,17 +40,17 @@ class HelloController {
     @GetMapping(value = "/hello", produces = MediaType.TEXT_PLAIN_VALUE)
     CharSequence hello(@RequestParam(name = "n", defaultValue = "John Doe") String name) {
         // In this example, you can see that the AI engine has no "session" or memory of past conversations.
-        return chatWithAI(name, List.of());
+        return chatWithAI("/hello", name, List.of());
     }
 
     @GetMapping(value = "/hello-memory", produces = MediaType.TEXT_PLAIN_VALUE)
     CharSequence helloMemory(@RequestParam(name = "n", defaultValue = "John Doe") String name) {
         // Let's bring a PromptChatMemoryAdvisor to start a "real" conversation with the AI engine.
         // Note how the result is different this time.
-        return chatWithAI(name, List.of(new PromptChatMemoryAdvisor(new InMemoryChatMemory())));
+        return chatWithAI("/hello-memory", name, List.of(new PromptChatMemoryAdvisor(new InMemoryChatMemory())));
     }
 
-    private CharSequence chatWithAI(String name, List<Advisor> advisors) {
+    private CharSequence chatWithAI(String endpoint, String name, List<Advisor> advisors) {
         final var res = new StringBuilder(128);
         res.append("Current time is: ").append(Instant.now()).append("\n\n");
 
@@ -61,6 +62,7 @@ class HelloController {
         res.append("💬️ ").append(p1).append("\n");
         res.append("🤖 ").append(
                         chatClient.prompt().advisors(advisors)
+                                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, endpoint))
                                 .system(sysPrompt)
                                 .user(p1)
                                 .call().content())
@@ -70,6 +72,7 @@ class HelloController {
         res.append("💬️ ").append(p2).append("\n");
         res.append("🤖 ").append(
                         chatClient.prompt().advisors(advisors)
+                                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, endpoint))
                                 .system(sysPrompt)
                                 .user(p2)
                                 .call().content())
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.imagegen;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.image.ImageModel;
+import org.springframework.ai.image.ImageOptionsBuilder;
+import org.springframework.ai.image.ImagePrompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generate images in background.
+ * <p>
+ * Requests are deduplicated using a hash of the prompt and image options: a request for an image
+ * which was already generated completes immediately, and concurrent requests for the same image
+ * share a single job. Generation runs in a bounded worker pool: requests are rejected when the
+ * queue is full.
+ * <p>
+ * Only unfinished jobs and the latest failed jobs are kept in memory: completed jobs are found
+ * using generated images.
+ */
+@Service
+@ConditionalOnProperty(name = "app.ai-provider", havingValue = "openai")
+class ImageGenerationService {
+    private final Logger logger = LoggerFactory.getLogger(ImageGenerationService.class);
+    private final ImageModel imageModel;
+    private final ImageStore imageStore;
+    private final RestClient restClient;
+    private final ThreadPoolTaskExecutor executor;
+    // Pending and running jobs: this map is bounded by the worker pool size and the queue capacity.
+    private final Map<String, ImageJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ImageJob> failedJobs;
+    private final Map<String, CompletableFuture<ImageJob>> inFlight = new ConcurrentHashMap<>();
+
+    ImageGenerationService(@Lazy ImageModel imageModel, ImageStore imageStore, RestClient.Builder restClientBuilder,
+                           TaskDecorator taskDecorator,
+                           @Value("${app.images.workers}") int workers,
+                           @Value("${app.images.queue-capacity}") int queueCapacity,
+                           @Value("${app.images.max-failed-jobs}") int maxFailedJobs) {
+        this.imageModel = imageModel;
+        this.imageStore = imageStore;
+        this.restClient = restClientBuilder.build();
+        // Failed jobs are kept for a while, so that clients can get the error: evict the oldest ones.
+        this.failedJobs = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageJob> eldest) {
+                return size() > maxFailedJobs;
+            }
+        });
+
+        // Use a dedicated pool: image generation is slow, and should not delay other async tasks.
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("imagegen-");
+        executor.setTaskDecorator(taskDecorator);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Generate an image.
+     *
+     * @param req image request
+     * @return job, completed when the image is available
+     */
+    CompletableFuture<ImageJob> generate(ImageRequest req) {
+        final var key = req.key();
+        final var cached = imageStore.resolve(key);
+        if (cached.isPresent()) {
+            // This image was already generated: no need to call the model.
+            logger.debug("Found generated image for key {}: {}", key, cached.get());
+            return CompletableFuture.completedFuture(ImageJob.pending(key).completed(cached.get()));
+        }
+
+        final var future = inFlight.computeIfAbsent(key, k -> {
+            jobs.put(k, ImageJob.pending(k));
+            failedJobs.remove(k);
+            try {
+                return executor.submitCompletable(() -> run(k, req));
+            } catch (TaskRejectedException e) {
+                jobs.remove(k);
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many pending image generation jobs");
+            }
+        });
+        future.whenComplete((job, e) -> inFlight.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Get a job.
+     *
+     * @param id job id
+     * @return job, if any
+     */
+    Optional<ImageJob> get(String id) {
+        final var job = jobs.get(id);
+        if (job != null) {
+            return Optional.of(job);
+        }
+        final var failedJob = failedJobs.get(id);
+        if (failedJob != null) {
+            return Optional.of(failedJob);
+        }
+        // Jobs are not persisted, but generated images are.
+        return imageStore.resolve(id).map(hash -> ImageJob.pending(id).completed(hash));
+    }
+
+    private ImageJob run(String key, ImageRequest req) {
+        jobs.computeIfPresent(key, (k, j) -> j.running());
+        try {
+            logger.info("Generating image for key {}", key);
+            final var opts = ImageOptionsBuilder.builder()
+                    .withModel(req.model())
+                    .withWidth(req.width())
+                    .withHeight(req.height())
+                    .withResponseFormat("b64_json")
+                    .build();
+            final var output = imageModel.call(new ImagePrompt(req.prompt(), opts)).getResult().getOutput();
+
+            // Image content is usually included in the response:
+            // download it if the provider only returned an URL (which is short-lived anyway).
+            final byte[] data = output.getB64Json() != null
+                    ? Base64.getDecoder().decode(output.getB64Json())
+                    : restClient.get().uri(output.getUrl()).retrieve().body(byte[].class);
+
+            final var hash = imageStore.put(data);
+            imageStore.link(key, hash);
+            logger.info("Generated image for key {}: {}", key, hash);
+            // The generated image is linked to this key: this job can be forgotten.
+            return job(jobs.remove(key), key).completed(hash);
+        } catch (Exception e) {
+            logger.warn("Failed to generate image for key {}", key, e);
+            final var failed = job(jobs.get(key), key).failed(e.getMessage());
+            failedJobs.put(key, failed);
+            jobs.remove(key);
+            return failed;
+        }
+    }
+
+    private static ImageJob job(ImageJob job, String key) {
+        return job == null ? ImageJob.pending(key) : job;
+    }
+
+    /**
+     * Image generation request.
+     */
+    record ImageRequest(String prompt, String model, int width, int height) {
+        String key() {
+            // Any change in the prompt or in image options leads to a new image.
+            final var str = String.join("\n", model, String.valueOf(width), String.valueOf(height), prompt);
+            return ImageStore.sha256(str.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
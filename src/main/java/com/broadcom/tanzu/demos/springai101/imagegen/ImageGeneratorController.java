@@ -16,42 +16,43 @@
 
 package com.broadcom.tanzu.demos.springai101.imagegen;
 
-import org.springframework.ai.image.ImageModel;
-import org.springframework.ai.image.ImageOptionsBuilder;
-import org.springframework.ai.image.ImagePrompt;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @ConditionalOnProperty(name = "app.ai-provider", havingValue = "openai")
 class ImageGeneratorController {
-    private final ImageModel imageModel;
+    private final ImageGenerationService imageGenerationService;
 
-    ImageGeneratorController(ImageModel imageModel) {
-        this.imageModel = imageModel;
+    ImageGeneratorController(ImageGenerationService imageGenerationService) {
+        this.imageGenerationService = imageGenerationService;
     }
 
     @GetMapping(value = "/imagegen")
-    String generateImage(@RequestParam(name = "q", defaultValue = "A penguin sitting on a building, cartoon-style", required = false)
-                         String query) {
+    CompletableFuture<ResponseEntity<Void>> generateImage(@RequestParam(name = "q", defaultValue = "A penguin sitting on a building, cartoon-style", required = false)
+                                                          String query) {
         // Pick a model for generating images.
         final var imageModelName = "dall-e-3";
 
-        // Set instructions for image generation.
-        final var opts = ImageOptionsBuilder.builder()
-                .withModel(imageModelName)
-                .withWidth(1024)
-                .withHeight(1024)
-                .build();
-
         // Let's generate an image!
-        final var imagePrompt = new ImagePrompt(query, opts);
-        final var resp = imageModel.call(imagePrompt);
-        final var imageUrl = resp.getResult().getOutput().getUrl();
-
-        // Redirect this request to the generated image.
-        return "redirect:" + imageUrl;
+        // The request thread is released while the image is being generated:
+        // identical requests reuse the same image.
+        final var req = new ImageGenerationService.ImageRequest(query, imageModelName, 1024, 1024);
+        return imageGenerationService.generate(req).thenApply(job -> {
+            if (job.status() != ImageJob.Status.COMPLETED) {
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Failed to generate image: " + job.error());
+            }
+            // Redirect this request to the generated image:
+            // a plain response works with both servlet and reactive stacks.
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create("/images/" + job.imageHash())).<Void>build();
+        });
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.imagegen;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * An image generation job.
+ *
+ * @param id        job id (a hash of the prompt and image options)
+ * @param status    job status
+ * @param imageHash hash of the generated image, when completed
+ * @param error     error message, when failed
+ * @param createdAt creation time
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record ImageJob(
+        String id,
+        Status status,
+        String imageHash,
+        String error,
+        Instant createdAt
+) {
+    enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    static ImageJob pending(String id) {
+        return new ImageJob(id, Status.PENDING, null, null, Instant.now());
+    }
+
+    ImageJob running() {
+        return new ImageJob(id, Status.RUNNING, null, null, createdAt);
+    }
+
+    ImageJob completed(String imageHash) {
+        return new ImageJob(id, Status.COMPLETED, imageHash, null, createdAt);
+    }
+
+    ImageJob failed(String error) {
+        return new ImageJob(id, Status.FAILED, null, error, createdAt);
+    }
+
+    boolean isDone() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
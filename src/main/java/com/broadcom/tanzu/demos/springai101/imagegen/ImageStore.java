@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.imagegen;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed image store, using the local file system.
+ * <p>
+ * Images are stored using the SHA-256 hash of their content: storing the same image twice is a no-op.
+ * Generation keys (such as a prompt hash) can be linked to an image, so that results survive restarts.
+ */
+@Component
+class ImageStore {
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private final Path imagesDir;
+    private final Path keysDir;
+
+    ImageStore(@Value("${app.images.dir}") Path dir) throws IOException {
+        this.imagesDir = dir.resolve("images");
+        this.keysDir = dir.resolve("keys");
+        Files.createDirectories(imagesDir);
+        Files.createDirectories(keysDir);
+    }
+
+    /**
+     * Store an image.
+     *
+     * @param data image content
+     * @return image hash
+     */
+    String put(byte[] data) throws IOException {
+        final var hash = sha256(data);
+        final var file = imageFile(hash);
+        if (!Files.exists(file)) {
+            // Write to a temporary file first: readers never see a partial image.
+            Files.createDirectories(file.getParent());
+            final var tmp = Files.createTempFile(file.getParent(), hash, ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Find an image file.
+     *
+     * @param hash image hash
+     * @return image file, if any
+     */
+    Optional<Path> find(String hash) {
+        if (!isValidHash(hash)) {
+            return Optional.empty();
+        }
+        final var file = imageFile(hash);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Link a generation key to an image.
+     */
+    void link(String key, String hash) throws IOException {
+        Files.writeString(keysDir.resolve(key), hash, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Find the image linked to a generation key.
+     *
+     * @return image hash, if any
+     */
+    Optional<String> resolve(String key) {
+        if (!isValidHash(key)) {
+            return Optional.empty();
+        }
+        try {
+            final var file = keysDir.resolve(key);
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            final var hash = Files.readString(file, StandardCharsets.US_ASCII).strip();
+            return find(hash).map(f -> hash);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path imageFile(String hash) {
+        // Spread files across sub-directories to keep directories small.
+        return imagesDir.resolve(hash.substring(0, 2)).resolve(hash + ".png");
+    }
+
+    static boolean isValidHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
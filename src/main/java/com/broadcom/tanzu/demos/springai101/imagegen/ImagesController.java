@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.imagegen;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.net.URI;
+import java.time.Duration;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "app.ai-provider", havingValue = "openai")
+class ImagesController {
+    private final ImageGenerationService imageGenerationService;
+    private final ImageStore imageStore;
+
+    ImagesController(ImageGenerationService imageGenerationService, ImageStore imageStore) {
+        this.imageGenerationService = imageGenerationService;
+        this.imageStore = imageStore;
+    }
+
+    @PostMapping(value = "/images/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<ImageJob> submit(@RequestParam(name = "q") String query,
+                                    @RequestParam(name = "model", defaultValue = "dall-e-3") String model,
+                                    @RequestParam(name = "width", defaultValue = "1024") int width,
+                                    @RequestParam(name = "height", defaultValue = "1024") int height) {
+        final var req = new ImageGenerationService.ImageRequest(query, model, width, height);
+        // Don't wait for the image: the client polls the job until it is done.
+        imageGenerationService.generate(req);
+        final var job = imageGenerationService.get(req.key()).orElseThrow();
+        final var location = URI.create("/images/jobs/" + job.id());
+        return (job.isDone() ? ResponseEntity.ok() : ResponseEntity.accepted()).location(location).body(job);
+    }
+
+    @GetMapping(value = "/images/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<ImageJob> job(@PathVariable("id") String id) {
+        return ResponseEntity.of(imageGenerationService.get(id));
+    }
+
+    @GetMapping(value = "/images/{hash}")
+    ResponseEntity<Resource> image(@PathVariable("hash") String hash, WebRequest webRequest) {
+        final var file = imageStore.find(hash);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        // Images are immutable (their URL is derived from their content): let clients cache them forever.
+        final var etag = "\"" + hash + "\"";
+        final var cacheControl = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(304).eTag(etag).cacheControl(cacheControl).build();
+        }
+        // The file is streamed from disk, without loading the image in memory.
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(new FileSystemResource(file.get()));
+    }
+}
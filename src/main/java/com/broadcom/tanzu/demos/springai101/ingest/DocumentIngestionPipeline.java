@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.ai.vectorstore.RedisVectorStore.MetadataField;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ingest documents of any size into the vector store.
+ * <p>
+ * Documents are split into chunks using a {@link TextSplitter}: every chunk keeps the metadata
+ * of its parent document, and is linked to it with the {@value #PARENT_ID} metadata field.
+ * A search hit on a chunk can then be resolved to its parent document.
+ * <p>
+ * Chunks are buffered so that embeddings are computed in batches, instead of one call per document.
+ */
+@Component
+public class DocumentIngestionPipeline {
+    /**
+     * Metadata field holding the parent document id.
+     */
+    public static final String PARENT_ID = "parentId";
+    /**
+     * Metadata field holding the chunk index in the parent document.
+     */
+    public static final String CHUNK_INDEX = "chunkIndex";
+    /**
+     * Metadata field holding the kind of document (such as {@value #KIND_DOCUMENT}).
+     */
+    public static final String KIND = "kind";
+    /**
+     * Kind used for documents which are not movies.
+     */
+    public static final String KIND_DOCUMENT = "document";
+    /**
+     * Metadata field holding the name of a document (which is not a movie).
+     */
+    public static final String NAME = "name";
+    /**
+     * Metadata fields this pipeline relies on.
+     * <p>
+     * Vector stores which only return indexed metadata (such as Redis) must declare these fields:
+     * otherwise, chunks cannot be resolved to their parent document.
+     */
+    public static final List<MetadataField> METADATA_FIELDS = List.of(
+            MetadataField.tag(KIND),
+            MetadataField.tag(PARENT_ID),
+            MetadataField.numeric(CHUNK_INDEX),
+            MetadataField.text(NAME));
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentIngestionPipeline.class);
+    private final VectorStore vectorStore;
+    private final TextSplitter textSplitter;
+    private final int batchSize;
+    private final List<Document> buffer = new ArrayList<>();
+
+    DocumentIngestionPipeline(@Lazy VectorStore vectorStore, TextSplitter textSplitter,
+                              @Value("${app.ingest.batch-size}") int batchSize) {
+        this.vectorStore = vectorStore;
+        this.textSplitter = textSplitter;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Split a document into chunks.
+     *
+     * @param parent document to split
+     * @return chunks, linked to the parent document
+     */
+    public List<Document> split(Document parent) {
+        final var parts = textSplitter.apply(List.of(parent));
+        final var chunks = new ArrayList<Document>(parts.size());
+        for (int i = 0; i < parts.size(); ++i) {
+            // Use stable chunk ids: ingesting the same document twice overwrites existing chunks
+            // (use replace() if the document may have changed).
+            final var metadata = new HashMap<>(parent.getMetadata());
+            metadata.put(PARENT_ID, parent.getId());
+            metadata.put(CHUNK_INDEX, i);
+            chunks.add(new Document(parent.getId() + ":" + i, parts.get(i).getContent(), metadata));
+        }
+        return chunks;
+    }
+
+    /**
+     * Ingest a document: chunks may be buffered until {@link #flush()} is called.
+     *
+     * @param parent document to ingest
+     * @return number of chunks
+     */
+    public int ingest(Document parent) {
+        final var chunks = split(parent);
+        add(chunks);
+        return chunks.size();
+    }
+
+    /**
+     * Ingest a document which may already be in the vector store: existing chunks are deleted first,
+     * so that no stale chunk is left if the document now yields fewer chunks.
+     * Chunks are added right away.
+     *
+     * @param parent document to ingest
+     * @return number of chunks
+     */
+    public int replace(Document parent) {
+        final var chunks = split(parent);
+        delete(parent.getId());
+        add(chunks);
+        flush();
+        return chunks.size();
+    }
+
+    /**
+     * Delete all chunks of a document from the vector store.
+     *
+     * @param parentId parent document id
+     */
+    public void delete(String parentId) {
+        // Vector stores can only delete documents by id: look up chunks using their metadata first.
+        final var filter = new FilterExpressionBuilder().eq(PARENT_ID, parentId).build();
+        final var request = SearchRequest.query(parentId).withTopK(batchSize)
+                .withSimilarityThresholdAll().withFilterExpression(filter);
+        for (; ; ) {
+            final var ids = vectorStore.similaritySearch(request).stream().map(Document::getId).toList();
+            if (ids.isEmpty()) {
+                return;
+            }
+            logger.debug("Deleting {} chunk(s) of document {}", ids.size(), parentId);
+            if (!vectorStore.delete(ids).orElse(true)) {
+                throw new IllegalStateException("Failed to delete chunks of document " + parentId);
+            }
+            if (ids.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add chunks to the vector store, in batches.
+     *
+     * @param chunks chunks to add
+     */
+    public void add(List<Document> chunks) {
+        List<Document> batch = null;
+        synchronized (buffer) {
+            buffer.addAll(chunks);
+            if (buffer.size() >= batchSize) {
+                batch = drain();
+            }
+        }
+        if (batch != null) {
+            store(batch);
+        }
+    }
+
+    /**
+     * Add all buffered chunks to the vector store.
+     */
+    public void flush() {
+        final List<Document> batch;
+        synchronized (buffer) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            store(batch);
+        }
+    }
+
+    private List<Document> drain() {
+        final var batch = List.copyOf(buffer);
+        buffer.clear();
+        return batch;
+    }
+
+    private void store(List<Document> batch) {
+        // The vector store computes embeddings for the whole batch.
+        logger.debug("Adding {} chunk(s) to the vector store", batch.size());
+        vectorStore.add(batch);
+    }
+
+    /**
+     * Get the id of the document a search hit belongs to.
+     *
+     * @param doc a document or a chunk
+     * @return parent document id if this is a chunk, document id otherwise
+     */
+    public static String parentId(Document doc) {
+        final var parentId = doc.getMetadata().get(PARENT_ID);
+        return parentId == null ? doc.getId() : parentId.toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+class DocumentsController {
+    private final Logger logger = LoggerFactory.getLogger(DocumentsController.class);
+    private final DocumentIngestionPipeline pipeline;
+    private final VectorStore vectorStore;
+
+    DocumentsController(DocumentIngestionPipeline pipeline, @Lazy VectorStore vectorStore) {
+        this.pipeline = pipeline;
+        this.vectorStore = vectorStore;
+    }
+
+    @PostMapping(value = "/documents", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    IngestResponse ingest(@RequestParam("name") String name, @RequestBody String text) {
+        // Use a stable id, so that uploading a document again replaces existing chunks.
+        final var id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+        final var doc = new Document(id, text, Map.of(
+                DocumentIngestionPipeline.NAME, name,
+                DocumentIngestionPipeline.KIND, DocumentIngestionPipeline.KIND_DOCUMENT));
+
+        final int chunks = pipeline.replace(doc);
+        logger.info("Ingested document {} as {} chunk(s)", name, chunks);
+        return new IngestResponse(id, name, chunks);
+    }
+
+    @GetMapping(value = "/documents/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    List<DocumentHit> search(@RequestParam("q") String query,
+                             @RequestParam(name = "topK", defaultValue = "5") int topK) {
+        final var filter = new FilterExpressionBuilder()
+                .eq(DocumentIngestionPipeline.KIND, DocumentIngestionPipeline.KIND_DOCUMENT).build();
+        // Fetch more chunks than needed, as several chunks may belong to the same document.
+        final var chunks = vectorStore.similaritySearch(
+                SearchRequest.query(query).withTopK(topK * 3).withFilterExpression(filter));
+
+        // Only keep the best chunk for each document.
+        final var hits = new LinkedHashMap<String, DocumentHit>();
+        for (final var chunk : chunks) {
+            hits.putIfAbsent(DocumentIngestionPipeline.parentId(chunk), new DocumentHit(
+                    DocumentIngestionPipeline.parentId(chunk), (String) chunk.getMetadata().get(DocumentIngestionPipeline.NAME), chunk.getContent()));
+        }
+        return hits.values().stream().limit(topK).toList();
+    }
+
+    record IngestResponse(String id, String name, int chunks) {
+    }
+
+    record DocumentHit(String id, String name, String excerpt) {
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import org.springframework.ai.document.Document;
+
+/**
+ * Get notified when the embedding of a document is known, before the document is added to a vector store.
+ * <p>
+ * Listeners are called by the embedding model returned by {@link PrecomputedEmbeddings#wrap},
+ * whether the embedding was computed ahead of time or by the AI provider.
+ * Listeners are called from ingestion threads: implementations must be thread-safe, and fast.
+ */
+public interface EmbeddingListener {
+    void onEmbedding(Document document, float[] embedding);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import com.broadcom.tanzu.demos.springai101.text.SentenceTextSplitter;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+class IngestionConfig {
+    @Bean
+    TextSplitter documentTextSplitter(@Value("${app.ingest.chunk-tokens}") int chunkTokens,
+                                      @Value("${app.ingest.chunk-overlap-tokens}") int chunkOverlapTokens) {
+        // Replace this bean to use a different splitting strategy.
+        return new SentenceTextSplitter(chunkTokens, chunkOverlapTokens);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hold embeddings computed ahead of time (such as at build time), so that documents can be added
+ * to a vector store without calling the AI provider.
+ * <p>
+ * Use {@link #wrap(EmbeddingModel)} to get an {@link EmbeddingModel} serving these embeddings:
+ * an embedding is matched using the document content, and it is only used once.
+ * Other documents are sent to the actual model.
+ */
+@Component
+public class PrecomputedEmbeddings {
+    private final Logger logger = LoggerFactory.getLogger(PrecomputedEmbeddings.class);
+    private final Map<Long, float[]> embeddings = new ConcurrentHashMap<>();
+    private final ObjectProvider<EmbeddingListener> listeners;
+    private volatile int dimensions;
+
+    PrecomputedEmbeddings(ObjectProvider<EmbeddingListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Compute the key used to match an embedding with a document content.
+     */
+    public static long key(String content) {
+        try {
+            final var hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    public void put(long key, float[] embedding) {
+        embeddings.put(key, embedding);
+        dimensions = embedding.length;
+    }
+
+    /**
+     * Drop embeddings which were not used.
+     */
+    public void clear() {
+        if (!embeddings.isEmpty()) {
+            logger.debug("Dropping {} unused precomputed embeddings", embeddings.size());
+            embeddings.clear();
+        }
+    }
+
+    public EmbeddingModel wrap(EmbeddingModel delegate) {
+        return new PrecomputedEmbeddingModel(delegate);
+    }
+
+    private class PrecomputedEmbeddingModel implements EmbeddingModel {
+        private final EmbeddingModel delegate;
+
+        PrecomputedEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            return delegate.call(request);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return delegate.embed(text);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            final var precomputed = embeddings.isEmpty() ? null : embeddings.remove(key(document.getContent()));
+            final var embedding = precomputed != null ? precomputed : delegate.embed(document);
+            listeners.forEach(l -> l.onEmbedding(document, embedding));
+            return embedding;
+        }
+
+        @Override
+        public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+            final var result = embeddings.isEmpty()
+                    ? delegate.embed(documents, options, batchingStrategy)
+                    : embedPrecomputed(documents, options, batchingStrategy);
+            listeners.forEach(l -> {
+                for (int i = 0; i < documents.size(); ++i) {
+                    l.onEmbedding(documents.get(i), result.get(i));
+                }
+            });
+            return result;
+        }
+
+        private List<float[]> embedPrecomputed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+            final var result = new ArrayList<float[]>(documents.size());
+            final var missing = new ArrayList<Document>();
+            for (final var doc : documents) {
+                final var embedding = embeddings.remove(key(doc.getContent()));
+                result.add(embedding);
+                if (embedding == null) {
+                    missing.add(doc);
+                }
+            }
+            if (!missing.isEmpty()) {
+                // Only compute embeddings for documents which are not known.
+                final var computed = delegate.embed(missing, options, batchingStrategy).iterator();
+                for (int i = 0; i < result.size(); ++i) {
+                    if (result.get(i) == null) {
+                        result.set(i, computed.next());
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int dimensions() {
+            // Computing dimensions requires a call to the AI provider: use known embeddings instead.
+            final int dims = dimensions;
+            return dims != 0 ? dims : delegate.dimensions();
+        }
+    }
+}
@@ -29,6 +29,12 @@ public record Movie(
         @JsonFormat(pattern = "yyyy-MM-dd")
         LocalDate releaseDate,
         String overview,
-        String[] credits
+        double popularity,
+        long budget,
+        long revenue,
+        double voteAverage,
+        int voteCount,
+        String[] credits,
+        String[] recommendations
 ) {
 }
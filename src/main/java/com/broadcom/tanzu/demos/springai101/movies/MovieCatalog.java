@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory movie catalog, stored by columns.
+ * <p>
+ * Movies are identified by dense ordinals (their position in the dataset). Numbers and dates are stored
+ * as primitive arrays, genres and credits are dictionary-encoded: a movie references values by code,
+ * and genre codes are stored as compressed sparse rows (the genres of movie <code>i</code> are
+ * <code>genreCodes[genreOffsets[i]]</code> to <code>genreCodes[genreOffsets[i + 1] - 1]</code>).
+ * Each genre also has a bitset of the movies it applies to, so that filters and counts are bitwise operations.
+ */
+@Component
+class MovieCatalog {
+    private final Logger logger = LoggerFactory.getLogger(MovieCatalog.class);
+    private volatile Columns columns = Columns.EMPTY;
+
+    /**
+     * Build the catalog from all movies: the catalog is replaced as a whole.
+     */
+    void build(List<Movie> movies) {
+        final int n = movies.size();
+        final var ids = new String[n];
+        final var titles = new String[n];
+        final var releaseDays = new int[n];
+        final var releaseYears = new int[n];
+        final var popularity = new float[n];
+        final var budget = new long[n];
+        final var revenue = new long[n];
+        final var voteAverage = new float[n];
+        final var voteCount = new int[n];
+        final var genres = new Dictionary();
+        final var credits = new Dictionary();
+        final var genreOffsets = new int[n + 1];
+        final var creditOffsets = new int[n + 1];
+        final var genreCodes = new IntList();
+        final var creditCodes = new IntList();
+        for (int i = 0; i < n; ++i) {
+            final var movie = movies.get(i);
+            ids[i] = movie.id();
+            titles[i] = movie.title();
+            releaseDays[i] = (int) movie.releaseDate().toEpochDay();
+            releaseYears[i] = movie.releaseDate().getYear();
+            popularity[i] = (float) movie.popularity();
+            budget[i] = movie.budget();
+            revenue[i] = movie.revenue();
+            voteAverage[i] = (float) movie.voteAverage();
+            voteCount[i] = movie.voteCount();
+            genreOffsets[i] = genreCodes.size;
+            for (final var genre : movie.genres()) {
+                // Some movies have no genre: the dataset then holds an empty string.
+                if (!genre.isBlank()) {
+                    genreCodes.add(genres.encode(genre));
+                }
+            }
+            creditOffsets[i] = creditCodes.size;
+            if (movie.credits() != null) {
+                for (final var credit : movie.credits()) {
+                    if (!credit.isBlank()) {
+                        creditCodes.add(credits.encode(credit));
+                    }
+                }
+            }
+        }
+        genreOffsets[n] = genreCodes.size;
+        creditOffsets[n] = creditCodes.size;
+
+        final var genreBitsets = new BitSet[genres.values.size()];
+        for (int g = 0; g < genreBitsets.length; ++g) {
+            genreBitsets[g] = new BitSet(n);
+        }
+        for (int i = 0; i < n; ++i) {
+            for (int j = genreOffsets[i]; j < genreOffsets[i + 1]; ++j) {
+                genreBitsets[genreCodes.values[j]].set(i);
+            }
+        }
+
+        columns = new Columns(ids, titles, releaseDays, releaseYears, popularity, budget, revenue, voteAverage, voteCount,
+                genres.values.toArray(String[]::new), Map.copyOf(genres.codes), genreOffsets, genreCodes.toArray(), genreBitsets,
+                credits.values.toArray(String[]::new), Map.copyOf(credits.codes), creditOffsets, creditCodes.toArray());
+        logger.info("Built movie catalog: {} movies, {} genres, {} credits", n, genres.values.size(), credits.values.size());
+    }
+
+    /**
+     * Get a snapshot of the catalog.
+     */
+    Columns columns() {
+        return columns;
+    }
+
+    /**
+     * Catalog columns, by movie ordinal.
+     *
+     * @param releaseDays   release dates, as days since epoch
+     * @param genreNames    genre dictionary, by code
+     * @param genreLookup   genre codes, by normalized name
+     * @param genreBitsets  movies of each genre, by genre code
+     * @param creditNames   credit dictionary, by code
+     * @param creditLookup  credit codes, by normalized name
+     */
+    record Columns(String[] ids, String[] titles, int[] releaseDays, int[] releaseYears,
+                   float[] popularity, long[] budget, long[] revenue, float[] voteAverage, int[] voteCount,
+                   String[] genreNames, Map<String, Integer> genreLookup,
+                   int[] genreOffsets, int[] genreCodes, BitSet[] genreBitsets,
+                   String[] creditNames, Map<String, Integer> creditLookup,
+                   int[] creditOffsets, int[] creditCodes) {
+        static final Columns EMPTY = new Columns(new String[0], new String[0], new int[0], new int[0],
+                new float[0], new long[0], new long[0], new float[0], new int[0],
+                new String[0], Map.of(), new int[1], new int[0], new BitSet[0],
+                new String[0], Map.of(), new int[1], new int[0]);
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * Get the code of a genre, or -1 if this genre is unknown.
+         */
+        int genreCode(String genre) {
+            return genreLookup.getOrDefault(TextNormalizer.normalize(genre), -1);
+        }
+
+        /**
+         * Get the code of a credit, or -1 if this credit is unknown.
+         */
+        int creditCode(String credit) {
+            return creditLookup.getOrDefault(TextNormalizer.normalize(credit), -1);
+        }
+
+        boolean hasCredit(int ordinal, int code) {
+            for (int j = creditOffsets[ordinal]; j < creditOffsets[ordinal + 1]; ++j) {
+                if (creditCodes[j] == code) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int encode(String value) {
+            // Values are matched ignoring case and accents: the first spelling is kept.
+            return codes.computeIfAbsent(TextNormalizer.normalize(value), k -> {
+                values.add(value);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[256];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Read movies from a TSV resource.
+ */
+public final class MovieDataset {
+    private static final Logger logger = LoggerFactory.getLogger(MovieDataset.class);
+
+    private MovieDataset() {
+    }
+
+    public static List<Movie> read(Resource resource) throws IOException {
+        logger.debug("Loading movies from CSV resource: {}", resource.getURL());
+
+        // Parse the CSV resource.
+        final var movies = new ArrayList<Movie>(1024);
+        int lineNumber = 1;
+        try (final var reader = new CSVReaderBuilder(new InputStreamReader(resource.getInputStream()))
+                .withCSVParser(new CSVParserBuilder().withSeparator('\t').build()).withSkipLines(1).build()) {
+            for (String[] line; (line = reader.readNext()) != null; ++lineNumber) {
+                logger.debug("Parsing line number {}", lineNumber);
+                final var overview = line[4];
+                if (overview == null || overview.isEmpty()) {
+                    // Ignore movies with no overview.
+                    continue;
+                }
+
+                final var id = line[0];
+                final var title = line[1];
+                final var genres = line[2].split("-");
+                final var releaseDate = LocalDate.parse(line[7]);
+                final var credits = line.length <= 15 ? null : line[15].split("-");
+                // Ids of related movies, best matches first (some of them are not in this dataset).
+                final var recommendations = line.length <= 19 || line[19].isEmpty() ? null : line[19].split("-");
+                movies.add(new Movie(id, title, genres, releaseDate, overview,
+                        parseNumber(line[5]), (long) parseNumber(line[8]), (long) parseNumber(line[9]),
+                        parseNumber(line[13]), (int) parseNumber(line[14]), credits, recommendations));
+            }
+        } catch (CsvException e) {
+            throw new IOException("Failed to parse movies resource as CSV", e);
+        }
+        return movies;
+    }
+
+    private static double parseNumber(String value) {
+        // Numbers are written as decimals (such as 150000000.0), and may be missing.
+        return value == null || value.isEmpty() ? 0 : Double.parseDouble(value);
+    }
+
+    /**
+     * Compute a checksum of a movie dataset, used to find out whether an index is up-to-date.
+     */
+    public static String checksum(Resource resource) throws IOException {
+        try (final var in = new DigestInputStream(resource.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -16,9 +16,6 @@
 
 package com.broadcom.tanzu.demos.springai101.movies;
 
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvException;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
@@ -29,9 +26,10 @@ import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 class MovieDatasetLoader {
@@ -39,14 +37,19 @@ class MovieDatasetLoader {
     private final AsyncTaskExecutor taskExecutor;
     private final ObservationRegistry observationRegistry;
     private final List<MovieProcessor> movieProcessors;
+    private final RecommendationGraph recommendationGraph;
+    private final MovieCatalog movieCatalog;
 
     @Value("classpath:/movies-2024.tsv")
     private Resource moviesRes;
 
-    MovieDatasetLoader(AsyncTaskExecutor taskExecutor, ObservationRegistry observationRegistry, List<MovieProcessor> movieProcessors) {
+    MovieDatasetLoader(AsyncTaskExecutor taskExecutor, ObservationRegistry observationRegistry, List<MovieProcessor> movieProcessors,
+                       RecommendationGraph recommendationGraph, MovieCatalog movieCatalog) {
         this.taskExecutor = taskExecutor;
         this.observationRegistry = observationRegistry;
         this.movieProcessors = movieProcessors;
+        this.recommendationGraph = recommendationGraph;
+        this.movieCatalog = movieCatalog;
     }
 
     public int load() throws IOException {
@@ -55,42 +58,74 @@ class MovieDatasetLoader {
     }
 
     private int doLoad() throws IOException {
-        logger.debug("Loading movies from CSV resource: {}", moviesRes.getURL());
+        final var movies = MovieDataset.read(moviesRes);
+        index(movies);
+        process(movies);
+        return movies.size();
+    }
 
-        // Parse the CSV resource.
-        int count = 0;
-        int lineNumber = 1;
-        try (final var reader = new CSVReaderBuilder(new InputStreamReader(moviesRes.getInputStream()))
-                .withCSVParser(new CSVParserBuilder().withSeparator('\t').build()).withSkipLines(1).build()) {
-            for (String[] line; (line = reader.readNext()) != null; ++lineNumber) {
-                logger.debug("Parsing line number {}", lineNumber);
-                final var overview = line[4];
-                if (overview == null || overview.isEmpty()) {
-                    // Ignore movies with no overview.
-                    continue;
-                }
+    /**
+     * Build in-memory structures which require all movies at once.
+     * <p>
+     * This method must be called before movies are processed.
+     *
+     * @param movies all movies
+     */
+    void index(List<Movie> movies) {
+        recommendationGraph.build(movies);
+        movieCatalog.build(movies);
+    }
 
-                final var id = line[0];
-                final var title = line[1];
-                final var genres = line[2].split("-");
-                final var releaseDate = LocalDate.parse(line[7]);
-                final var credits = line.length <= 15 ? null : line[15].split("-");
+    /**
+     * Process movies asynchronously.
+     *
+     * @param movies movies to process
+     * @return a future completed with the number of failures once all movies have been processed
+     */
+    CompletableFuture<Integer> process(List<Movie> movies) {
+        return process(movies, movieProcessors);
+    }
 
-                // Create a Movie instance and process it.
-                final var movie = new Movie(
-                        id, title, genres, releaseDate, overview, credits
-                );
-                processMovie(movie);
+    /**
+     * Process movies asynchronously, skipping processors writing to an external store.
+     * <p>
+     * Use this method when external stores already hold these movies.
+     *
+     * @param movies movies to process
+     * @return a future completed with the number of failures once all movies have been processed
+     */
+    CompletableFuture<Integer> processInMemory(List<Movie> movies) {
+        return process(movies, movieProcessors.stream().filter(p -> !p.isPersistent()).toList());
+    }
 
-                ++count;
-            }
-        } catch (CsvException e) {
-            throw new IOException("Failed to parse movies resource as CSV", e);
+    /**
+     * Get processors writing to an external store.
+     */
+    List<MovieProcessor> persistentProcessors() {
+        return movieProcessors.stream().filter(MovieProcessor::isPersistent).toList();
+    }
+
+    private CompletableFuture<Integer> process(List<Movie> movies, List<MovieProcessor> processors) {
+        final var failures = new AtomicInteger();
+        final var tasks = new ArrayList<CompletableFuture<?>>(movies.size());
+        for (final var movie : movies) {
+            tasks.add(processMovie(movie, processors, failures));
         }
-        return count;
+
+        // Let processors know when all movies have been processed (for instance, to flush buffers).
+        return CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).whenComplete((r, e) -> {
+            for (final MovieProcessor movieProcessor : processors) {
+                try {
+                    movieProcessor.complete();
+                } catch (Exception ex) {
+                    failures.incrementAndGet();
+                    logger.warn("Failed to complete movie processing", ex);
+                }
+            }
+        }).thenApply(r -> failures.get());
     }
 
-    private void processMovie(Movie movie) {
+    private CompletableFuture<?> processMovie(Movie movie, List<MovieProcessor> processors, AtomicInteger failures) {
         final Runnable task = () -> {
             // As we're about to process the movie, start a new span to observe this task.
             Observation.createNotStarted("processMovie", observationRegistry)
@@ -98,16 +133,17 @@ class MovieDatasetLoader {
                     .observe(() -> {
                         logger.debug("Processing movie: {} ({})", movie.id(), movie.title());
                         // Movie processing is actually offloaded.
-                        for (final MovieProcessor movieProcessor : movieProcessors) {
+                        for (final MovieProcessor movieProcessor : processors) {
                             try {
                                 movieProcessor.process(movie);
                             } catch (Exception e) {
+                                failures.incrementAndGet();
                                 logger.warn("Failed to process movie: {}", movie, e);
                             }
                         }
                     });
         };
         // Asynchronously process the movie.
-        taskExecutor.submit(task);
+        return taskExecutor.submitCompletable(task);
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Answer structured questions about movies (counts by genre and release year, top movies by revenue)
+ * using the {@link MovieCatalog}: neither the AI provider nor the vector store is called.
+ * <p>
+ * Matching movies are selected as a bitset, then aggregations run on parallel streams.
+ */
+@Component
+class MovieFacets {
+    static final int MAX_TOP = 100;
+    private final MovieCatalog catalog;
+
+    MovieFacets(MovieCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    MovieFacetsResponse facets(MovieFilter filter, int top) {
+        if (top < 0 || top > MAX_TOP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Top must be in range [0, " + MAX_TOP + "]");
+        }
+        final var columns = catalog.columns();
+        final var matches = select(columns, filter);
+
+        // Counts by genre: a genre count is the size of the intersection of 2 bitsets.
+        final var genreCounts = IntStream.range(0, columns.genreNames().length).parallel()
+                .map(g -> {
+                    final var bits = (BitSet) columns.genreBitsets()[g].clone();
+                    bits.and(matches);
+                    return bits.cardinality();
+                })
+                .toArray();
+        final var genres = new LinkedHashMap<String, Integer>();
+        IntStream.range(0, genreCounts.length)
+                .filter(g -> genreCounts[g] > 0)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer g) -> genreCounts[g]).reversed())
+                .forEach(g -> genres.put(columns.genreNames()[g], genreCounts[g]));
+
+        // Counts by release year: each thread fills its own histogram, and histograms are then merged.
+        final int minYear = IntStream.of(columns.releaseYears()).min().orElse(0);
+        final int maxYear = IntStream.of(columns.releaseYears()).max().orElse(-1);
+        final var yearCounts = IntStream.range(0, columns.size()).parallel()
+                .filter(matches::get)
+                .collect(() -> new int[maxYear - minYear + 1],
+                        (h, i) -> ++h[columns.releaseYears()[i] - minYear],
+                        (h1, h2) -> {
+                            for (int y = 0; y < h1.length; ++y) {
+                                h1[y] += h2[y];
+                            }
+                        });
+        final var years = new TreeMap<Integer, Integer>();
+        for (int y = 0; y < yearCounts.length; ++y) {
+            if (yearCounts[y] > 0) {
+                years.put(minYear + y, yearCounts[y]);
+            }
+        }
+
+        final var topByRevenue = IntStream.range(0, columns.size()).parallel()
+                .filter(matches::get)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> columns.revenue()[i]).reversed())
+                .limit(top)
+                .map(i -> MovieFacetsResponse.MovieStats.of(columns, i))
+                .toList();
+        return new MovieFacetsResponse(matches.cardinality(), genres, years, topByRevenue);
+    }
+
+    private static BitSet select(MovieCatalog.Columns columns, MovieFilter filter) {
+        final var matches = new BitSet(columns.size());
+        matches.set(0, columns.size());
+        if (filter == null || filter.isEmpty()) {
+            return matches;
+        }
+        if (filter.genres() != null) {
+            for (final var genre : filter.genres()) {
+                final int code = columns.genreCode(genre);
+                if (code == -1) {
+                    return new BitSet();
+                }
+                matches.and(columns.genreBitsets()[code]);
+            }
+        }
+        final var credits = filter.credits() == null ? new int[0]
+                : filter.credits().stream().mapToInt(columns::creditCode).toArray();
+        if (IntStream.of(credits).anyMatch(code -> code == -1)) {
+            return new BitSet();
+        }
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            final int year = columns.releaseYears()[i];
+            boolean match = (filter.yearFrom() == null || year >= filter.yearFrom())
+                    && (filter.yearTo() == null || year <= filter.yearTo());
+            for (int c = 0; match && c < credits.length; ++c) {
+                match = columns.hasCredit(i, credits[c]);
+            }
+            if (!match) {
+                matches.clear(i);
+            }
+        }
+        return matches;
+    }
+
+    record MovieFacetsResponse(
+            int count,
+            Map<String, Integer> genres,
+            Map<Integer, Integer> years,
+            List<MovieStats> topByRevenue
+    ) {
+        record MovieStats(
+                String id,
+                String title,
+                String releaseDate,
+                long revenue,
+                long budget,
+                float popularity,
+                float voteAverage,
+                int voteCount
+        ) {
+            static MovieStats of(MovieCatalog.Columns columns, int i) {
+                return new MovieStats(columns.ids()[i], columns.titles()[i],
+                        LocalDate.ofEpochDay(columns.releaseDays()[i]).toString(),
+                        columns.revenue()[i], columns.budget()[i], columns.popularity()[i],
+                        columns.voteAverage()[i], columns.voteCount()[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import java.util.List;
+
+/**
+ * Restrict movie searches using metadata.
+ *
+ * @param yearFrom min release year (inclusive)
+ * @param yearTo   max release year (inclusive)
+ * @param genres   genres a movie must have (all of them)
+ * @param credits  people a movie must credit (all of them)
+ */
+public record MovieFilter(
+        Integer yearFrom,
+        Integer yearTo,
+        List<String> genres,
+        List<String> credits
+) {
+    public boolean isEmpty() {
+        return yearFrom == null && yearTo == null
+                && (genres == null || genres.isEmpty())
+                && (credits == null || credits.isEmpty());
+    }
+}
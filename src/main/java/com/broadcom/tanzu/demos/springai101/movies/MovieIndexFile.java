@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary movie index, holding movies along with their embeddings.
+ * <p>
+ * This file is built ahead of time, so that movies can be loaded without calling the AI provider.
+ * All values are stored in little-endian order, and sections are aligned on 8 bytes so that
+ * the file can be memory-mapped:
+ * <ul>
+ *     <li>header: magic, format version, movie count, dimensions, section offsets,
+ *     embedding model tag and dataset checksum</li>
+ *     <li>keys: one <code>long</code> per movie, identifying the content used to compute the embedding</li>
+ *     <li>vectors: <code>dimensions</code> floats per movie</li>
+ *     <li>record offsets: <code>count + 1</code> longs</li>
+ *     <li>records: one JSON encoded movie per record</li>
+ * </ul>
+ */
+public final class MovieIndexFile {
+    private static final int MAGIC = 0x4D564958;
+    private static final int VERSION = 1;
+    private final ObjectMapper objectMapper;
+    private final ByteBuffer buf;
+    private final int count;
+    private final int dimensions;
+    private final long keysOffset;
+    private final long vectorsOffset;
+    private final long recordOffsetsOffset;
+    private final String modelTag;
+    private final String datasetChecksum;
+
+    private MovieIndexFile(ByteBuffer buf, ObjectMapper objectMapper) throws IOException {
+        this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        this.objectMapper = objectMapper;
+        if (buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a movie index file");
+        }
+        final int version = buf.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported movie index version: " + version);
+        }
+        this.count = buf.getInt(8);
+        this.dimensions = buf.getInt(12);
+        this.keysOffset = buf.getLong(16);
+        this.vectorsOffset = buf.getLong(24);
+        this.recordOffsetsOffset = buf.getLong(32);
+        final var strings = buf.slice(40, buf.capacity() - 40).order(ByteOrder.LITTLE_ENDIAN);
+        this.modelTag = readString(strings);
+        this.datasetChecksum = readString(strings);
+    }
+
+    /**
+     * Open a movie index: the file is memory-mapped, so that vectors are not copied to the heap.
+     * <p>
+     * Resources which are not files (such as entries in the app JAR) are copied to a temporary file first.
+     */
+    public static MovieIndexFile open(Resource resource, ObjectMapper objectMapper) throws IOException {
+        if (resource.isFile()) {
+            return map(resource.getFile().toPath(), objectMapper);
+        }
+        final var tmp = Files.createTempFile("movies-", ".idx");
+        try {
+            try (final var in = resource.getInputStream()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return map(tmp, objectMapper);
+        } finally {
+            // The mapping remains valid once the file is deleted
+            // (except on Windows, where a mapped file cannot be deleted).
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                tmp.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static MovieIndexFile map(Path file, ObjectMapper objectMapper) throws IOException {
+        try (final var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MovieIndexFile(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), objectMapper);
+        }
+    }
+
+    public static void write(Path file, String modelTag, String datasetChecksum,
+                             List<Entry> entries, ObjectMapper objectMapper) throws IOException {
+        final int count = entries.size();
+        final int dimensions = count == 0 ? 0 : entries.getFirst().vector().length;
+        final var records = new ArrayList<byte[]>(count);
+        for (final var e : entries) {
+            if (e.vector().length != dimensions) {
+                throw new IllegalArgumentException("All vectors must have the same dimensions");
+            }
+            records.add(objectMapper.writeValueAsBytes(e.movie()));
+        }
+
+        final var modelTagBytes = modelTag.getBytes(StandardCharsets.UTF_8);
+        final var checksumBytes = datasetChecksum.getBytes(StandardCharsets.UTF_8);
+        final long keysOffset = align(40 + 4 + modelTagBytes.length + 4 + checksumBytes.length);
+        final long vectorsOffset = keysOffset + 8L * count;
+        final long recordOffsetsOffset = align(vectorsOffset + 4L * count * dimensions);
+        long recordOffset = recordOffsetsOffset + 8L * (count + 1);
+        final long size = recordOffset + records.stream().mapToLong(r -> r.length).sum();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Movie index is too large: " + size + " bytes");
+        }
+
+        final var buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(dimensions)
+                .putLong(keysOffset).putLong(vectorsOffset).putLong(recordOffsetsOffset);
+        buf.putInt(modelTagBytes.length).put(modelTagBytes);
+        buf.putInt(checksumBytes.length).put(checksumBytes);
+        buf.position((int) keysOffset);
+        for (final var e : entries) {
+            buf.putLong(e.key());
+        }
+        for (final var e : entries) {
+            for (final float v : e.vector()) {
+                buf.putFloat(v);
+            }
+        }
+        buf.position((int) recordOffsetsOffset);
+        for (final var r : records) {
+            buf.putLong(recordOffset);
+            recordOffset += r.length;
+        }
+        buf.putLong(recordOffset);
+        for (final var r : records) {
+            buf.put(r);
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, buf.array());
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        final var bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Get the embedding model used to build this index.
+     */
+    public String modelTag() {
+        return modelTag;
+    }
+
+    /**
+     * Get the checksum of the dataset used to build this index.
+     */
+    public String datasetChecksum() {
+        return datasetChecksum;
+    }
+
+    public long key(int i) {
+        return buf.getLong((int) (keysOffset + 8L * i));
+    }
+
+    public float[] vector(int i) {
+        final var vector = new float[dimensions];
+        buf.slice((int) (vectorsOffset + 4L * dimensions * i), 4 * dimensions)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public Movie movie(int i) throws IOException {
+        final long start = buf.getLong((int) (recordOffsetsOffset + 8L * i));
+        final long end = buf.getLong((int) (recordOffsetsOffset + 8L * (i + 1)));
+        final var bytes = new byte[(int) (end - start)];
+        buf.get((int) start, bytes);
+        return objectMapper.readValue(bytes, Movie.class);
+    }
+
+    /**
+     * A movie along with its embedding.
+     *
+     * @param movie  movie
+     * @param key    key identifying the content used to compute the embedding
+     * @param vector embedding
+     */
+    public record Entry(Movie movie, long key, float[] vector) {
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.broadcom.tanzu.demos.springai101.ingest.PrecomputedEmbeddings;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Load movies from the movie index built ahead of time, once the app is ready.
+ * <p>
+ * Embeddings are read from the index: the AI provider is not called when adding movies to the vector store.
+ * The index is ignored if it was built with a different embedding model or movie dataset.
+ * Movies are loaded in the background: the vector store is not created during startup,
+ * and it is not even used when Redis already holds movies from the same index.
+ */
+@Component
+@ConditionalOnProperty(name = "app.movies.index.preload", havingValue = "true")
+class MovieIndexLoader {
+    private static final String MARKER_KEY = "app:movies:index";
+    private static final int BATCH_SIZE = 512;
+    private final Logger logger = LoggerFactory.getLogger(MovieIndexLoader.class);
+    private final MovieDatasetLoader movieDatasetLoader;
+    private final PrecomputedEmbeddings precomputedEmbeddings;
+    private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
+    private final AsyncTaskExecutor taskExecutor;
+    private final StringRedisTemplate redis;
+    private final RecommendationGraph recommendationGraph;
+
+    @Value("${app.movies.index.location}")
+    private Resource indexRes;
+
+    @Value("${app.movies.index.model-tag}")
+    private String modelTag;
+
+    @Value("${app.vectors.storage-mode:redis}")
+    private String storageMode;
+
+    @Value("classpath:/movies-2024.tsv")
+    private Resource moviesRes;
+
+    MovieIndexLoader(MovieDatasetLoader movieDatasetLoader, PrecomputedEmbeddings precomputedEmbeddings,
+                     ObjectMapper objectMapper, ObservationRegistry observationRegistry,
+                     AsyncTaskExecutor taskExecutor, StringRedisTemplate redis,
+                     RecommendationGraph recommendationGraph) {
+        this.movieDatasetLoader = movieDatasetLoader;
+        this.precomputedEmbeddings = precomputedEmbeddings;
+        this.objectMapper = objectMapper;
+        this.observationRegistry = observationRegistry;
+        this.taskExecutor = taskExecutor;
+        this.redis = redis;
+        this.recommendationGraph = recommendationGraph;
+    }
+
+    @EventListener
+    void onApplicationReady(ApplicationReadyEvent event) {
+        // Do not delay startup: movies are available shortly after the app is ready.
+        taskExecutor.execute(this::preload);
+    }
+
+    private void preload() {
+        if (!indexRes.exists()) {
+            logger.info("No movie index found: use /movies/init to load movies");
+            return;
+        }
+        try {
+            final var index = MovieIndexFile.open(indexRes, objectMapper);
+            if (!modelTag.equals(index.modelTag())) {
+                logger.warn("Ignoring movie index built with a different embedding model: {} (expected {})",
+                        index.modelTag(), modelTag);
+                return;
+            }
+            if (!MovieDataset.checksum(moviesRes).equals(index.datasetChecksum())) {
+                logger.warn("Ignoring movie index built from a different movie dataset");
+                return;
+            }
+            Observation.createNotStarted("preload-movies", observationRegistry)
+                    .observeChecked(() -> load(index));
+            logger.info("Loaded {} movies from index", index.size());
+        } catch (Exception e) {
+            // Movies can still be loaded later on using /movies/init.
+            logger.warn("Failed to load movies from index", e);
+        } finally {
+            precomputedEmbeddings.clear();
+        }
+    }
+
+    private void load(MovieIndexFile index) throws IOException {
+        final var movies = new ArrayList<Movie>(index.size());
+        for (int i = 0; i < index.size(); ++i) {
+            movies.add(index.movie(i));
+        }
+        movieDatasetLoader.index(movies);
+        // Movies may not be added to the vector store: feed the graph with embeddings from the index.
+        for (int i = 0; i < index.size(); ++i) {
+            recommendationGraph.put(movies.get(i).id(), index.vector(i));
+        }
+
+        final var marker = marker(index);
+        if (marker != null && marker.equals(readMarker())) {
+            // Redis already holds these movies: only rebuild in-memory structures.
+            logger.info("Movies from this index are already stored in Redis");
+            movieDatasetLoader.processInMemory(movies).join();
+            return;
+        }
+
+        int failures = 0;
+        for (int start = 0; start < index.size(); start += BATCH_SIZE) {
+            final int end = Math.min(start + BATCH_SIZE, index.size());
+            for (int i = start; i < end; ++i) {
+                precomputedEmbeddings.put(index.key(i), index.vector(i));
+            }
+            // Wait for this batch before the next one, in order to bound memory usage.
+            failures += movieDatasetLoader.process(movies.subList(start, end)).join();
+        }
+        if (marker != null && failures == 0) {
+            writeMarker(marker);
+        }
+    }
+
+    private String marker(MovieIndexFile index) {
+        if (!"redis".equals(storageMode)) {
+            // In-process vector indexes are rebuilt on every start.
+            return null;
+        }
+        // Movies must be stored again when the index or the way movies are stored changes.
+        final var processors = movieDatasetLoader.persistentProcessors().stream()
+                .map(p -> p.getClass().getSimpleName()).sorted().collect(Collectors.joining(","));
+        return String.join("|", index.modelTag(), index.datasetChecksum(), processors);
+    }
+
+    private String readMarker() {
+        try {
+            return redis.opsForValue().get(MARKER_KEY);
+        } catch (RuntimeException e) {
+            logger.debug("Failed to read movie index marker from Redis", e);
+            return null;
+        }
+    }
+
+    private void writeMarker(String marker) {
+        try {
+            redis.opsForValue().set(MARKER_KEY, marker);
+        } catch (RuntimeException e) {
+            logger.debug("Failed to write movie index marker to Redis", e);
+        }
+    }
+}
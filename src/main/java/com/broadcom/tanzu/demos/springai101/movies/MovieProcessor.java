@@ -18,4 +18,17 @@ package com.broadcom.tanzu.demos.springai101.movies;
 
 public interface MovieProcessor {
     void process(Movie movie);
+
+    /**
+     * Called once all movies have been processed.
+     */
+    default void complete() {
+    }
+
+    /**
+     * Whether processed movies are written to an external store, where they are kept across app restarts.
+     */
+    default boolean isPersistent() {
+        return false;
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Paginate movie search results using opaque cursors.
+ */
+@Component
+class MovieSearchPager {
+    static final int MAX_SEARCH_RESULTS = 100;
+    private final Logger logger = LoggerFactory.getLogger(MovieSearchPager.class);
+    private final MovieSearchService movieSearchService;
+
+    MovieSearchPager(MovieSearchService movieSearchService) {
+        this.movieSearchService = movieSearchService;
+    }
+
+    MoviesController.MovieSearchResponse search(String query, MovieFilter filter, int size, String cursor) {
+        if (size < 1 || size > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be in range [1, " + MAX_SEARCH_RESULTS + "]");
+        }
+        final var fingerprint = Integer.toHexString(Objects.hash(query, filter));
+        final int offset = cursor == null ? 0 : decodeCursor(cursor, fingerprint);
+
+        // The vector store has no native offset support: fetch results up to the end of the requested page.
+        // A cursor is bound to the query and filter it was created for.
+        final int limit = Math.min(offset + size, MAX_SEARCH_RESULTS);
+        logger.info("Searching movies: query={}, filter={}, offset={}, size={}", query, filter, offset, size);
+        final var docs = offset < limit ? movieSearchService.search(query, filter, limit) : List.<Document>of();
+        final var hits = docs.stream().skip(offset).map(MoviesController.MovieSearchResponse.MovieHit::of).toList();
+
+        final int next = offset + hits.size();
+        final var nextCursor = docs.size() == limit && next < MAX_SEARCH_RESULTS ? encodeCursor(next, fingerprint) : null;
+        return new MoviesController.MovieSearchResponse(hits, nextCursor);
+    }
+
+    private static String encodeCursor(int offset, String fingerprint) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((offset + ":" + fingerprint).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor, String fingerprint) {
+        try {
+            final var parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            if (parts.length == 2 && parts[1].equals(fingerprint)) {
+                final int offset = Integer.parseInt(parts[0]);
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        } catch (IllegalArgumentException ignore) {
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+public interface MovieSearchService {
+    /**
+     * Find movies matching a title.
+     *
+     * @param title movie title (may be partial or approximate)
+     * @param topK  max number of results
+     * @return movie documents, best matches first
+     */
+    List<Document> findByTitle(String title, int topK);
+
+    /**
+     * Find movies similar to a query, only considering movies matching a filter.
+     *
+     * @param query  search query
+     * @param filter metadata filter
+     * @param topK   max number of results
+     * @return movie documents, best matches first
+     */
+    List<Document> search(String query, MovieFilter filter, int topK);
+
+    /**
+     * Find the best movies to use as prompt context.
+     * <p>
+     * Candidates are over-fetched for each title, re-ranked locally and deduplicated by movie id:
+     * only the best matches are kept, with content reduced to fields which are useful in a prompt.
+     *
+     * @param titles   movie titles
+     * @param perTitle max number of movies for each title
+     * @return movie documents
+     */
+    List<Document> findContext(List<String> titles, int perTitle);
+}
@@ -16,36 +16,65 @@
 
 package com.broadcom.tanzu.demos.springai101.movies;
 
+import com.broadcom.tanzu.demos.springai101.prompt.PromptLayout;
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class MoviesController {
+    static final BeanOutputConverter<MovieMashupResponse.NewMovie> NEW_MOVIE_CONVERTER =
+            new BeanOutputConverter<>(MovieMashupResponse.NewMovie.class);
+    static final PromptLayout MASHUP_PROMPT = PromptLayout.builder()
+            .instructions("""
+                    Using only movies from the section SOURCES as an inspiration,
+                    create a new movie of the requested genre by combining source overviews into a new one.
+                    Generate a new title for this new movie.
+
+                    Translate the new movie to the requested language.
+                    """)
+            // The JSON schema of the new movie never changes: it's part of the cacheable prefix.
+            .format(NEW_MOVIE_CONVERTER.getFormat())
+            .section("SOURCES", "movies")
+            .param("Genre", "genre")
+            .param("Language", "lang")
+            .build();
     private final Logger logger = LoggerFactory.getLogger(MoviesController.class);
     private final MovieDatasetLoader movieDatasetLoader;
     private final ChatClient chatClient;
-    private final VectorStore vectorStore;
+    private final MovieSearchService movieSearchService;
+    private final MovieSearchPager movieSearchPager;
+    private final SimilarMovies similarMovies;
+    private final MovieFacets movieFacets;
 
-    MoviesController(MovieDatasetLoader movieDatasetLoader, ChatClient.Builder chatClientBuilder, VectorStore vectorStore) {
+    MoviesController(MovieDatasetLoader movieDatasetLoader, ChatClient.Builder chatClientBuilder,
+                     MovieSearchService movieSearchService, MovieSearchPager movieSearchPager,
+                     SimilarMovies similarMovies, MovieFacets movieFacets) {
         this.movieDatasetLoader = movieDatasetLoader;
         this.chatClient = chatClientBuilder.build();
-        this.vectorStore = vectorStore;
+        this.movieSearchService = movieSearchService;
+        this.movieSearchPager = movieSearchPager;
+        this.similarMovies = similarMovies;
+        this.movieFacets = movieFacets;
     }
 
-    private static String toDisplayLanguage(String lang) {
+    static String toDisplayLanguage(String lang) {
         final var displayLang = Locale.forLanguageTag(lang).getDisplayLanguage(Locale.ENGLISH);
         if (displayLang == null || displayLang.isEmpty()) {
             return "english";
@@ -63,45 +92,83 @@ class MoviesController {
     MovieMashupResponse movieMashup(@RequestParam("titles") String[] titles,
                                     @RequestParam(name = "genre", defaultValue = "comedy") String genre,
                                     @RequestParam(name = "lang", defaultValue = "en") String lang) {
-        // Look for additional data.
-        final var moviesById = new HashMap<String, Document>(2);
-        for (final String title : titles) {
-            logger.info("Looking up movies with title: {}", title);
-
-            final var docs = vectorStore.similaritySearch(
-                    SearchRequest.query(title).withTopK(1).withSimilarityThreshold(0.2));
+        // Look for additional data: only the best match for each title is used.
+        logger.info("Looking up movies with titles: {}", (Object) titles);
+        final var sources = movieSearchService.findContext(List.of(titles), 1);
+        logger.info("Found {} movie(s) for {} title(s)", sources.size(), titles.length);
 
-            logger.info("Found {} movie(s) in the vector store for title {}", docs.size(), title);
-            docs.forEach(m -> moviesById.put(m.getId(), m));
-        }
-
-        logger.info("Generating a new movie of genre {} using {} movie(s) as sources", genre, moviesById.size());
-        final var movies = moviesById.values().stream().map(Document::getContent).collect(Collectors.joining("\n"));
-        return chatClient.prompt()
+        logger.info("Generating a new movie of genre {} using {} movie(s) as sources", genre, sources.size());
+        final var movies = sources.stream().map(Document::getContent).collect(Collectors.joining("\n"));
+        final var content = chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/movies"))
                 // Let's build a prompt which is augmented with additional data:
                 // this is what Retrieval Augmented Generation (RAG) is all about.
-                .user(p -> p.text("""
-                                Using only movies from the section SOURCES as an inspiration,
-                                create a new movie of genre {genre} by combining source overviews into a new one.
-                                Generate a new title for this new movie.
-
-                                Translate the new movie to {lang}.
-
-                                SOURCES
-                                ---
-                                {movies}
-                                """)
+                // Instructions come first and never change, so that the AI provider can cache them.
+                .system(MASHUP_PROMPT.system())
+                .user(p -> p.text(MASHUP_PROMPT.user())
                         .param("lang", toDisplayLanguage(lang))
                         .param("genre", genre)
                         .param("movies", movies))
                 .call()
-                .entity(MovieMashupResponse.class);
+                .content();
+        // The model only generates the new movie: sources are already known.
+        final var newMovie = NEW_MOVIE_CONVERTER.convert(content);
+        return MovieMashupResponse.of(newMovie, sources);
+    }
+
+    @GetMapping(value = "/movies/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    MovieSearchResponse search(@RequestParam("q") String query,
+                               @RequestParam(name = "yearFrom", required = false) Integer yearFrom,
+                               @RequestParam(name = "yearTo", required = false) Integer yearTo,
+                               @RequestParam(name = "genres", required = false) List<String> genres,
+                               @RequestParam(name = "credits", required = false) List<String> credits,
+                               @RequestParam(name = "size", defaultValue = "10") int size,
+                               @RequestParam(name = "cursor", required = false) String cursor) {
+        return movieSearchPager.search(query, new MovieFilter(yearFrom, yearTo, genres, credits), size, cursor);
+    }
+
+    @GetMapping(value = "/movies/{id}/similar", produces = MediaType.APPLICATION_JSON_VALUE)
+    SimilarMovies.SimilarMoviesResponse similar(@PathVariable("id") String id,
+                                                @RequestParam(name = "size", defaultValue = "10") int size) {
+        // Movies are found using in-memory data only: no call to the AI provider or to the vector store.
+        return similarMovies.find(id, size);
+    }
+
+    @GetMapping(value = "/movies/facets", produces = MediaType.APPLICATION_JSON_VALUE)
+    MovieFacets.MovieFacetsResponse facets(@RequestParam(name = "yearFrom", required = false) Integer yearFrom,
+                                           @RequestParam(name = "yearTo", required = false) Integer yearTo,
+                                           @RequestParam(name = "genres", required = false) List<String> genres,
+                                           @RequestParam(name = "credits", required = false) List<String> credits,
+                                           @RequestParam(name = "top", defaultValue = "10") int top) {
+        // Structured questions are answered by the in-memory catalog: no LLM, no vector search.
+        return movieFacets.facets(new MovieFilter(yearFrom, yearTo, genres, credits), top);
+    }
+
+    record MovieSearchResponse(
+            List<MovieHit> movies,
+            @JsonInclude(JsonInclude.Include.NON_NULL) String nextCursor
+    ) {
+        record MovieHit(
+                String id,
+                String title,
+                String releaseDate,
+                Object genres
+        ) {
+            static MovieHit of(Document doc) {
+                final var meta = doc.getMetadata();
+                return new MovieHit(doc.getId(), (String) meta.get("title"), (String) meta.get("releaseDate"), meta.get("genres"));
+            }
+        }
     }
 
     record MovieMashupResponse(
             NewMovie newMovie,
             MovieSource[] sources
     ) {
+        static MovieMashupResponse of(NewMovie newMovie, List<Document> sources) {
+            return new MovieMashupResponse(newMovie, sources.stream().map(MovieSource::of).toArray(MovieSource[]::new));
+        }
+
         record NewMovie(
                 String title,
                 String overview,
@@ -115,6 +182,23 @@ class MoviesController {
                 String overview,
                 String[] genres
         ) {
+            static MovieSource of(Document doc) {
+                // Fields are copied verbatim from the movie document:
+                // vector stores may not return the title as metadata.
+                String title = (String) doc.getMetadata().get("title");
+                String overview = null;
+                String[] genres = new String[0];
+                for (final var line : doc.getContent().lines().toList()) {
+                    if (line.startsWith("Title: ")) {
+                        title = line.substring("Title: ".length());
+                    } else if (line.startsWith("Overview: ")) {
+                        overview = line.substring("Overview: ".length());
+                    } else if (line.startsWith("Genres: ")) {
+                        genres = line.substring("Genres: ".length()).split(", ");
+                    }
+                }
+                return new MovieSource(title, overview, genres);
+            }
         }
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive version of {@link MoviesController}.
+ * <p>
+ * Vector store lookups are still blocking: these calls run on a bounded elastic scheduler,
+ * while the model response is received without blocking any thread.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveMoviesController {
+    private final Logger logger = LoggerFactory.getLogger(ReactiveMoviesController.class);
+    private final MovieDatasetLoader movieDatasetLoader;
+    private final ChatClient chatClient;
+    private final MovieSearchService movieSearchService;
+    private final MovieSearchPager movieSearchPager;
+    private final SimilarMovies similarMovies;
+    private final MovieFacets movieFacets;
+
+    ReactiveMoviesController(MovieDatasetLoader movieDatasetLoader, ChatClient.Builder chatClientBuilder,
+                             MovieSearchService movieSearchService, MovieSearchPager movieSearchPager,
+                             SimilarMovies similarMovies, MovieFacets movieFacets) {
+        this.movieDatasetLoader = movieDatasetLoader;
+        this.chatClient = chatClientBuilder.build();
+        this.movieSearchService = movieSearchService;
+        this.movieSearchPager = movieSearchPager;
+        this.similarMovies = similarMovies;
+        this.movieFacets = movieFacets;
+    }
+
+    @GetMapping(value = "/movies/init", produces = MediaType.TEXT_PLAIN_VALUE)
+    Mono<String> init() {
+        return Mono.fromCallable(movieDatasetLoader::load)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(movieCount -> String.format("Loaded %d movies", movieCount));
+    }
+
+    @GetMapping(value = "/movies", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<MoviesController.MovieMashupResponse> movieMashup(@RequestParam("titles") String[] titles,
+                                                           @RequestParam(name = "genre", defaultValue = "comedy") String genre,
+                                                           @RequestParam(name = "lang", defaultValue = "en") String lang) {
+        logger.info("Looking up movies with titles: {}", (Object) titles);
+        return Mono.fromCallable(() -> movieSearchService.findContext(List.of(titles), 1))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(sources -> {
+                    logger.info("Generating a new movie of genre {} using {} movie(s) as sources", genre, sources.size());
+                    final var movies = sources.stream().map(Document::getContent).collect(Collectors.joining("\n"));
+                    // The response is streamed and then mapped to a Java construct:
+                    // no thread is waiting for the model while the response is being generated.
+                    return chatClient.prompt()
+                            .system(MoviesController.MASHUP_PROMPT.system())
+                            .user(p -> p.text(MoviesController.MASHUP_PROMPT.user())
+                                    .param("lang", MoviesController.toDisplayLanguage(lang))
+                                    .param("genre", genre)
+                                    .param("movies", movies))
+                            .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/movies"))
+                            .stream()
+                            .content()
+                            .collect(Collectors.joining())
+                            // The model only generates the new movie: sources are already known.
+                            .map(content -> MoviesController.MovieMashupResponse.of(MoviesController.NEW_MOVIE_CONVERTER.convert(content), sources));
+                });
+    }
+
+    @GetMapping(value = "/movies/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<MoviesController.MovieSearchResponse> search(@RequestParam("q") String query,
+                                                      @RequestParam(name = "yearFrom", required = false) Integer yearFrom,
+                                                      @RequestParam(name = "yearTo", required = false) Integer yearTo,
+                                                      @RequestParam(name = "genres", required = false) List<String> genres,
+                                                      @RequestParam(name = "credits", required = false) List<String> credits,
+                                                      @RequestParam(name = "size", defaultValue = "10") int size,
+                                                      @RequestParam(name = "cursor", required = false) String cursor) {
+        final var filter = new MovieFilter(yearFrom, yearTo, genres, credits);
+        return Mono.fromCallable(() -> movieSearchPager.search(query, filter, size, cursor))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping(value = "/movies/{id}/similar", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<SimilarMovies.SimilarMoviesResponse> similar(@PathVariable("id") String id,
+                                                      @RequestParam(name = "size", defaultValue = "10") int size) {
+        // Vector comparisons are CPU-bound: they run on the parallel scheduler rather than on the event loop.
+        return Mono.fromCallable(() -> similarMovies.find(id, size))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    @GetMapping(value = "/movies/facets", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<MovieFacets.MovieFacetsResponse> facets(@RequestParam(name = "yearFrom", required = false) Integer yearFrom,
+                                                 @RequestParam(name = "yearTo", required = false) Integer yearTo,
+                                                 @RequestParam(name = "genres", required = false) List<String> genres,
+                                                 @RequestParam(name = "credits", required = false) List<String> credits,
+                                                 @RequestParam(name = "top", defaultValue = "10") int top) {
+        // Aggregations are CPU-bound: they run on the parallel scheduler rather than on the event loop.
+        final var filter = new MovieFilter(yearFrom, yearTo, genres, credits);
+        return Mono.fromCallable(() -> movieFacets.facets(filter, top))
+                .subscribeOn(Schedulers.parallel());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.broadcom.tanzu.demos.springai101.ingest.EmbeddingListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory graph of related movies, built from the recommendations of the movie dataset.
+ * <p>
+ * Movies are identified by dense ordinals (their position in the dataset), and edges are stored
+ * as primitive arrays (compressed sparse rows): the recommendations of movie <code>i</code> are
+ * <code>targets[offsets[i]]</code> to <code>targets[offsets[i + 1] - 1]</code>, best matches first.
+ * Recommendations pointing to movies which are not in the dataset are dropped.
+ * <p>
+ * Movie embeddings are kept for each node as they are computed for the vector store
+ * (or read from the movie index at startup), so that related movies can also be compared
+ * without calling the AI provider.
+ */
+@Component
+class RecommendationGraph implements EmbeddingListener {
+    private final Logger logger = LoggerFactory.getLogger(RecommendationGraph.class);
+    private volatile Nodes nodes = Nodes.EMPTY;
+
+    /**
+     * Build the graph from all movies: the graph is replaced as a whole.
+     */
+    void build(List<Movie> movies) {
+        final int n = movies.size();
+        final var ids = new String[n];
+        final var titles = new String[n];
+        final var ordinals = new HashMap<String, Integer>(n * 2);
+        for (int i = 0; i < n; ++i) {
+            final var movie = movies.get(i);
+            ids[i] = movie.id();
+            titles[i] = movie.title();
+            ordinals.putIfAbsent(movie.id(), i);
+        }
+
+        // Outgoing edges: resolve recommended ids to ordinals, keeping their order.
+        final var offsets = new int[n + 1];
+        var targets = new int[n * 8];
+        int edges = 0;
+        for (int i = 0; i < n; ++i) {
+            offsets[i] = edges;
+            final var recommendations = movies.get(i).recommendations();
+            if (recommendations == null) {
+                continue;
+            }
+            for (final var id : recommendations) {
+                final var target = ordinals.get(id);
+                if (target == null || target == i) {
+                    continue;
+                }
+                if (edges == targets.length) {
+                    targets = Arrays.copyOf(targets, edges * 2);
+                }
+                targets[edges++] = target;
+            }
+        }
+        offsets[n] = edges;
+        targets = Arrays.copyOf(targets, edges);
+
+        // Incoming edges: movies recommending a movie, by transposing outgoing edges.
+        final var reverseOffsets = new int[n + 1];
+        for (int e = 0; e < edges; ++e) {
+            ++reverseOffsets[targets[e] + 1];
+        }
+        for (int i = 0; i < n; ++i) {
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        }
+        final var reverseTargets = new int[edges];
+        final var cursor = Arrays.copyOf(reverseOffsets, n);
+        for (int i = 0; i < n; ++i) {
+            for (int e = offsets[i]; e < offsets[i + 1]; ++e) {
+                reverseTargets[cursor[targets[e]]++] = i;
+            }
+        }
+
+        nodes = new Nodes(ids, titles, ordinals, offsets, targets, reverseOffsets, reverseTargets, new AtomicReferenceArray<>(n));
+        logger.info("Built recommendation graph: {} movies, {} edges", n, edges);
+    }
+
+    /**
+     * Get a snapshot of the graph.
+     */
+    Nodes nodes() {
+        return nodes;
+    }
+
+    @Override
+    public void onEmbedding(Document document, float[] embedding) {
+        // Only keep embeddings of whole movies (not chunks, nor ingested documents).
+        put(document.getId(), embedding);
+    }
+
+    /**
+     * Set the embedding of a movie: unknown movies are ignored.
+     */
+    void put(String id, float[] embedding) {
+        final var snapshot = nodes;
+        final int ordinal = snapshot.ordinal(id);
+        if (ordinal == -1 || embedding == null) {
+            return;
+        }
+        double norm = 0;
+        for (final float x : embedding) {
+            norm += x * x;
+        }
+        if (norm == 0) {
+            return;
+        }
+        // Store a normalized copy: cosine similarity is then a dot product.
+        final var vector = new float[embedding.length];
+        final float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; ++i) {
+            vector[i] = embedding[i] * inv;
+        }
+        snapshot.vectors().set(ordinal, vector);
+    }
+
+    /**
+     * Graph nodes and edges.
+     *
+     * @param ids            movie ids, by ordinal
+     * @param titles         movie titles, by ordinal
+     * @param ordinals       movie ordinals, by id
+     * @param offsets        start of the recommendations of each movie in <code>targets</code>
+     * @param targets        recommended movies
+     * @param reverseOffsets start of the movies recommending each movie in <code>reverseTargets</code>
+     * @param reverseTargets movies recommending a movie
+     * @param vectors        normalized movie embeddings, by ordinal (<code>null</code> until known)
+     */
+    record Nodes(String[] ids, String[] titles, Map<String, Integer> ordinals,
+                 int[] offsets, int[] targets, int[] reverseOffsets, int[] reverseTargets,
+                 AtomicReferenceArray<float[]> vectors) {
+        static final Nodes EMPTY = new Nodes(new String[0], new String[0], Map.of(),
+                new int[1], new int[0], new int[1], new int[0], new AtomicReferenceArray<>(0));
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * Get the ordinal of a movie, or -1 if this movie is unknown.
+         */
+        int ordinal(String id) {
+            final var ordinal = id == null ? null : ordinals.get(id);
+            return ordinal == null ? -1 : ordinal;
+        }
+    }
+}
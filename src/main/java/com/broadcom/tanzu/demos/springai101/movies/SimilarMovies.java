@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies;
+
+import com.broadcom.tanzu.demos.springai101.similarity.VectorSimilarity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Find movies similar to a movie ("more like this"), using the {@link RecommendationGraph}.
+ * <p>
+ * Graph neighbours are blended with vector similarity: no call to the AI provider is required.
+ * A recommendation gets a graph score depending on its rank (from 1 for the best match),
+ * a movie recommending the source movie gets half this score.
+ */
+@Component
+class SimilarMovies {
+    static final int MAX_RESULTS = 50;
+    private final RecommendationGraph graph;
+
+    @Value("${app.movies.similar.graph-weight}")
+    private float graphWeight;
+
+    SimilarMovies(RecommendationGraph graph) {
+        this.graph = graph;
+    }
+
+    SimilarMoviesResponse find(String id, int size) {
+        if (size < 1 || size > MAX_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be in range [1, " + MAX_RESULTS + "]");
+        }
+        final var nodes = graph.nodes();
+        final int source = nodes.ordinal(id);
+        if (source == -1) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Movie not found: " + id);
+        }
+
+        final var graphScores = new float[nodes.size()];
+        final int degree = nodes.offsets()[source + 1] - nodes.offsets()[source];
+        for (int e = nodes.offsets()[source], rank = 0; e < nodes.offsets()[source + 1]; ++e, ++rank) {
+            graphScores[nodes.targets()[e]] = 1 - (float) rank / degree;
+        }
+        for (int e = nodes.reverseOffsets()[source]; e < nodes.reverseOffsets()[source + 1]; ++e) {
+            final int other = nodes.reverseTargets()[e];
+            final int otherDegree = nodes.offsets()[other + 1] - nodes.offsets()[other];
+            final int rank = rankOf(nodes, other, source);
+            graphScores[other] = Math.max(graphScores[other], 0.5f * (1 - (float) rank / otherDegree));
+        }
+
+        final var sourceVector = nodes.vectors().get(source);
+        final var hits = new ArrayList<SimilarMoviesResponse.SimilarMovie>();
+        for (int i = 0; i < nodes.size(); ++i) {
+            if (i == source) {
+                continue;
+            }
+            final var vector = sourceVector == null ? null : nodes.vectors().get(i);
+            if (graphScores[i] == 0 && vector == null) {
+                continue;
+            }
+            final float vectorScore = vector == null ? 0 : VectorSimilarity.dot(sourceVector, vector);
+            final float score = graphWeight * graphScores[i] + (1 - graphWeight) * vectorScore;
+            hits.add(new SimilarMoviesResponse.SimilarMovie(nodes.ids()[i], nodes.titles()[i], score, graphScores[i] > 0));
+        }
+        hits.sort(Comparator.comparingDouble(SimilarMoviesResponse.SimilarMovie::score).reversed());
+        return new SimilarMoviesResponse(id, nodes.titles()[source], List.copyOf(hits.subList(0, Math.min(size, hits.size()))));
+    }
+
+    private static int rankOf(RecommendationGraph.Nodes nodes, int from, int to) {
+        for (int e = nodes.offsets()[from]; e < nodes.offsets()[from + 1]; ++e) {
+            if (nodes.targets()[e] == to) {
+                return e - nodes.offsets()[from];
+            }
+        }
+        return -1;
+    }
+
+    record SimilarMoviesResponse(
+            String id,
+            String title,
+            List<SimilarMovie> movies
+    ) {
+        record SimilarMovie(
+                String id,
+                String title,
+                float score,
+                boolean recommended
+        ) {
+        }
+    }
+}
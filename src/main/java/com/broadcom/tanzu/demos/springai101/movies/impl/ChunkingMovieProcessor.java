@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.ingest.DocumentIngestionPipeline;
+import com.broadcom.tanzu.demos.springai101.movies.Movie;
+import com.broadcom.tanzu.demos.springai101.movies.MovieProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Index long movies as chunks, in addition to the whole movie document.
+ * <p>
+ * Chunks are linked to their parent movie: search hits on a chunk resolve to the movie.
+ */
+@Component
+@ConditionalOnProperty(name = "app.movies.chunking.enabled", havingValue = "true")
+class ChunkingMovieProcessor implements MovieProcessor {
+    private final Logger logger = LoggerFactory.getLogger(ChunkingMovieProcessor.class);
+    private final DocumentIngestionPipeline pipeline;
+
+    ChunkingMovieProcessor(DocumentIngestionPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public void process(Movie movie) {
+        final var chunks = pipeline.split(MovieDocuments.toDocument(movie));
+        if (chunks.size() < 2) {
+            // This movie fits in a single chunk: the whole document is already indexed.
+            return;
+        }
+        logger.debug("Inserting {} chunks for movie: {} ({})", chunks.size(), movie.id(), movie.title());
+        pipeline.add(chunks);
+    }
+
+    @Override
+    public void complete() {
+        pipeline.flush();
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+}
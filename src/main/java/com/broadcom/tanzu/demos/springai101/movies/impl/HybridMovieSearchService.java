@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.ingest.DocumentIngestionPipeline;
+import com.broadcom.tanzu.demos.springai101.movies.MovieFilter;
+import com.broadcom.tanzu.demos.springai101.movies.MovieSearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.RedisVectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Find movies using both lexical and vector search.
+ * <p>
+ * Exact and prefix title matches are served from the in-memory lexical index,
+ * without calling the embedding model. Otherwise, lexical and vector results are
+ * combined using Reciprocal Rank Fusion (RRF).
+ */
+@Service
+class HybridMovieSearchService implements MovieSearchService {
+    private static final List<String> DISTANCE_KEYS = List.of(RedisVectorStore.DISTANCE_FIELD_NAME, "distance");
+    private final Logger logger = LoggerFactory.getLogger(HybridMovieSearchService.class);
+    private final LexicalMovieIndex lexicalIndex;
+    private final MovieReranker reranker;
+    private final VectorStore vectorStore;
+    private final int candidates;
+    private final double similarityThreshold;
+    private final int rrfK;
+    private final int rerankCandidates;
+    private final double rerankMinScore;
+
+    HybridMovieSearchService(LexicalMovieIndex lexicalIndex, MovieReranker reranker, @Lazy VectorStore vectorStore,
+                             @Value("${app.movies.search.candidates}") int candidates,
+                             @Value("${app.movies.search.similarity-threshold}") double similarityThreshold,
+                             @Value("${app.movies.search.rrf-k}") int rrfK,
+                             @Value("${app.movies.rerank.candidates}") int rerankCandidates,
+                             @Value("${app.movies.rerank.min-score}") double rerankMinScore) {
+        this.lexicalIndex = lexicalIndex;
+        this.reranker = reranker;
+        this.vectorStore = vectorStore;
+        this.candidates = candidates;
+        this.similarityThreshold = similarityThreshold;
+        this.rrfK = rrfK;
+        this.rerankCandidates = rerankCandidates;
+        this.rerankMinScore = rerankMinScore;
+    }
+
+    @Override
+    public List<Document> findByTitle(String title, int topK) {
+        final var titleMatches = lexicalIndex.findByTitle(title, topK);
+        if (!titleMatches.isEmpty()) {
+            // No need to call the embedding model when we know the title.
+            logger.debug("Found {} title match(es) for {}", titleMatches.size(), title);
+            return titleMatches;
+        }
+
+        final int k = Math.max(topK, candidates);
+        final var lexicalResults = lexicalIndex.search(title, k);
+        final var vectorResults = toMovies(vectorStore.similaritySearch(
+                SearchRequest.query(title).withTopK(k).withSimilarityThreshold(similarityThreshold)));
+        logger.debug("Fusing {} lexical result(s) and {} vector result(s) for {}", lexicalResults.size(), vectorResults.size(), title);
+        return fuse(List.of(lexicalResults, vectorResults), topK);
+    }
+
+    @Override
+    public List<Document> findContext(List<String> titles, int perTitle) {
+        final var selected = new LinkedHashMap<String, Document>();
+        for (final var title : titles) {
+            // Over-fetch candidates: title matches (without calling the embedding model),
+            // or lexical and vector results fused with RRF, followed by other lexical matches.
+            // Vector hits are hydrated from the lexical index: they keep their distance for re-ranking.
+            final var candidates = new LinkedHashMap<String, Document>();
+            findByTitle(title, rerankCandidates).forEach(d -> candidates.putIfAbsent(d.getId(), d));
+            lexicalIndex.search(title, rerankCandidates).forEach(d -> candidates.putIfAbsent(d.getId(), d));
+
+            // Movies already selected for another title are skipped.
+            final var best = reranker.rerank(title, candidates.values()).stream()
+                    .filter(m -> m.score() >= rerankMinScore && !selected.containsKey(m.doc().getId()))
+                    .limit(perTitle)
+                    .toList();
+            logger.debug("Selected {} movie(s) out of {} candidate(s) for {}", best.size(), candidates.size(), title);
+            best.forEach(m -> selected.put(m.doc().getId(), MovieDocuments.toContext(m.doc())));
+        }
+        return List.copyOf(selected.values());
+    }
+
+    @Override
+    public List<Document> search(String query, MovieFilter filter, int topK) {
+        var req = SearchRequest.query(query).withTopK(topK).withSimilarityThreshold(similarityThreshold);
+        if (filter != null && !filter.isEmpty()) {
+            // Filters are pushed down to the vector store:
+            // only matching movies are considered when running the similarity search.
+            req = req.withFilterExpression(toFilterExpression(filter));
+        }
+        return toMovies(vectorStore.similaritySearch(req));
+    }
+
+    private List<Document> toMovies(List<Document> hits) {
+        // Movies may be indexed as chunks: resolve each hit to its parent movie, keeping the best rank.
+        // Documents which are not movies are ignored.
+        final var movies = new LinkedHashMap<String, Document>();
+        for (final var hit : hits) {
+            if (DocumentIngestionPipeline.KIND_DOCUMENT.equals(hit.getMetadata().get(DocumentIngestionPipeline.KIND))) {
+                continue;
+            }
+            final var id = DocumentIngestionPipeline.parentId(hit);
+            movies.computeIfAbsent(id, k -> hydrate(k, hit));
+        }
+        return List.copyOf(movies.values());
+    }
+
+    private Document hydrate(String id, Document hit) {
+        // Vector stores only return indexed metadata: movie fields are read from the lexical index,
+        // keeping the distance reported for this hit.
+        return lexicalIndex.findById(id)
+                .map(doc -> {
+                    final var metadata = new HashMap<>(doc.getMetadata());
+                    for (final var key : DISTANCE_KEYS) {
+                        final var distance = hit.getMetadata().get(key);
+                        if (distance != null) {
+                            metadata.put(key, distance);
+                        }
+                    }
+                    return new Document(id, doc.getContent(), metadata);
+                })
+                .orElseGet(() -> id.equals(hit.getId()) ? hit : new Document(id, hit.getContent(), hit.getMetadata()));
+    }
+
+    private static Filter.Expression toFilterExpression(MovieFilter filter) {
+        final var b = new FilterExpressionBuilder();
+        final var ops = new ArrayList<FilterExpressionBuilder.Op>(4);
+        if (filter.yearFrom() != null) {
+            ops.add(b.gte("releaseYear", filter.yearFrom()));
+        }
+        if (filter.yearTo() != null) {
+            ops.add(b.lte("releaseYear", filter.yearTo()));
+        }
+        if (filter.genres() != null) {
+            filter.genres().forEach(g -> ops.add(b.eq("genreTags", MovieDocuments.toTag(g))));
+        }
+        if (filter.credits() != null) {
+            filter.credits().forEach(c -> ops.add(b.eq("creditTags", MovieDocuments.toTag(c))));
+        }
+        return ops.stream().reduce(b::and).orElseThrow().build();
+    }
+
+    private List<Document> fuse(List<List<Document>> rankings, int topK) {
+        // Reciprocal Rank Fusion: every ranking contributes 1 / (k + rank) to the score of a document.
+        final var docs = new LinkedHashMap<String, Document>();
+        final var scores = new HashMap<String, Double>();
+        for (final var ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); ++rank) {
+                final var doc = ranking.get(rank);
+                docs.putIfAbsent(doc.getId(), doc);
+                scores.merge(doc.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(e -> docs.get(e.getKey()))
+                .toList();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.movies.Movie;
+import com.broadcom.tanzu.demos.springai101.movies.MovieProcessor;
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over movie titles, genres and credits.
+ * <p>
+ * Documents are scored using BM25F: term frequencies are normalized by field length and weighted
+ * by field (a title match is worth more than a credit match) before applying BM25 saturation.
+ * Titles are also indexed as a whole, in order to quickly find exact and prefix matches.
+ */
+@Component
+class LexicalMovieIndex implements MovieProcessor {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int TITLE = 0;
+    private static final int GENRES = 1;
+    private static final int CREDITS = 2;
+    private static final float[] FIELD_WEIGHTS = {3, 1, 1.5f};
+
+    private final Logger logger = LoggerFactory.getLogger(LexicalMovieIndex.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Map<String, float[]>> postings = new HashMap<>();
+    private final NavigableMap<String, Set<String>> titles = new TreeMap<>();
+    private final double[] totalFieldLengths = new double[FIELD_WEIGHTS.length];
+
+    @Override
+    public void process(Movie movie) {
+        logger.debug("Indexing movie: {} ({})", movie.id(), movie.title());
+
+        // Count term frequencies for each field.
+        final var termFreqs = new HashMap<String, float[]>();
+        final var fieldLengths = new float[FIELD_WEIGHTS.length];
+        fieldLengths[TITLE] = addTerms(termFreqs, TITLE, movie.title());
+        for (final var genre : movie.genres()) {
+            fieldLengths[GENRES] += addTerms(termFreqs, GENRES, genre);
+        }
+        if (movie.credits() != null) {
+            for (final var credit : movie.credits()) {
+                fieldLengths[CREDITS] += addTerms(termFreqs, CREDITS, credit);
+            }
+        }
+        final var entry = new Entry(MovieDocuments.toDocument(movie), TextNormalizer.normalize(movie.title()), termFreqs, fieldLengths);
+
+        lock.writeLock().lock();
+        try {
+            // Movies may be indexed more than once: make sure old data is removed.
+            remove(movie.id());
+            entries.put(movie.id(), entry);
+            termFreqs.forEach((term, tf) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(movie.id(), tf));
+            titles.computeIfAbsent(entry.title(), k -> new LinkedHashSet<>(1)).add(movie.id());
+            for (int f = 0; f < fieldLengths.length; ++f) {
+                totalFieldLengths[f] += fieldLengths[f];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String id) {
+        final var old = entries.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (final var term : old.termFreqs().keySet()) {
+            final var p = postings.get(term);
+            p.remove(id);
+            if (p.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        final var ids = titles.get(old.title());
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            titles.remove(old.title());
+        }
+        for (int f = 0; f < old.fieldLengths().length; ++f) {
+            totalFieldLengths[f] -= old.fieldLengths()[f];
+        }
+    }
+
+    private static int addTerms(Map<String, float[]> termFreqs, int field, String text) {
+        final var terms = TextNormalizer.terms(text);
+        for (final var term : terms) {
+            termFreqs.computeIfAbsent(term, k -> new float[FIELD_WEIGHTS.length])[field] += 1;
+        }
+        return terms.size();
+    }
+
+    /**
+     * Find a movie by its id.
+     */
+    Optional<Document> findById(String id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(entries.get(id)).map(Entry::doc);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find movies with a title which is equal to, or starts with the given title.
+     * Exact matches always come first.
+     * Titles are compared on normalized terms: <code>"amelie"</code> matches
+     * <code>"Amélie Poulain"</code>, but <code>"dune"</code> does not match <code>"Dunes"</code>.
+     */
+    List<Document> findByTitle(String title, int topK) {
+        final var normalizedTitle = TextNormalizer.normalize(title);
+        if (normalizedTitle.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            final var exactMatches = titles.get(normalizedTitle);
+            if (exactMatches != null) {
+                return toDocuments(exactMatches, topK);
+            }
+            // Only match whole terms: the prefix must be followed by a term separator.
+            final var prefix = normalizedTitle + " ";
+            final var ids = new ArrayList<String>(topK);
+            for (final var prefixMatches : titles.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                ids.addAll(prefixMatches);
+                if (ids.size() >= topK) {
+                    break;
+                }
+            }
+            return toDocuments(ids, topK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find movies matching a query, using BM25F ranking.
+     */
+    List<Document> search(String query, int topK) {
+        final var ids = scores(query, topK).keySet();
+        lock.readLock().lock();
+        try {
+            return ids.stream().map(entries::get).filter(Objects::nonNull).map(Entry::doc).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get BM25F scores of the movies best matching a query.
+     *
+     * @return scores by movie id, best matches first
+     */
+    Map<String, Double> scores(String query, int topK) {
+        final var terms = new LinkedHashSet<>(TextNormalizer.terms(query));
+        lock.readLock().lock();
+        try {
+            if (entries.isEmpty() || terms.isEmpty()) {
+                return Map.of();
+            }
+            final int docCount = entries.size();
+            final var avgFieldLengths = new double[FIELD_WEIGHTS.length];
+            for (int f = 0; f < avgFieldLengths.length; ++f) {
+                avgFieldLengths[f] = Math.max(1, totalFieldLengths[f] / docCount);
+            }
+            final var scores = new HashMap<String, Double>();
+            for (final var term : terms) {
+                final var p = postings.get(term);
+                if (p == null) {
+                    continue;
+                }
+                final double idf = Math.log(1 + (docCount - p.size() + 0.5) / (p.size() + 0.5));
+                p.forEach((id, tfs) -> {
+                    // Normalize term frequencies using field lengths, then combine them before saturation.
+                    final var fieldLengths = entries.get(id).fieldLengths();
+                    double tf = 0;
+                    for (int f = 0; f < tfs.length; ++f) {
+                        if (tfs[f] > 0) {
+                            tf += FIELD_WEIGHTS[f] * tfs[f] / (1 - B + B * fieldLengths[f] / avgFieldLengths[f]);
+                        }
+                    }
+                    scores.merge(id, idf * tf * (K1 + 1) / (tf + K1), Double::sum);
+                });
+            }
+            final var topScores = new LinkedHashMap<String, Double>();
+            scores.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(topK)
+                    .forEach(e -> topScores.put(e.getKey(), e.getValue()));
+            return topScores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Document> toDocuments(Collection<String> ids, int topK) {
+        return ids.stream().limit(topK).map(id -> entries.get(id).doc()).toList();
+    }
+
+    private record Entry(Document doc, String title, Map<String, float[]> termFreqs, float[] fieldLengths) {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.movies.Movie;
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import org.springframework.ai.document.Document;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Convert {@link Movie} instances to Spring AI documents.
+ */
+final class MovieDocuments {
+    private MovieDocuments() {
+    }
+
+    static Document toDocument(Movie movie) {
+        // Create text content for this Movie instance.
+        final var movieContentTpl = """
+                Id: %s
+                Title: %s
+                Genres: %s
+                Overview: %s
+                Released: %s
+                Credits: %s
+                """;
+        final var releaseDateStr = movie.releaseDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        final var movieContent = String.format(movieContentTpl,
+                movie.id(), movie.title(),
+                String.join(", ", movie.genres()),
+                movie.overview(), releaseDateStr,
+                movie.credits() == null ? "" : String.join(", ", movie.credits()));
+
+        // Set content metadata.
+        // Genres and credits are also stored as normalized tags, which can be used in filter expressions:
+        // tags are joined with commas, which is how Redis splits TAG fields.
+        final var genres = List.of(movie.genres());
+        final var credits = movie.credits() == null ? List.<String>of() : List.of(movie.credits());
+        final Map<String, Object> metadata = Map.of(
+                "title", movie.title(),
+                "releaseDate", releaseDateStr,
+                "releaseYear", movie.releaseDate().getYear(),
+                "genres", genres,
+                "genreTags", genres.stream().map(MovieDocuments::toTag).collect(Collectors.joining(",")),
+                "creditTags", credits.stream().map(MovieDocuments::toTag).collect(Collectors.joining(","))
+        );
+
+        // Build a Spring AI Document which holds a summary of the content we want to index.
+        return new Document(movie.id(), movieContent, metadata);
+    }
+
+    /**
+     * Keep the fields of a movie document which are useful as prompt context:
+     * ids and credits only add tokens to the prompt.
+     */
+    static Document toContext(Document doc) {
+        final var content = doc.getContent().lines()
+                .filter(line -> !line.startsWith("Id:") && !line.startsWith("Credits:"))
+                .collect(Collectors.joining("\n", "", "\n"));
+        return new Document(doc.getId(), content, doc.getMetadata());
+    }
+
+    /**
+     * Convert a value to a tag: <code>"Science Fiction"</code> becomes <code>"science_fiction"</code>.
+     */
+    static String toTag(String value) {
+        return TextNormalizer.normalize(value).replace(' ', '_');
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.ingest.PrecomputedEmbeddings;
+import com.broadcom.tanzu.demos.springai101.movies.MovieDataset;
+import com.broadcom.tanzu.demos.springai101.movies.MovieIndexFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Build the movie index (see {@link MovieIndexFile}) and exit.
+ * <p>
+ * This component is enabled at build time by setting <code>app.movies.index.export</code>
+ * to the path of the index file to write.
+ */
+@Component
+@ConditionalOnProperty(name = "app.movies.index.export")
+class MovieIndexExporter implements ApplicationRunner {
+    private static final int BATCH_SIZE = 512;
+    private final Logger logger = LoggerFactory.getLogger(MovieIndexExporter.class);
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${app.movies.index.export}")
+    private Path indexFile;
+
+    @Value("${app.movies.index.model-tag}")
+    private String modelTag;
+
+    @Value("classpath:/movies-2024.tsv")
+    private Resource moviesRes;
+
+    MovieIndexExporter(EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy,
+                       ObjectMapper objectMapper, ConfigurableApplicationContext context) {
+        this.embeddingModel = embeddingModel;
+        this.batchingStrategy = batchingStrategy;
+        this.objectMapper = objectMapper;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        final var movies = MovieDataset.read(moviesRes);
+        logger.info("Building movie index using embedding model {}: {} movies", modelTag, movies.size());
+
+        final var entries = new ArrayList<MovieIndexFile.Entry>(movies.size());
+        for (int start = 0; start < movies.size(); start += BATCH_SIZE) {
+            final var batch = movies.subList(start, Math.min(start + BATCH_SIZE, movies.size()));
+            // Embeddings are computed from the same documents as the ones added to the vector store.
+            final var docs = batch.stream().map(MovieDocuments::toDocument).toList();
+            final var vectors = embeddingModel.embed(docs, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+            for (int i = 0; i < batch.size(); ++i) {
+                entries.add(new MovieIndexFile.Entry(batch.get(i), PrecomputedEmbeddings.key(docs.get(i).getContent()), vectors.get(i)));
+            }
+            logger.info("Computed embeddings: {}/{}", entries.size(), movies.size());
+        }
+
+        MovieIndexFile.write(indexFile, modelTag, MovieDataset.checksum(moviesRes), entries, objectMapper);
+        logger.info("Movie index written to {}", indexFile.toAbsolutePath());
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.RedisVectorStore;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-rank movie candidates using a lightweight local scorer.
+ * <p>
+ * The score combines title similarity, BM25F relevance (from the lexical index) and
+ * vector similarity (when the candidate comes from the vector store). No model is called.
+ */
+@Component
+class MovieReranker {
+    // A close vector match must be able to pass the min score on its own (such as a misspelled title).
+    private static final double TITLE_WEIGHT = 0.4;
+    private static final double LEXICAL_WEIGHT = 0.2;
+    private static final double VECTOR_WEIGHT = 0.4;
+    private final LexicalMovieIndex lexicalIndex;
+
+    MovieReranker(LexicalMovieIndex lexicalIndex) {
+        this.lexicalIndex = lexicalIndex;
+    }
+
+    /**
+     * Re-rank candidates for a query.
+     *
+     * @param query      search query (a movie title)
+     * @param candidates candidate movies, with unique ids
+     * @return scored candidates, best matches first
+     */
+    List<ScoredMovie> rerank(String query, Collection<Document> candidates) {
+        final var lexicalScores = lexicalIndex.scores(query, Math.max(candidates.size() * 4, 50));
+        final double maxLexicalScore = lexicalScores.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        final var normalizedQuery = TextNormalizer.normalize(query);
+        final var queryTerms = new HashSet<>(TextNormalizer.terms(query));
+
+        return candidates.stream()
+                .map(doc -> {
+                    final double title = titleSimilarity(normalizedQuery, queryTerms, (String) doc.getMetadata().get("title"));
+                    final double lexical = maxLexicalScore == 0 ? 0 : lexicalScores.getOrDefault(doc.getId(), 0.0) / maxLexicalScore;
+                    final double vector = vectorSimilarity(doc.getMetadata());
+                    return new ScoredMovie(doc, TITLE_WEIGHT * title + LEXICAL_WEIGHT * lexical + VECTOR_WEIGHT * vector);
+                })
+                .sorted(Comparator.comparingDouble(ScoredMovie::score).reversed())
+                .toList();
+    }
+
+    private static double titleSimilarity(String normalizedQuery, Set<String> queryTerms, String title) {
+        if (title == null) {
+            return 0;
+        }
+        final var normalizedTitle = TextNormalizer.normalize(title);
+        if (normalizedTitle.equals(normalizedQuery)) {
+            return 1;
+        }
+        if (!normalizedQuery.isEmpty() && normalizedTitle.startsWith(normalizedQuery + " ")) {
+            return 0.8;
+        }
+        // Dice coefficient on title terms, or on character trigrams to handle misspelled titles.
+        final var titleTerms = new HashSet<>(TextNormalizer.terms(title));
+        return 0.7 * Math.max(dice(queryTerms, titleTerms), dice(trigrams(normalizedQuery), trigrams(normalizedTitle)));
+    }
+
+    private static double dice(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        final long common = a.stream().filter(b::contains).count();
+        return 2.0 * common / (a.size() + b.size());
+    }
+
+    private static Set<String> trigrams(String normalizedText) {
+        final var padded = " " + normalizedText + " ";
+        final var trigrams = new HashSet<String>();
+        for (int i = 0; i + 3 <= padded.length(); ++i) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static double vectorSimilarity(Map<String, Object> metadata) {
+        // Vector stores report a distance: the lower, the better.
+        var distance = metadata.get(RedisVectorStore.DISTANCE_FIELD_NAME);
+        if (distance == null) {
+            distance = metadata.get("distance");
+        }
+        if (distance instanceof Number n) {
+            return Math.max(0, 1 - n.doubleValue());
+        }
+        return 0;
+    }
+
+    /**
+     * A movie candidate with its score.
+     */
+    record ScoredMovie(Document doc, double score) {
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.ingest.DocumentIngestionPipeline;
+import com.broadcom.tanzu.demos.springai101.ingest.PrecomputedEmbeddings;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.RedisVectorStore;
+import org.springframework.ai.vectorstore.RedisVectorStore.MetadataField;
+import org.springframework.ai.vectorstore.RedisVectorStore.RedisVectorStoreConfig;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationConvention;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+class MovieVectorStoreConfig {
+    @Bean
+    @Lazy
+    RedisVectorStore vectorStore(EmbeddingModel embeddingModel,
+                                 PrecomputedEmbeddings precomputedEmbeddings,
+                                 JedisConnectionFactory jedisConnectionFactory,
+                                 ObjectProvider<ObservationRegistry> observationRegistry,
+                                 ObjectProvider<VectorStoreObservationConvention> observationConvention,
+                                 BatchingStrategy batchingStrategy,
+                                 @Value("${spring.ai.vectorstore.redis.index:default-index}") String index,
+                                 @Value("${spring.ai.vectorstore.redis.prefix:default:}") String prefix,
+                                 @Value("${spring.ai.vectorstore.redis.initialize-schema:false}") boolean initializeSchema) {
+        // This bean is created on first use: connecting to Redis (and creating the index) does not delay startup.
+        // Unlike the default vector store, movie metadata is indexed by Redis:
+        // searches can then be restricted to movies matching a filter expression.
+        // Redis only returns declared fields: the title and release date come back with every hit.
+        final var config = RedisVectorStoreConfig.builder()
+                .withIndexName(index)
+                .withPrefix(prefix)
+                .withMetadataFields(metadataFields())
+                .build();
+        final var jedis = new JedisPooled(jedisConnectionFactory.getHostName(), jedisConnectionFactory.getPort());
+        // Embeddings computed at build time are used when available.
+        return new RedisVectorStore(config, precomputedEmbeddings.wrap(embeddingModel), jedis, initializeSchema,
+                observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP),
+                observationConvention.getIfAvailable(() -> null), batchingStrategy);
+    }
+
+    private static List<MetadataField> metadataFields() {
+        // Chunks and documents from the ingestion pipeline share this index with movies.
+        final var fields = new ArrayList<>(List.of(
+                MetadataField.text("title"),
+                MetadataField.tag("releaseDate"),
+                MetadataField.numeric("releaseYear"),
+                MetadataField.tag("genreTags"),
+                MetadataField.tag("creditTags")));
+        fields.addAll(DocumentIngestionPipeline.METADATA_FIELDS);
+        return fields;
+    }
+}
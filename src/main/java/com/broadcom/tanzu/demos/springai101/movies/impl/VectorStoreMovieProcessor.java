@@ -22,52 +22,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Map;
 
 @Component
 class VectorStoreMovieProcessor implements MovieProcessor {
     private final Logger logger = LoggerFactory.getLogger(VectorStoreMovieProcessor.class);
     private final VectorStore vectorStore;
 
-    VectorStoreMovieProcessor(VectorStore vectorStore) {
+    VectorStoreMovieProcessor(@Lazy VectorStore vectorStore) {
         this.vectorStore = vectorStore;
     }
 
     public void process(Movie movie) {
         logger.debug("Inserting movie into vector store: {} ({})", movie.id(), movie.title());
 
-        // Create text content for this Movie instance.
-        final var movieContentTpl = """
-                Id: %s
-                Title: %s
-                Genres: %s
-                Overview: %s
-                Released: %s
-                Credits: %s
-                """;
-        final var releaseDateStr = movie.releaseDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
-        final var movieContent = String.format(movieContentTpl,
-                movie.id(), movie.title(),
-                String.join(", ", movie.genres()),
-                movie.overview(), releaseDateStr,
-                movie.credits() == null ? "" : String.join(", ", movie.credits()));
-
-        // Set content metadata.
-        final Map<String, Object> metadata = Map.of(
-                "title", movie.title(),
-                "releaseDate", releaseDateStr,
-                "releaseYear", movie.releaseDate().getYear()
-        );
-
         // Build a Spring AI Document which holds a summary of the content we want to index.
-        final Document doc = new Document(movie.id(), movieContent, metadata);
+        final Document doc = MovieDocuments.toDocument(movie);
 
         // Let's add this content to the vector store.
         // At this stage, we don't know the actual implementation.
         vectorStore.add(List.of(doc));
     }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
 }
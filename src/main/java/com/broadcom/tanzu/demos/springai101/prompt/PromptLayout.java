@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lay out prompts so that they can be cached by the AI provider.
+ * <p>
+ * Providers such as OpenAI cache prompt prefixes: repeated prefixes are cheaper and faster to process.
+ * A prompt is laid out as static instructions (sent as the system message, which never changes),
+ * followed by context sections (such as retrieved documents), and then per-request parameters:
+ * content which changes with every request always comes last.
+ * <p>
+ * Instructions must not contain any template placeholder, so that they are byte-stable across requests.
+ * Output format instructions (such as a JSON schema) are static as well: they belong to the system message,
+ * instead of being appended to the user message after variable content.
+ * <p>
+ * Note that providers only cache long prompts: OpenAI needs a prefix of at least 1024 tokens.
+ * Shorter prompts are never cached, no matter how they are laid out.
+ */
+public final class PromptLayout {
+    private final String system;
+    private final String user;
+
+    private PromptLayout(String system, String user) {
+        this.system = system;
+        this.user = user;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the system message: this text is the same for every request.
+     */
+    public String system() {
+        return system;
+    }
+
+    /**
+     * Get the user message template, where context sections come before request parameters.
+     */
+    public String user() {
+        return user;
+    }
+
+    public static final class Builder {
+        private final List<String[]> sections = new ArrayList<>(2);
+        private final List<String[]> params = new ArrayList<>(4);
+        private String instructions;
+        private String format;
+
+        private Builder() {
+        }
+
+        public Builder instructions(String instructions) {
+            if (instructions.indexOf('{') != -1 || instructions.indexOf('}') != -1) {
+                throw new IllegalArgumentException("Instructions must not include template placeholders");
+            }
+            this.instructions = instructions.strip();
+            return this;
+        }
+
+        /**
+         * Set output format instructions, appended to the system message.
+         * <p>
+         * The system message is never rendered as a template: format instructions may include braces.
+         */
+        public Builder format(String format) {
+            this.format = format.strip();
+            return this;
+        }
+
+        /**
+         * Add a context section, rendered from a template parameter.
+         *
+         * @param title section title
+         * @param param name of the template parameter holding the section content
+         */
+        public Builder section(String title, String param) {
+            sections.add(new String[]{title, param});
+            return this;
+        }
+
+        /**
+         * Add a request parameter, rendered after all sections.
+         *
+         * @param label parameter label
+         * @param param name of the template parameter holding the parameter value
+         */
+        public Builder param(String label, String param) {
+            params.add(new String[]{label, param});
+            return this;
+        }
+
+        public PromptLayout build() {
+            if (instructions == null) {
+                throw new IllegalStateException("Missing instructions");
+            }
+            final var user = new StringBuilder(128);
+            for (final var s : sections) {
+                user.append(s[0]).append("\n---\n{").append(s[1]).append("}\n\n");
+            }
+            for (final var p : params) {
+                user.append(p[0]).append(": {").append(p[1]).append("}\n");
+            }
+            final var system = format == null ? instructions : instructions + "\n\n" + format;
+            return new PromptLayout(system, user.toString().strip());
+        }
+    }
+}
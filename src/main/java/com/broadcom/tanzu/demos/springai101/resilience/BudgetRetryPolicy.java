@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.resilience;
+
+import com.broadcom.tanzu.demos.springai101.deadline.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryPolicy;
+
+/**
+ * Retry policy drawing every retry from a {@link RetryBudget}.
+ * <p>
+ * No retry is made once the request deadline has expired.
+ */
+class BudgetRetryPolicy implements RetryPolicy {
+    private static final String BUDGET_RETRY_COUNT = "app.retry-budget.count";
+    private static final String BUDGET_GRANTED = "app.retry-budget.granted";
+    private final Logger logger = LoggerFactory.getLogger(BudgetRetryPolicy.class);
+    private final RetryPolicy delegate;
+    private final RetryBudget budget;
+
+    BudgetRetryPolicy(RetryPolicy delegate, RetryBudget budget) {
+        this.delegate = delegate;
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean canRetry(RetryContext context) {
+        if (!delegate.canRetry(context)) {
+            return false;
+        }
+        final int retryCount = context.getRetryCount();
+        if (retryCount == 0) {
+            // The first attempt is not a retry.
+            return true;
+        }
+        final var deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            return false;
+        }
+        // This method is called more than once for the same attempt: only draw from the budget once.
+        if (Integer.valueOf(retryCount).equals(context.getAttribute(BUDGET_RETRY_COUNT))) {
+            return Boolean.TRUE.equals(context.getAttribute(BUDGET_GRANTED));
+        }
+        final boolean granted = budget.tryAcquire();
+        context.setAttribute(BUDGET_RETRY_COUNT, retryCount);
+        context.setAttribute(BUDGET_GRANTED, granted);
+        if (!granted) {
+            logger.debug("Retry budget exhausted: not retrying");
+        }
+        return granted;
+    }
+
+    @Override
+    public RetryContext open(RetryContext parent) {
+        return delegate.open(parent);
+    }
+
+    @Override
+    public void close(RetryContext context) {
+        delegate.close(context);
+    }
+
+    @Override
+    public void registerThrowable(RetryContext context, Throwable throwable) {
+        delegate.registerThrowable(context, throwable);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.resilience;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.image.ImageModel;
+import org.springframework.ai.image.ImagePrompt;
+import org.springframework.ai.image.ImageResponse;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Protect calls to remote services with circuit breakers (one per dependency).
+ * <p>
+ * When a dependency keeps failing (or is too slow), its circuit is open: calls fail immediately
+ * with {@link CallNotPermittedException}, instead of piling up until they time out.
+ * <p>
+ * Chat calls may run functions calling other dependencies: only failures raised by the AI provider
+ * are recorded by the chat circuit breaker.
+ */
+@Component
+public class CircuitBreakers {
+    public static final String CHAT = "chat";
+    public static final String EMBEDDING = "embedding";
+    public static final String IMAGE = "image";
+    public static final String WEATHER = "weather";
+    private final CircuitBreakerRegistry registry;
+    private final CircuitBreakerConfig chatConfig;
+    // Failures already recorded by the circuit breaker of the dependency which raised them.
+    private final Set<Throwable> dependencyFailures = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    CircuitBreakers(CircuitBreakerRegistry registry,
+                    @Value("${app.resilience.circuit-breaker.chat-slow-call-duration}") Duration chatSlowCallDuration) {
+        this.registry = registry;
+        this.chatConfig = CircuitBreakerConfig.from(registry.getDefaultConfig())
+                .recordException(this::isProviderFailure)
+                .slowCallDurationThreshold(chatSlowCallDuration)
+                .build();
+        registry.getAllCircuitBreakers().forEach(this::trackFailures);
+        registry.getEventPublisher().onEntryAdded(e -> trackFailures(e.getAddedEntry()));
+    }
+
+    public CircuitBreaker get(String name) {
+        return CHAT.equals(name) ? registry.circuitBreaker(name, chatConfig) : registry.circuitBreaker(name);
+    }
+
+    private void trackFailures(CircuitBreaker cb) {
+        if (CHAT.equals(cb.getName())) {
+            return;
+        }
+        cb.getEventPublisher()
+                .onError(e -> dependencyFailures.add(e.getThrowable()))
+                .onIgnoredError(e -> dependencyFailures.add(e.getThrowable()));
+    }
+
+    private boolean isProviderFailure(Throwable e) {
+        for (var t = e; t != null; t = t.getCause()) {
+            if (dependencyFailures.contains(t)) {
+                // A function called by the model failed: the AI provider is not at fault.
+                return false;
+            }
+        }
+        return e instanceof TransientAiException || e instanceof ResourceAccessException
+                || e instanceof RestClientResponseException || e instanceof WebClientException
+                || e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (var t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ChatModel wrap(ChatModel delegate) {
+        final var cb = get(CHAT);
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return cb.executeSupplier(() -> delegate.call(prompt));
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return decorate(cb, Flux.defer(() -> delegate.stream(prompt)));
+            }
+
+            @Override
+            public ChatOptions getDefaultOptions() {
+                return delegate.getDefaultOptions();
+            }
+        };
+    }
+
+    public EmbeddingModel wrap(EmbeddingModel delegate) {
+        final var cb = get(EMBEDDING);
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                return cb.executeSupplier(() -> delegate.call(request));
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return cb.executeSupplier(() -> delegate.embed(document));
+            }
+
+            @Override
+            public int dimensions() {
+                // Some models know their dimensions without calling the AI provider.
+                return delegate.dimensions();
+            }
+        };
+    }
+
+    public ImageModel wrap(ImageModel delegate) {
+        final var cb = get(IMAGE);
+        return prompt -> cb.executeSupplier(() -> delegate.call(prompt));
+    }
+
+    public <T> Mono<T> decorate(CircuitBreaker cb, Mono<T> mono) {
+        return decorate(cb, mono.flux()).singleOrEmpty();
+    }
+
+    /**
+     * Protect a stream with a circuit breaker.
+     * <p>
+     * The call is recorded when the first element is received: a long stream is not a slow call.
+     */
+    public <T> Flux<T> decorate(CircuitBreaker cb, Flux<T> flux) {
+        return Flux.defer(() -> {
+            if (!cb.tryAcquirePermission()) {
+                return Flux.error(CallNotPermittedException.createCallNotPermittedException(cb));
+            }
+            final long start = cb.getCurrentTimestamp();
+            final var recorded = new AtomicBoolean();
+            return flux
+                    .doOnNext(e -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            cb.onSuccess(cb.getCurrentTimestamp() - start, cb.getTimestampUnit());
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            cb.onSuccess(cb.getCurrentTimestamp() - start, cb.getTimestampUnit());
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            cb.onError(cb.getCurrentTimestamp() - start, cb.getTimestampUnit(), e);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            cb.releasePermission();
+                        }
+                    });
+        });
+    }
+}
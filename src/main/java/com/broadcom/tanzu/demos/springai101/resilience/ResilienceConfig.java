@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.resilience;
+
+import com.broadcom.tanzu.demos.springai101.deadline.Deadline;
+import com.broadcom.tanzu.demos.springai101.deadline.DeadlineExceededException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.autoconfigure.retry.SpringAiRetryProperties;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration(proxyBeanMethods = false)
+class ResilienceConfig {
+    private final Logger logger = LoggerFactory.getLogger(ResilienceConfig.class);
+
+    @Bean
+    CircuitBreakerRegistry circuitBreakerRegistry(@Value("${app.resilience.circuit-breaker.failure-rate-threshold}") float failureRateThreshold,
+                                                  @Value("${app.resilience.circuit-breaker.slow-call-duration}") Duration slowCallDuration,
+                                                  @Value("${app.resilience.circuit-breaker.sliding-window-size}") int slidingWindowSize,
+                                                  @Value("${app.resilience.circuit-breaker.minimum-calls}") int minimumCalls,
+                                                  @Value("${app.resilience.circuit-breaker.open-duration}") Duration openDuration) {
+        final var config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                // Client errors (such as an invalid request) do not mean the remote service is struggling.
+                .ignoreExceptions(NonTransientAiException.class, HttpClientErrorException.class)
+                // Neither do requests running out of time, or rejected by another open circuit.
+                // Calls aborted by an expired deadline fail with I/O errors.
+                .ignoreException(e -> CircuitBreakers.hasCause(e, CallNotPermittedException.class)
+                        || CircuitBreakers.hasCause(e, DeadlineExceededException.class)
+                        || Deadline.isCurrentExpired())
+                .build();
+        return CircuitBreakerRegistry.of(config);
+    }
+
+    @Bean
+    TaggedCircuitBreakerMetrics circuitBreakerMetrics(CircuitBreakerRegistry registry) {
+        // Publish circuit breaker states and call outcomes as metrics.
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry);
+    }
+
+    @Bean
+    RetryTemplate retryTemplate(SpringAiRetryProperties props, MeterRegistry meterRegistry,
+                                @Value("${app.resilience.retry-budget.max-retries}") int maxRetries,
+                                @Value("${app.resilience.retry-budget.period}") Duration period) {
+        // Replace the RetryTemplate instance used by Spring AI:
+        // retries are drawn from a retry budget, with a randomized exponential backoff.
+        final var retryPolicy = new SimpleRetryPolicy(props.getMaxAttempts(),
+                Map.of(TransientAiException.class, true, ResourceAccessException.class, true), true);
+        final var backOffPolicy = new ExponentialRandomBackOffPolicy();
+        backOffPolicy.setInitialInterval(props.getBackoff().getInitialInterval().toMillis());
+        backOffPolicy.setMultiplier(props.getBackoff().getMultiplier());
+        backOffPolicy.setMaxInterval(props.getBackoff().getMaxInterval().toMillis());
+
+        final var retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new BudgetRetryPolicy(retryPolicy, new RetryBudget(maxRetries, period, meterRegistry)));
+        retryTemplate.setBackOffPolicy(backOffPolicy);
+        retryTemplate.registerListener(new RetryListener() {
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                logger.warn("AI call failed (attempt {}): {}", context.getRetryCount(), throwable.getMessage());
+            }
+        });
+        return retryTemplate;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.resilience;
+
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Limit the number of retries over time, shared by all calls to the AI provider.
+ * <p>
+ * When the AI provider is struggling, most calls fail: retrying every call would double the load.
+ * Once the budget is spent, calls fail on the first error, until tokens are refilled.
+ */
+class RetryBudget {
+    private final Bucket bucket;
+    private final Counter allowed;
+    private final Counter rejected;
+
+    RetryBudget(int maxRetries, Duration period, MeterRegistry meterRegistry) {
+        this.bucket = Bucket.builder()
+                .addLimit(limit -> limit.capacity(maxRetries).refillGreedy(maxRetries, period))
+                .build();
+        Gauge.builder("app.retry.budget", bucket, Bucket::getAvailableTokens)
+                .description("Retries available in the retry budget")
+                .register(meterRegistry);
+        this.allowed = Counter.builder("app.retries").tag("result", "allowed").register(meterRegistry);
+        this.rejected = Counter.builder("app.retries").tag("result", "rejected").register(meterRegistry);
+    }
+
+    boolean tryAcquire() {
+        if (bucket.tryConsume(1)) {
+            allowed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+}
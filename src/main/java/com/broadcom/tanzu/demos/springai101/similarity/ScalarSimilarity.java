@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.similarity;
+
+/**
+ * Kernels implemented with scalar loops.
+ * <p>
+ * Float sums use independent accumulators: the JIT compiler does not reorder floating-point additions,
+ * so a single accumulator would serialize the loop on the latency of each addition.
+ */
+final class ScalarSimilarity {
+    private ScalarSimilarity() {
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; ++i) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float cosine(float[] a, float[] b) {
+        float dot0 = 0, dot1 = 0, na0 = 0, na1 = 0, nb0 = 0, nb1 = 0;
+        int i = 0;
+        for (; i + 2 <= a.length; i += 2) {
+            dot0 += a[i] * b[i];
+            na0 += a[i] * a[i];
+            nb0 += b[i] * b[i];
+            dot1 += a[i + 1] * b[i + 1];
+            na1 += a[i + 1] * a[i + 1];
+            nb1 += b[i + 1] * b[i + 1];
+        }
+        for (; i < a.length; ++i) {
+            dot0 += a[i] * b[i];
+            na0 += a[i] * a[i];
+            nb0 += b[i] * b[i];
+        }
+        return cosine(dot0 + dot1, na0 + na1, nb0 + nb1);
+    }
+
+    static float cosine(float dot, float na, float nb) {
+        return na == 0 || nb == 0 ? 0 : (float) (dot / Math.sqrt((double) na * nb));
+    }
+
+    static float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0;
+        int i = 0;
+        for (; i + 2 <= length; i += 2) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+        }
+        for (; i < length; ++i) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return s0 + s1;
+    }
+
+    static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        // Integer sums can be reordered, so the JIT compiler is free to unroll and vectorize this loop.
+        int sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static int hamming(long[] a, int aOffset, long[] b, int bOffset, int length) {
+        int distance = 0;
+        for (int i = 0; i < length; ++i) {
+            distance += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.similarity;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels implemented with the Java Vector API.
+ * <p>
+ * This class is only loaded when the module <code>jdk.incubator.vector</code> is available.
+ */
+final class SimdSimilarity {
+    private static final VectorSpecies<Float> FLOAT = FloatVector.SPECIES_PREFERRED;
+    // int8 values are loaded with a species 4 times shorter than the 32-bit species they are widened to.
+    private static final boolean WIDE = FLOAT.vectorBitSize() >= 512;
+    private static final VectorSpecies<Byte> BYTE = WIDE ? ByteVector.SPECIES_128 : ByteVector.SPECIES_64;
+    private static final VectorSpecies<Float> WIDE_FLOAT = WIDE ? FloatVector.SPECIES_512 : FloatVector.SPECIES_256;
+    private static final VectorSpecies<Integer> WIDE_INT = WIDE ? IntVector.SPECIES_512 : IntVector.SPECIES_256;
+    // 256-bit species are emulated on 128-bit hardware (such as NEON), which is slower than scalar loops.
+    static final boolean INT8 = FLOAT.vectorBitSize() >= 256;
+
+    private SimdSimilarity() {
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        // Use 2 accumulators to hide the latency of FMA instructions.
+        var acc0 = FloatVector.zero(FLOAT);
+        var acc1 = FloatVector.zero(FLOAT);
+        final int step = FLOAT.length();
+        int i = 0;
+        for (; i + 2 * step <= length; i += 2 * step) {
+            acc0 = FloatVector.fromArray(FLOAT, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOAT, b, bOffset + i), acc0);
+            acc1 = FloatVector.fromArray(FLOAT, a, aOffset + i + step)
+                    .fma(FloatVector.fromArray(FLOAT, b, bOffset + i + step), acc1);
+        }
+        for (; i + step <= length; i += step) {
+            acc0 = FloatVector.fromArray(FLOAT, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOAT, b, bOffset + i), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float cosine(float[] a, float[] b) {
+        var dot = FloatVector.zero(FLOAT);
+        var na = FloatVector.zero(FLOAT);
+        var nb = FloatVector.zero(FLOAT);
+        final int bound = FLOAT.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            final var va = FloatVector.fromArray(FLOAT, a, i);
+            final var vb = FloatVector.fromArray(FLOAT, b, i);
+            dot = va.fma(vb, dot);
+            na = va.fma(va, na);
+            nb = vb.fma(vb, nb);
+        }
+        float sumDot = dot.reduceLanes(VectorOperators.ADD);
+        float sumA = na.reduceLanes(VectorOperators.ADD);
+        float sumB = nb.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; ++i) {
+            sumDot += a[i] * b[i];
+            sumA += a[i] * a[i];
+            sumB += b[i] * b[i];
+        }
+        return ScalarSimilarity.cosine(sumDot, sumA, sumB);
+    }
+
+    static float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        var acc = FloatVector.zero(WIDE_FLOAT);
+        final int bound = BYTE.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += BYTE.length()) {
+            final var vb = (FloatVector) ByteVector.fromArray(BYTE, b, bOffset + i)
+                    .convertShape(VectorOperators.B2F, WIDE_FLOAT, 0);
+            acc = FloatVector.fromArray(WIDE_FLOAT, a, aOffset + i).fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        var acc = IntVector.zero(WIDE_INT);
+        final int bound = BYTE.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += BYTE.length()) {
+            final var va = (IntVector) ByteVector.fromArray(BYTE, a, aOffset + i)
+                    .convertShape(VectorOperators.B2I, WIDE_INT, 0);
+            final var vb = (IntVector) ByteVector.fromArray(BYTE, b, bOffset + i)
+                    .convertShape(VectorOperators.B2I, WIDE_INT, 0);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static void dotMany(float[] query, float[] vectors, int first, int count, float[] scores) {
+        // Score 4 vectors at a time: each slice of the query is loaded once for 4 vectors.
+        final int dims = query.length;
+        final int bound = FLOAT.loopBound(dims);
+        int n = 0;
+        for (; n + 4 <= count; n += 4) {
+            final int o0 = (first + n) * dims;
+            final int o1 = o0 + dims;
+            final int o2 = o1 + dims;
+            final int o3 = o2 + dims;
+            var acc0 = FloatVector.zero(FLOAT);
+            var acc1 = FloatVector.zero(FLOAT);
+            var acc2 = FloatVector.zero(FLOAT);
+            var acc3 = FloatVector.zero(FLOAT);
+            int i = 0;
+            for (; i < bound; i += FLOAT.length()) {
+                final var q = FloatVector.fromArray(FLOAT, query, i);
+                acc0 = q.fma(FloatVector.fromArray(FLOAT, vectors, o0 + i), acc0);
+                acc1 = q.fma(FloatVector.fromArray(FLOAT, vectors, o1 + i), acc1);
+                acc2 = q.fma(FloatVector.fromArray(FLOAT, vectors, o2 + i), acc2);
+                acc3 = q.fma(FloatVector.fromArray(FLOAT, vectors, o3 + i), acc3);
+            }
+            float s0 = acc0.reduceLanes(VectorOperators.ADD);
+            float s1 = acc1.reduceLanes(VectorOperators.ADD);
+            float s2 = acc2.reduceLanes(VectorOperators.ADD);
+            float s3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < dims; ++i) {
+                s0 += query[i] * vectors[o0 + i];
+                s1 += query[i] * vectors[o1 + i];
+                s2 += query[i] * vectors[o2 + i];
+                s3 += query[i] * vectors[o3 + i];
+            }
+            scores[n] = s0;
+            scores[n + 1] = s1;
+            scores[n + 2] = s2;
+            scores[n + 3] = s3;
+        }
+        for (; n < count; ++n) {
+            scores[n] = dot(query, 0, vectors, (first + n) * dims, dims);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.similarity;
+
+/**
+ * Similarity kernels for float32, int8 and binary vectors.
+ * <p>
+ * The Java Vector API is used when the module <code>jdk.incubator.vector</code> is available
+ * (run the JVM with <code>--add-modules jdk.incubator.vector</code>), scalar loops are used otherwise.
+ * <p>
+ * Batched methods score a query against consecutive vectors stored in a single array
+ * (vector <code>i</code> starts at offset <code>i * dimensions</code>): this is the layout used by in-memory indexes.
+ */
+public final class VectorSimilarity {
+    public static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    // Byte lanes are widened to 32-bit lanes, which is only efficient with 256-bit (or larger) vectors.
+    private static final boolean SIMD_INT8 = SIMD && SimdSimilarity.INT8;
+
+    private VectorSimilarity() {
+    }
+
+    /**
+     * Compute the dot product of two float32 vectors.
+     */
+    public static float dot(float[] a, float[] b) {
+        checkDimensions(a.length, b.length);
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return SIMD ? SimdSimilarity.dot(a, aOffset, b, bOffset, length)
+                : ScalarSimilarity.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Compute the cosine similarity of two float32 vectors, in a single pass.
+     *
+     * @return similarity in range <code>[-1, 1]</code>, 0 if a vector is null
+     */
+    public static float cosine(float[] a, float[] b) {
+        checkDimensions(a.length, b.length);
+        return SIMD ? SimdSimilarity.cosine(a, b) : ScalarSimilarity.cosine(a, b);
+    }
+
+    /**
+     * Compute the dot product of a float32 vector with an int8 vector.
+     * <p>
+     * The query does not need to be quantized (asymmetric distance): the result must be
+     * multiplied by the scale of the int8 vector.
+     */
+    public static float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return SIMD_INT8 ? SimdSimilarity.dot(a, aOffset, b, bOffset, length)
+                : ScalarSimilarity.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Compute the dot product of two int8 vectors.
+     */
+    public static int dot(byte[] a, byte[] b) {
+        checkDimensions(a.length, b.length);
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return SIMD_INT8 ? SimdSimilarity.dot(a, aOffset, b, bOffset, length)
+                : ScalarSimilarity.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Compute the Hamming distance of two binary vectors (64 dimensions per <code>long</code>).
+     */
+    public static int hamming(long[] a, long[] b) {
+        checkDimensions(a.length, b.length);
+        return hamming(a, 0, b, 0, a.length);
+    }
+
+    public static int hamming(long[] a, int aOffset, long[] b, int bOffset, int length) {
+        // Long.bitCount is compiled to a single POPCNT instruction:
+        // this is faster than the Vector API for binary codes of a few dozen longs.
+        return ScalarSimilarity.hamming(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Compute the dot products of a float32 query with consecutive float32 vectors.
+     *
+     * @param query   query vector
+     * @param vectors vectors, with the same number of dimensions as the query
+     * @param first   index of the first vector to score
+     * @param count   number of vectors to score
+     * @param scores  dot products (<code>scores[i]</code> is the score of vector <code>first + i</code>)
+     */
+    public static void dotMany(float[] query, float[] vectors, int first, int count, float[] scores) {
+        if (SIMD) {
+            SimdSimilarity.dotMany(query, vectors, first, count, scores);
+            return;
+        }
+        final int dims = query.length;
+        for (int i = 0; i < count; ++i) {
+            scores[i] = ScalarSimilarity.dot(query, 0, vectors, (first + i) * dims, dims);
+        }
+    }
+
+    /**
+     * Compute the dot products of a float32 query with consecutive int8 vectors.
+     *
+     * @see #dotMany(float[], float[], int, int, float[])
+     */
+    public static void dotMany(float[] query, byte[] vectors, int first, int count, float[] scores) {
+        final int dims = query.length;
+        for (int i = 0; i < count; ++i) {
+            scores[i] = dot(query, 0, vectors, (first + i) * dims, dims);
+        }
+    }
+
+    /**
+     * Compute the dot products of an int8 query with consecutive int8 vectors.
+     *
+     * @see #dotMany(float[], float[], int, int, float[])
+     */
+    public static void dotMany(byte[] query, byte[] vectors, int first, int count, int[] scores) {
+        final int dims = query.length;
+        for (int i = 0; i < count; ++i) {
+            scores[i] = dot(query, 0, vectors, (first + i) * dims, dims);
+        }
+    }
+
+    /**
+     * Compute the Hamming distances of a binary query with consecutive binary vectors.
+     *
+     * @see #dotMany(float[], float[], int, int, float[])
+     */
+    public static void hammingMany(long[] query, long[] vectors, int first, int count, int[] distances) {
+        final int length = query.length;
+        for (int i = 0; i < count; ++i) {
+            distances[i] = hamming(query, 0, vectors, (first + i) * length, length);
+        }
+    }
+
+    private static void checkDimensions(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException("Vectors have different dimensions: " + a + " != " + b);
+        }
+    }
+}
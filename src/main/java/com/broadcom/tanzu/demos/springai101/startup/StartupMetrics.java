@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publish cold start metrics, tagged with the AI provider and startup optimizations in use.
+ * <p>
+ * New replicas are only useful once they can serve requests: metric <code>app.startup</code>
+ * tracks time from JVM start until the app is ready (<code>phase=ready</code>)
+ * and until the first request is served (<code>phase=first-request</code>).
+ * Metric <code>app.first.request</code> tracks the duration of the first request.
+ */
+@Component
+class StartupMetrics implements ObservationHandler<Observation.Context> {
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+    private static final String START_TIME = StartupMetrics.class.getName() + ".startTime";
+    private final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+    private final AtomicBoolean firstRequest = new AtomicBoolean(true);
+
+    StartupMetrics(MeterRegistry meterRegistry, @Value("${app.ai-provider}") String aiProvider) {
+        this.meterRegistry = meterRegistry;
+        this.tags = Tags.of(
+                "ai.provider", aiProvider,
+                "aot", String.valueOf(AotDetector.useGeneratedArtifacts()),
+                "cds", String.valueOf(isCdsArchiveEnabled()));
+    }
+
+    private static boolean isCdsArchiveEnabled() {
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    @EventListener
+    void onApplicationReady(ApplicationReadyEvent event) {
+        final long uptime = uptimeMillis();
+        logger.info("App ready in {} ms since JVM start ({})", uptime, tags);
+        register("app.startup", Tags.of("phase", "ready"), uptime);
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return firstRequest.get() && HTTP_SERVER_REQUESTS.equals(context.getName());
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(START_TIME, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        final Long startTime = context.get(START_TIME);
+        if (startTime == null || !firstRequest.compareAndSet(true, false)) {
+            return;
+        }
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        final long uptime = uptimeMillis();
+        logger.info("First request served in {} ms, {} ms since JVM start ({})", duration, uptime, tags);
+        register("app.first.request", Tags.empty(), duration);
+        register("app.startup", Tags.of("phase", "first-request"), uptime);
+    }
+
+    private void register(String name, Tags extraTags, long millis) {
+        TimeGauge.builder(name, () -> millis, TimeUnit.MILLISECONDS)
+                .tags(tags.and(extraTags))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.text;
+
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+
+import java.text.BreakIterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Split text into token-bounded chunks, without breaking sentences.
+ * <p>
+ * Consecutive chunks share up to <code>overlapTokens</code> tokens (full sentences),
+ * so that facts spanning a chunk boundary can still be found in a single chunk.
+ * Sentences which are too long to fit in a chunk are split on word boundaries.
+ */
+public class SentenceTextSplitter extends TextSplitter {
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    public SentenceTextSplitter(int maxTokens, int overlapTokens) {
+        this(new JTokkitTokenCountEstimator(), maxTokens, overlapTokens);
+    }
+
+    public SentenceTextSplitter(TokenCountEstimator tokenCountEstimator, int maxTokens, int overlapTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("Max tokens must be positive");
+        }
+        if (overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("Overlap tokens must be in range [0, maxTokens)");
+        }
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
+    /**
+     * Split a text into chunks.
+     *
+     * @param text text to split
+     * @return text chunks
+     */
+    public List<String> split(String text) {
+        return splitText(text);
+    }
+
+    @Override
+    protected List<String> splitText(String text) {
+        final var chunks = new ArrayList<String>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+
+        final var current = new ArrayDeque<Sentence>();
+        int currentTokens = 0;
+        for (final var sentence : sentences(text)) {
+            if (currentTokens + sentence.tokens() > maxTokens && !current.isEmpty()) {
+                chunks.add(join(current));
+                currentTokens = keepOverlap(current);
+                while (!current.isEmpty() && currentTokens + sentence.tokens() > maxTokens) {
+                    currentTokens -= current.removeFirst().tokens();
+                }
+            }
+            current.addLast(sentence);
+            currentTokens += sentence.tokens();
+        }
+        if (!current.isEmpty()) {
+            chunks.add(join(current));
+        }
+        return chunks;
+    }
+
+    private int keepOverlap(Deque<Sentence> sentences) {
+        // Only keep trailing sentences from the previous chunk, within the overlap budget.
+        final var overlap = new ArrayDeque<Sentence>();
+        int tokens = 0;
+        while (!sentences.isEmpty() && tokens + sentences.peekLast().tokens() <= overlapTokens) {
+            final var s = sentences.removeLast();
+            overlap.addFirst(s);
+            tokens += s.tokens();
+        }
+        sentences.clear();
+        sentences.addAll(overlap);
+        return tokens;
+    }
+
+    private List<Sentence> sentences(String text) {
+        final var sentences = new ArrayList<Sentence>();
+        final var it = BreakIterator.getSentenceInstance(Locale.ROOT);
+        it.setText(text);
+        for (int start = it.first(), end = it.next(); end != BreakIterator.DONE; start = end, end = it.next()) {
+            final var str = text.substring(start, end).strip();
+            if (str.isEmpty()) {
+                continue;
+            }
+            final int tokens = tokenCountEstimator.estimate(str);
+            if (tokens <= maxTokens) {
+                sentences.add(new Sentence(str, tokens));
+            } else {
+                splitLongSentence(str, sentences);
+            }
+        }
+        return sentences;
+    }
+
+    private void splitLongSentence(String sentence, List<Sentence> sentences) {
+        final var buf = new StringBuilder(sentence.length());
+        for (final var word : sentence.split("\\s+")) {
+            final var candidate = buf.isEmpty() ? word : buf + " " + word;
+            if (!buf.isEmpty() && tokenCountEstimator.estimate(candidate) > maxTokens) {
+                final var part = buf.toString();
+                sentences.add(new Sentence(part, tokenCountEstimator.estimate(part)));
+                buf.setLength(0);
+                buf.append(word);
+            } else {
+                buf.setLength(0);
+                buf.append(candidate);
+            }
+        }
+        if (!buf.isEmpty()) {
+            final var part = buf.toString();
+            sentences.add(new Sentence(part, tokenCountEstimator.estimate(part)));
+        }
+    }
+
+    private static String join(Deque<Sentence> sentences) {
+        final var buf = new StringBuilder(256);
+        for (final var s : sentences) {
+            if (!buf.isEmpty()) {
+                buf.append(' ');
+            }
+            buf.append(s.text());
+        }
+        return buf.toString();
+    }
+
+    private record Sentence(String text, int tokens) {
+    }
+}
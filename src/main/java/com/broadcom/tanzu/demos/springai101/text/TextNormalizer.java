@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.text;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalize text for lexical comparisons: case, accents and punctuation are ignored.
+ */
+public final class TextNormalizer {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normalize a text: <code>"Amélie-Poulain!"</code> becomes <code>"amelie poulain"</code>.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        final var str = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        return NON_ALNUM.matcher(DIACRITICS.matcher(str).replaceAll(""))
+                .replaceAll(" ").strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Split a text into normalized terms.
+     */
+    public static List<String> terms(String text) {
+        final var str = normalize(text);
+        final var terms = new ArrayList<String>();
+        if (str.isEmpty()) {
+            return terms;
+        }
+        for (final var term : str.split(" ")) {
+            terms.add(term);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export spans in background using a bounded queue.
+ * <p>
+ * Application threads never block: spans are dropped when the queue is full.
+ * Spans are exported in batches by a single worker thread.
+ */
+class AsyncSpanExportProcessor implements SpanProcessor {
+    private final Logger logger = LoggerFactory.getLogger(AsyncSpanExportProcessor.class);
+    private final BlockingQueue<ReadableSpan> queue;
+    private final SpanExporter exporter;
+    private final int maxBatchSize;
+    private final Duration scheduleDelay;
+    private final Duration exportTimeout;
+    private final Counter exported;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Timer exportTimer;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    AsyncSpanExportProcessor(SpanExporter exporter, int maxQueueSize, int maxBatchSize,
+                             Duration scheduleDelay, Duration exportTimeout, MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+        this.exporter = exporter;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduleDelay = scheduleDelay;
+        this.exportTimeout = exportTimeout;
+        this.exported = Counter.builder("tracing.spans.export")
+                .description("Spans sent to the exporter").tag("result", "success").register(meterRegistry);
+        this.failed = Counter.builder("tracing.spans.export")
+                .description("Spans sent to the exporter").tag("result", "failure").register(meterRegistry);
+        this.dropped = Counter.builder("tracing.spans.dropped")
+                .description("Spans dropped because the export queue was full").register(meterRegistry);
+        this.exportTimer = Timer.builder("tracing.export")
+                .description("Time spent exporting span batches").register(meterRegistry);
+        Gauge.builder("tracing.export.queue.size", queue, BlockingQueue::size)
+                .description("Spans waiting to be exported").register(meterRegistry);
+
+        this.worker = Thread.ofPlatform().daemon().name("span-exporter").start(this::run);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (!running || !queue.offer(span)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private void run() {
+        final var batch = new ArrayList<ReadableSpan>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final var first = queue.poll(scheduleDelay.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                export(batch);
+            } catch (InterruptedException e) {
+                // Export remaining spans before leaving.
+                running = false;
+            } catch (RuntimeException e) {
+                logger.debug("Failed to export spans", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void export(List<ReadableSpan> spans) {
+        final var data = spans.stream().map(ReadableSpan::toSpanData).toList();
+        final long start = System.nanoTime();
+        final var result = exporter.export(data).join(exportTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        exportTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        (result.isSuccess() ? exported : failed).increment(data.size());
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        final var spans = new ArrayList<ReadableSpan>(queue.size());
+        queue.drainTo(spans);
+        if (!spans.isEmpty()) {
+            export(spans);
+        }
+        return exporter.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        running = false;
+        try {
+            worker.join(exportTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return exporter.shutdown();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.tracing;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationFilter;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep the number of metric time series under control.
+ * <p>
+ * Known high-cardinality keys are moved from low-cardinality key values (which become metric tags)
+ * to high-cardinality key values (which are only added to spans). As a safety net, tags with too many
+ * distinct values for a given meter are replaced with {@value #OTHER}.
+ */
+class CardinalityGuard implements ObservationFilter, MeterFilter {
+    static final String OTHER = "OTHER";
+    private final Set<String> highCardinalityKeys;
+    private final int maxTagValues;
+    private final Map<String, Set<String>> tagValues = new ConcurrentHashMap<>();
+
+    CardinalityGuard(Set<String> highCardinalityKeys, int maxTagValues) {
+        this.highCardinalityKeys = highCardinalityKeys;
+        this.maxTagValues = maxTagValues;
+    }
+
+    @Override
+    public Observation.Context map(Observation.Context context) {
+        for (final var key : highCardinalityKeys) {
+            final KeyValue kv = context.getLowCardinalityKeyValue(key);
+            if (kv != null) {
+                context.removeLowCardinalityKeyValue(key);
+                context.addHighCardinalityKeyValue(kv);
+            }
+        }
+        return context;
+    }
+
+    @Override
+    public Meter.Id map(Meter.Id id) {
+        boolean changed = false;
+        final var tags = new ArrayList<Tag>();
+        for (final var tag : id.getTagsAsIterable()) {
+            if (highCardinalityKeys.contains(tag.getKey())) {
+                // This tag should not be there in the first place.
+                changed = true;
+                continue;
+            }
+            final var values = tagValues.computeIfAbsent(id.getName() + '\0' + tag.getKey(), k -> ConcurrentHashMap.newKeySet());
+            if (values.contains(tag.getValue()) || values.size() < maxTagValues) {
+                values.add(tag.getValue());
+                tags.add(tag);
+            } else {
+                tags.add(Tag.of(tag.getKey(), OTHER));
+                changed = true;
+            }
+        }
+        return changed ? id.replaceTags(tags) : id;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.tracing;
+
+import io.github.bucket4j.Bucket;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sample new traces up to a max number of traces per second.
+ * <p>
+ * Traces which are not sampled are still recorded, so that interesting spans
+ * (errors, slow operations) can be exported anyway by {@link TailSamplingSpanProcessor}.
+ */
+class RateLimitedSampler implements Sampler {
+    private final Sampler probabilitySampler;
+    private final Bucket bucket;
+    private final int maxTracesPerSecond;
+
+    RateLimitedSampler(double probability, int maxTracesPerSecond) {
+        this.probabilitySampler = Sampler.traceIdRatioBased(probability);
+        this.maxTracesPerSecond = maxTracesPerSecond;
+        this.bucket = Bucket.builder()
+                .addLimit(limit -> limit.capacity(maxTracesPerSecond).refillGreedy(maxTracesPerSecond, Duration.ofSeconds(1)))
+                .build();
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        final var result = probabilitySampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        if (result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE && bucket.tryConsume(1)) {
+            return result;
+        }
+        return SamplingResult.recordOnly();
+    }
+
+    @Override
+    public String getDescription() {
+        return "RateLimitedSampler{maxTracesPerSecond=" + maxTracesPerSecond + ", " + probabilitySampler.getDescription() + "}";
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decide whether a trace should be exported once its spans have ended.
+ * <p>
+ * Sampled spans are always exported. Spans which were only recorded are buffered by trace id:
+ * the whole trace is exported when any of its spans failed or was slow, and dropped otherwise
+ * once its local root span has ended. Buffers are bounded: when too many traces are pending,
+ * the oldest ones are dropped.
+ * <p>
+ * The status of a span can only be read from a snapshot ({@link ReadableSpan#toSpanData()}), which is too costly
+ * to take for every ended span: failures are reported by observations instead (see {@link #markFailed(String)}).
+ */
+class TailSamplingSpanProcessor implements SpanProcessor {
+    // Set by HTTP server observations: a server error is not always reported as an exception.
+    private static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+    private final SpanProcessor delegate;
+    private final long slowThresholdNanos;
+    private final int maxSpansPerTrace;
+    private final Map<String, TraceBuffer> traces;
+    private final Counter promoted;
+    private final Counter dropped;
+    private final LongAdder processingNanos = new LongAdder();
+
+    TailSamplingSpanProcessor(SpanProcessor delegate, Duration slowThreshold, int maxTraces, int maxSpansPerTrace,
+                              MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.promoted = Counter.builder("tracing.spans.tail")
+                .description("Spans which were not sampled, by tail sampling decision")
+                .tag("decision", "export").register(meterRegistry);
+        this.dropped = Counter.builder("tracing.spans.tail")
+                .description("Spans which were not sampled, by tail sampling decision")
+                .tag("decision", "drop").register(meterRegistry);
+        this.traces = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TraceBuffer> eldest) {
+                if (size() <= maxTraces) {
+                    return false;
+                }
+                dropped.increment(eldest.getValue().spans.size());
+                return true;
+            }
+        };
+        // Time spent in application threads when a span ends: this is the overhead of tracing on requests.
+        FunctionCounter.builder("tracing.spans.processing.time", processingNanos, n -> n.sum() / 1e9)
+                .description("Time spent processing ended spans in application threads")
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        final long start = System.nanoTime();
+        try {
+            if (span.getSpanContext().isSampled()) {
+                delegate.onEnd(span);
+                return;
+            }
+            final var spans = decide(span);
+            if (!spans.isEmpty()) {
+                promoted.increment(spans.size());
+                spans.forEach(delegate::onEnd);
+            }
+        } finally {
+            processingNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private List<ReadableSpan> decide(ReadableSpan span) {
+        final boolean interesting = span.getLatencyNanos() >= slowThresholdNanos
+                || "SERVER_ERROR".equals(span.getAttribute(OUTCOME));
+        // Children usually end before their parent: the local root span ends last.
+        final var parent = span.getParentSpanContext();
+        final boolean localRoot = !parent.isValid() || parent.isRemote();
+        final var traceId = span.getSpanContext().getTraceId();
+
+        synchronized (traces) {
+            final var trace = traces.computeIfAbsent(traceId, k -> new TraceBuffer());
+            trace.export |= interesting;
+            if (trace.export) {
+                // Keep the entry for a while: late spans from this trace are exported as well.
+                final var spans = new ArrayList<>(trace.spans);
+                spans.add(span);
+                trace.spans.clear();
+                return spans;
+            }
+            if (localRoot) {
+                traces.remove(traceId);
+                dropped.increment(trace.spans.size() + 1);
+            } else if (trace.spans.size() < maxSpansPerTrace) {
+                trace.spans.add(span);
+            } else {
+                dropped.increment();
+            }
+            return List.of();
+        }
+    }
+
+    /**
+     * Export a trace which was not sampled, since one of its spans failed.
+     */
+    void markFailed(String traceId) {
+        synchronized (traces) {
+            traces.computeIfAbsent(traceId, k -> new TraceBuffer()).export = true;
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    private static class TraceBuffer {
+        private final List<ReadableSpan> spans = new ArrayList<>(4);
+        private boolean export;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.tracing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.actuate.autoconfigure.tracing.SpanExporters;
+import org.springframework.boot.actuate.autoconfigure.tracing.SpanProcessors;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+@Configuration(proxyBeanMethods = false)
+class TracingConfig {
+    @Bean
+    Sampler otelSampler(@Value("${management.tracing.sampling.probability}") double probability,
+                        @Value("${app.tracing.max-traces-per-second}") int maxTracesPerSecond) {
+        // New traces are sampled up to a max rate: child spans follow the decision made for their parent.
+        // Spans from traces which were not sampled are still recorded, for tail sampling.
+        return Sampler.parentBasedBuilder(new RateLimitedSampler(probability, maxTracesPerSecond))
+                .setLocalParentNotSampled(new RecordOnlySampler())
+                .build();
+    }
+
+    // The processor is shut down with the tracer provider.
+    @Bean(destroyMethod = "")
+    TailSamplingSpanProcessor tailSamplingSpanProcessor(SpanExporters spanExporters, MeterRegistry meterRegistry,
+                                  @Value("${app.tracing.tail.slow-threshold}") Duration slowThreshold,
+                                  @Value("${app.tracing.tail.max-traces}") int maxTraces,
+                                  @Value("${app.tracing.tail.max-spans-per-trace}") int maxSpansPerTrace,
+                                  @Value("${app.tracing.export.max-queue-size}") int maxQueueSize,
+                                  @Value("${app.tracing.export.max-batch-size}") int maxBatchSize,
+                                  @Value("${app.tracing.export.schedule-delay}") Duration scheduleDelay,
+                                  @Value("${app.tracing.export.timeout}") Duration exportTimeout) {
+        // Tail sampling, then a bounded queue which never blocks application threads.
+        final var exporter = SpanExporter.composite(spanExporters.list());
+        final var export = new AsyncSpanExportProcessor(exporter, maxQueueSize, maxBatchSize, scheduleDelay, exportTimeout, meterRegistry);
+        return new TailSamplingSpanProcessor(export, slowThreshold, maxTraces, maxSpansPerTrace, meterRegistry);
+    }
+
+    @Bean
+    SpanProcessors spanProcessors(TailSamplingSpanProcessor tailSamplingSpanProcessor) {
+        // Replace the default span processor with our own pipeline.
+        return SpanProcessors.of(tailSamplingSpanProcessor);
+    }
+
+    @Bean
+    static BeanDefinitionRegistryPostProcessor defaultSpanProcessorRemover() {
+        // Spring Boot always creates a BatchSpanProcessor (with its own thread and queue),
+        // even though it's not used by our span processors: remove it.
+        return registry -> {
+            if (registry.containsBeanDefinition("otelSpanProcessor")) {
+                registry.removeBeanDefinition("otelSpanProcessor");
+            }
+        };
+    }
+
+    @Bean
+    ObservationHandler<Observation.Context> tailSamplingErrorHandler(TailSamplingSpanProcessor tailSamplingSpanProcessor) {
+        return new TailSamplingErrorHandler(tailSamplingSpanProcessor);
+    }
+
+    @Bean
+    CardinalityGuard cardinalityGuard(@Value("${app.tracing.high-cardinality-keys}") Set<String> highCardinalityKeys,
+                                      @Value("${app.tracing.max-tag-values}") int maxTagValues) {
+        return new CardinalityGuard(highCardinalityKeys, maxTagValues);
+    }
+
+    private record TailSamplingErrorHandler(TailSamplingSpanProcessor processor) implements ObservationHandler<Observation.Context> {
+        @Override
+        public void onError(Observation.Context context) {
+            // Only traces which were not sampled need to be marked: sampled spans are always exported.
+            final TracingObservationHandler.TracingContext tracingContext = context.get(TracingObservationHandler.TracingContext.class);
+            final var span = tracingContext == null ? null : tracingContext.getSpan();
+            if (span != null && !Boolean.TRUE.equals(span.context().sampled())) {
+                processor.markFailed(span.context().traceId());
+            }
+        }
+
+        @Override
+        public boolean supportsContext(Observation.Context context) {
+            return true;
+        }
+    }
+
+    private static class RecordOnlySampler implements Sampler {
+        @Override
+        public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                           Attributes attributes, List<LinkData> parentLinks) {
+            return SamplingResult.recordOnly();
+        }
+
+        @Override
+        public String getDescription() {
+            return "RecordOnlySampler";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.broadcom.tanzu.demos.springai101.usage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Record token usage and estimated cost of embedding requests.
+ * <p>
+ * Embeddings are mostly computed outside of HTTP requests (such as when loading movies):
+ * meters are tagged with the AI provider and the model only.
+ * Tokens are estimated when the provider does not report usage.
+ */
+@Component
+public class EmbeddingUsageMeter {
+    private static final String UNKNOWN = "unknown";
+    private final MeterRegistry meterRegistry;
+    private final String provider;
+    private final Map<String, ModelPricing> pricing;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    // Single document embeddings do not report the model: use the last one seen.
+    private final AtomicReference<String> lastModel = new AtomicReference<>(UNKNOWN);
+
+    EmbeddingUsageMeter(MeterRegistry meterRegistry,
+                        @Value("${app.ai-provider}") String provider,
+                        @Value("${app.usage.pricing}") List<String> pricing) {
+        this.meterRegistry = meterRegistry;
+        this.provider = provider;
+        this.pricing = ModelPricing.parse(pricing);
+    }
+
+    public EmbeddingModel wrap(EmbeddingModel delegate) {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                final var resp = delegate.call(request);
+                final var metadata = resp.getMetadata();
+                final var model = metadata == null || metadata.getModel() == null || metadata.getModel().isEmpty()
+                        ? lastModel.get() : metadata.getModel();
+                lastModel.set(model);
+                final var usage = metadata == null ? null : metadata.getUsage();
+                long tokens = usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+                if (tokens == 0) {
+                    tokens = request.getInstructions().stream().mapToLong(tokenCountEstimator::estimate).sum();
+                }
+                record(model, tokens);
+                return resp;
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                final var vector = delegate.embed(document);
+                record(lastModel.get(), tokenCountEstimator.estimate(document.getContent()));
+                return vector;
+            }
+
+            @Override
+            public int dimensions() {
+                return delegate.dimensions();
+            }
+        };
+    }
+
+    private void record(String model, long tokens) {
+        final var tags = Tags.of("provider", provider, "model", model);
+        Counter.builder("ai.embedding.tokens").description("Tokens used by embedding requests")
+                .baseUnit("tokens").tags(tags)
+                .register(meterRegistry).increment(tokens);
+        final var modelPricing = ModelPricing.find(pricing, model);
+        Counter.builder("ai.embedding.cost").description("Estimated cost of embedding requests")
+                .baseUnit("usd").tags(tags)
+                .register(meterRegistry).increment(modelPricing == null ? 0 : modelPricing.cost(tokens, 0, 0));
+    }
+}
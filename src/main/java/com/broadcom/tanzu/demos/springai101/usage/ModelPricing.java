@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.broadcom.tanzu.demos.springai101.usage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Model prices, in USD per million tokens.
+ * <p>
+ * Prompt tokens read from the provider cache are usually billed at a discounted price.
+ */
+record ModelPricing(double prompt, double cachedPrompt, double completion) {
+    private static final Logger logger = LoggerFactory.getLogger(ModelPricing.class);
+    // Models without pricing are only reported once.
+    private static final Set<String> UNPRICED_MODELS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Compute the cost of a request.
+     *
+     * @param promptTokens     prompt tokens, including cached tokens
+     * @param cachedTokens     prompt tokens read from the provider cache
+     * @param completionTokens completion tokens
+     */
+    double cost(long promptTokens, long cachedTokens, long completionTokens) {
+        final long cached = Math.min(cachedTokens, promptTokens);
+        return ((promptTokens - cached) * prompt + cached * cachedPrompt + completionTokens * completion) / 1_000_000;
+    }
+
+    static Map<String, ModelPricing> parse(List<String> entries) {
+        // Entries are formatted as model:prompt:completion[:cached]:
+        // cached prompt tokens are billed as prompt tokens unless a price is set.
+        final var pricing = new HashMap<String, ModelPricing>(entries.size());
+        for (final var entry : entries) {
+            final var parts = entry.strip().split(":");
+            if (parts.length != 3 && parts.length != 4) {
+                throw new IllegalArgumentException("Invalid model pricing (expected model:prompt:completion[:cached]): " + entry);
+            }
+            final double prompt = Double.parseDouble(parts[1]);
+            final double completion = Double.parseDouble(parts[2]);
+            final double cachedPrompt = parts.length == 4 ? Double.parseDouble(parts[3]) : prompt;
+            pricing.put(parts[0], new ModelPricing(prompt, cachedPrompt, completion));
+        }
+        return pricing;
+    }
+
+    static ModelPricing find(Map<String, ModelPricing> pricing, String model) {
+        // Providers usually return versioned model names (such as gpt-4o-2024-08-06): use the longest matching prefix.
+        ModelPricing result = null;
+        int matchLength = -1;
+        for (final var e : pricing.entrySet()) {
+            if (model.startsWith(e.getKey()) && e.getKey().length() > matchLength) {
+                result = e.getValue();
+                matchLength = e.getKey().length();
+            }
+        }
+        if (result == null && !"unknown".equals(model) && UNPRICED_MODELS.add(model)) {
+            logger.warn("No pricing set for model {}: its cost is reported as 0 (see app.usage.pricing)", model);
+        }
+        return result;
+    }
+}
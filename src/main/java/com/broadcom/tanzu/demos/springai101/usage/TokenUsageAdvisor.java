@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.usage;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.metadata.OpenAiUsage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Record token usage and estimated cost of chat requests, for each endpoint.
+ * <p>
+ * Meters are tagged with the endpoint (the HTTP route which triggered the request),
+ * the AI provider and the model. Callers set the endpoint with the advisor parameter {@value #ENDPOINT}:
+ * the current HTTP request is only used as a fallback, as it is not available outside of the request thread
+ * (streaming, worker threads, reactive stack, batch jobs).
+ */
+@Component
+public class TokenUsageAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+    /**
+     * Advisor parameter used to override the endpoint tag.
+     */
+    public static final String ENDPOINT = "usage.endpoint";
+    private static final String UNKNOWN = "unknown";
+
+    private final Logger logger = LoggerFactory.getLogger(TokenUsageAdvisor.class);
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String provider;
+    private final Map<String, ModelPricing> pricing;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+    TokenUsageAdvisor(MeterRegistry meterRegistry, ApplicationEventPublisher eventPublisher,
+                      @Value("${app.ai-provider}") String provider,
+                      @Value("${app.usage.pricing}") List<String> pricing) {
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.provider = provider;
+        this.pricing = ModelPricing.parse(pricing);
+    }
+
+    @Override
+    public String getName() {
+        return TokenUsageAdvisor.class.getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // Run last, as close as possible to the model.
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        final var endpoint = endpoint(advisedRequest);
+        final var context = contextSnapshotFactory.captureAll();
+        final long start = System.nanoTime();
+        final var resp = chain.nextAroundCall(advisedRequest);
+        final long elapsed = System.nanoTime() - start;
+
+        // Without streaming, the first token is received with the full response.
+        final var chatResponse = resp.response();
+        final var usage = chatResponse == null ? null : chatResponse.getMetadata().getUsage();
+        record(endpoint, context, model(chatResponse), elapsed, elapsed,
+                usage == null ? 0 : toLong(usage.getPromptTokens()),
+                cachedTokens(usage),
+                usage == null ? 0 : toLong(usage.getGenerationTokens()));
+        return resp;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        final var endpoint = endpoint(advisedRequest);
+        // The stream completes in another thread: capture the context of the caller (such as the tenant).
+        final var context = contextSnapshotFactory.captureAll();
+        return Flux.defer(() -> {
+            final long start = System.nanoTime();
+            final var firstToken = new AtomicLong();
+            final var lastResponse = new AtomicReference<ChatResponse>();
+            final var text = new StringBuilder(512);
+            return chain.nextAroundStream(advisedRequest)
+                    .doOnNext(resp -> {
+                        firstToken.compareAndSet(0, System.nanoTime() - start);
+                        final var chatResponse = resp.response();
+                        if (chatResponse != null) {
+                            lastResponse.set(chatResponse);
+                            if (chatResponse.getResult() != null && chatResponse.getResult().getOutput().getContent() != null) {
+                                text.append(chatResponse.getResult().getOutput().getContent());
+                            }
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        // Usage is only reported in the last chunk, when the provider supports it:
+                        // otherwise completion tokens are estimated.
+                        final var chatResponse = lastResponse.get();
+                        final var usage = chatResponse == null ? null : chatResponse.getMetadata().getUsage();
+                        final long promptTokens = usage == null ? 0 : toLong(usage.getPromptTokens());
+                        long completionTokens = usage == null ? 0 : toLong(usage.getGenerationTokens());
+                        if (completionTokens == 0 && !text.isEmpty()) {
+                            completionTokens = tokenCountEstimator.estimate(text.toString());
+                        }
+                        record(endpoint, context, model(chatResponse), System.nanoTime() - start, firstToken.get(),
+                                promptTokens, cachedTokens(usage), completionTokens);
+                    });
+        });
+    }
+
+    private void record(String endpoint, ContextSnapshot context, String model, long elapsedNanos, long firstTokenNanos,
+                        long promptTokens, long cachedTokens, long completionTokens) {
+        final var tags = Tags.of("endpoint", endpoint, "provider", provider, "model", model);
+        Counter.builder("ai.tokens").description("Tokens used by chat requests")
+                .baseUnit("tokens").tags(tags).tag("type", "prompt")
+                .register(meterRegistry).increment(promptTokens);
+        Counter.builder("ai.tokens").description("Tokens used by chat requests")
+                .baseUnit("tokens").tags(tags).tag("type", "completion")
+                .register(meterRegistry).increment(completionTokens);
+        Counter.builder("ai.tokens").description("Tokens used by chat requests")
+                .baseUnit("tokens").tags(tags).tag("type", "cached")
+                .register(meterRegistry).increment(cachedTokens);
+        if (promptTokens > 0) {
+            // Track the share of prompt tokens served from the provider cache.
+            DistributionSummary.builder("ai.prompt.cache.ratio").description("Share of prompt tokens read from the provider cache")
+                    .tags(tags).register(meterRegistry).record((double) cachedTokens / promptTokens);
+        }
+        Timer.builder("ai.time.to.first.token").description("Time to first token")
+                .tags(tags).register(meterRegistry).record(firstTokenNanos, TimeUnit.NANOSECONDS);
+
+        // Generation speed is measured after the first token was received.
+        final long generationNanos = elapsedNanos - firstTokenNanos;
+        if (completionTokens > 0 && generationNanos > 0) {
+            DistributionSummary.builder("ai.tokens.per.second").description("Completion tokens generated per second")
+                    .tags(tags).register(meterRegistry).record(completionTokens * 1e9 / generationNanos);
+        }
+
+        final var modelPricing = ModelPricing.find(pricing, model);
+        final double cost = modelPricing == null ? 0 : modelPricing.cost(promptTokens, cachedTokens, completionTokens);
+        Counter.builder("ai.cost").description("Estimated cost of chat requests")
+                .baseUnit("usd").tags(tags)
+                .register(meterRegistry).increment(cost);
+
+        logger.debug("Token usage for {} ({}/{}): prompt={}, cached={}, completion={}, ttft={} ms, cost={} USD",
+                endpoint, provider, model, promptTokens, cachedTokens, completionTokens, firstTokenNanos / 1_000_000, cost);
+        try (final var ignored = context.setThreadLocals()) {
+            eventPublisher.publishEvent(new TokenUsageEvent(endpoint, provider, model, promptTokens, completionTokens));
+        }
+    }
+
+    private static String endpoint(AdvisedRequest advisedRequest) {
+        final var endpoint = advisedRequest.adviseContext().get(ENDPOINT);
+        if (endpoint != null) {
+            return endpoint.toString();
+        }
+        // Use the route (not the actual path) to keep the number of tag values low.
+        final var attrs = RequestContextHolder.getRequestAttributes();
+        if (attrs != null && attrs.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof String pattern) {
+            return pattern;
+        }
+        return UNKNOWN;
+    }
+
+    private static String model(ChatResponse chatResponse) {
+        if (chatResponse == null || chatResponse.getMetadata().getModel() == null || chatResponse.getMetadata().getModel().isEmpty()) {
+            return UNKNOWN;
+        }
+        return chatResponse.getMetadata().getModel();
+    }
+
+    private static long cachedTokens(Usage usage) {
+        if (usage == null) {
+            return 0;
+        }
+        // Cached prompt tokens are only reported by provider-specific usage implementations.
+        if (usage instanceof OpenAiUsage openAiUsage) {
+            return toLong(openAiUsage.getPromptTokensDetailsCachedTokens());
+        }
+        return 0;
+    }
+
+    private static long toLong(Long value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.usage;
+
+/**
+ * Event published when a chat request completes.
+ * <p>
+ * This event is published in the thread which completed the request, with the context
+ * captured when the request started (such as the tenant or the deadline).
+ *
+ * @param endpoint         endpoint which triggered the request
+ * @param provider         AI provider
+ * @param model            model used by the provider
+ * @param promptTokens     number of prompt tokens
+ * @param completionTokens number of completion tokens
+ */
+public record TokenUsageEvent(
+        String endpoint,
+        String provider,
+        String model,
+        long promptTokens,
+        long completionTokens
+) {
+    public long totalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only file holding full-precision vectors.
+ * <p>
+ * Vectors are kept on disk: only the few vectors needed to re-rank search candidates are read,
+ * so that memory usage is driven by quantized vectors.
+ */
+public class FullPrecisionVectors implements Closeable {
+    private final FileChannel channel;
+    private volatile int dimensions = -1;
+    private volatile int size;
+
+    public FullPrecisionVectors(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        // Vectors are not persisted across restarts: the index is rebuilt when movies are loaded.
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Append a vector.
+     *
+     * @param vector vector to append
+     * @return vector ordinal
+     */
+    public synchronized int append(float[] vector) {
+        if (dimensions == -1) {
+            dimensions = vector.length;
+        } else if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected vector with " + dimensions + " dimensions: " + vector.length);
+        }
+        final var buf = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.asFloatBuffer().put(vector);
+        try {
+            long pos = (long) size * buf.capacity();
+            while (buf.hasRemaining()) {
+                pos += channel.write(buf, pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write vector", e);
+        }
+        return size++;
+    }
+
+    /**
+     * Read a vector.
+     *
+     * @param ordinal vector ordinal
+     * @return full-precision vector
+     */
+    public float[] get(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException(ordinal);
+        }
+        final var buf = ByteBuffer.allocate(dimensions * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            long pos = (long) ordinal * buf.capacity();
+            while (buf.hasRemaining()) {
+                final int n = channel.read(buf, pos);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                pos += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read vector: " + ordinal, e);
+        }
+        final var vector = new float[dimensions];
+        buf.flip().asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Evaluate filter expressions against document metadata.
+ * <p>
+ * String values holding comma-separated values are matched as tags (like Redis TAG fields):
+ * <code>genreTags == 'drama'</code> matches <code>"comedy,drama"</code>.
+ */
+final class MetadataFilters {
+    private MetadataFilters() {
+    }
+
+    static Predicate<Map<String, Object>> toPredicate(Filter.Expression expr) {
+        return switch (expr.type()) {
+            case AND -> toPredicate(operand(expr.left())).and(toPredicate(operand(expr.right())));
+            case OR -> toPredicate(operand(expr.left())).or(toPredicate(operand(expr.right())));
+            case NOT -> toPredicate(operand(expr.left())).negate();
+            case EQ -> m -> matches(m.get(key(expr)), value(expr));
+            case NE -> m -> !matches(m.get(key(expr)), value(expr));
+            case IN -> m -> values(expr).stream().anyMatch(v -> matches(m.get(key(expr)), v));
+            case NIN -> m -> values(expr).stream().noneMatch(v -> matches(m.get(key(expr)), v));
+            case GT -> m -> compare(m.get(key(expr)), value(expr), c -> c > 0);
+            case GTE -> m -> compare(m.get(key(expr)), value(expr), c -> c >= 0);
+            case LT -> m -> compare(m.get(key(expr)), value(expr), c -> c < 0);
+            case LTE -> m -> compare(m.get(key(expr)), value(expr), c -> c <= 0);
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        return (Filter.Expression) operand;
+    }
+
+    private static String key(Filter.Expression expr) {
+        return ((Filter.Key) expr.left()).key();
+    }
+
+    private static Object value(Filter.Expression expr) {
+        return ((Filter.Value) expr.right()).value();
+    }
+
+    private static List<?> values(Filter.Expression expr) {
+        return value(expr) instanceof List<?> list ? list : List.of(value(expr));
+    }
+
+    private static boolean matches(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return false;
+        }
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return a.doubleValue() == e.doubleValue();
+        }
+        final var str = actual.toString();
+        final var exp = expected.toString();
+        return str.equals(exp) || (str.indexOf(',') != -1 && Arrays.asList(str.split(",")).contains(exp));
+    }
+
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        // Missing values never match range conditions.
+        if (actual == null || expected == null) {
+            return false;
+        }
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return test.test(Double.compare(a.doubleValue(), e.doubleValue()));
+        }
+        return test.test(actual.toString().compareTo(expected.toString()));
+    }
+}
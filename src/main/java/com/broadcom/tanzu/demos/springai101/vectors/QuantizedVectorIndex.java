@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import com.broadcom.tanzu.demos.springai101.similarity.VectorSimilarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory vector index using compact vector codes.
+ * <p>
+ * Vectors may be truncated to their first dimensions before being encoded: this works well with
+ * Matryoshka embedding models (such as OpenAI <code>text-embedding-3-*</code>), which put the most
+ * important information first. Candidates found using vector codes are then re-ranked using
+ * full-precision vectors.
+ */
+class QuantizedVectorIndex {
+    private static final int SCAN_BLOCK_SIZE = 1024;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StorageMode mode;
+    private final int dimensions;
+    private final int rerankFactor;
+    private final FullPrecisionVectors fullVectors;
+    private final int codeLength;
+    private float[] floatCodes = new float[0];
+    private byte[] int8Codes = new byte[0];
+    private float[] int8Scales = new float[0];
+    private long[] binaryCodes = new long[0];
+    private int size;
+
+    /**
+     * Create an index.
+     *
+     * @param mode         how vectors are encoded
+     * @param dimensions   number of dimensions to keep
+     * @param rerankFactor number of candidates to re-rank, as a multiple of topK (0 to disable re-ranking)
+     * @param fullVectors  full-precision vectors, used for re-ranking
+     */
+    QuantizedVectorIndex(StorageMode mode, int dimensions, int rerankFactor, FullPrecisionVectors fullVectors) {
+        this.mode = mode;
+        this.dimensions = dimensions;
+        this.rerankFactor = rerankFactor;
+        this.fullVectors = fullVectors;
+        this.codeLength = mode == StorageMode.BINARY ? (dimensions + 63) / 64 : dimensions;
+    }
+
+    /**
+     * Add a vector to the index.
+     *
+     * @param ordinal ordinal of the vector in the full-precision vector store
+     * @param vector  full-precision vector
+     */
+    void add(int ordinal, float[] vector) {
+        final var v = truncate(vector, dimensions);
+        lock.writeLock().lock();
+        try {
+            if (ordinal >= size) {
+                ensureCapacity(ordinal + 1);
+                size = ordinal + 1;
+            }
+            final int offset = ordinal * codeLength;
+            switch (mode) {
+                case FLOAT32 -> System.arraycopy(v, 0, floatCodes, offset, dimensions);
+                case INT8 -> {
+                    // Symmetric scalar quantization: map [-max, max] to [-127, 127].
+                    float max = 0;
+                    for (final float x : v) {
+                        max = Math.max(max, Math.abs(x));
+                    }
+                    final float scale = max == 0 ? 1 : max / 127f;
+                    for (int i = 0; i < dimensions; ++i) {
+                        int8Codes[offset + i] = (byte) Math.round(v[i] / scale);
+                    }
+                    int8Scales[ordinal] = scale;
+                }
+                case BINARY -> {
+                    Arrays.fill(binaryCodes, offset, offset + codeLength, 0L);
+                    for (int i = 0; i < dimensions; ++i) {
+                        if (v[i] > 0) {
+                            binaryCodes[offset + (i >>> 6)] |= 1L << (i & 63);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find vectors similar to a query vector.
+     *
+     * @param query  full-precision query vector
+     * @param topK   max number of results
+     * @param accept filter on vector ordinals
+     * @return hits, best matches first
+     */
+    List<Hit> search(float[] query, int topK, IntPredicate accept) {
+        final int candidates = rerankFactor > 0 ? topK * rerankFactor : topK;
+        final var q = truncate(query, dimensions);
+        final List<Hit> hits;
+        lock.readLock().lock();
+        try {
+            hits = scan(q, candidates, accept);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (rerankFactor == 0) {
+            return hits;
+        }
+
+        // Re-rank candidates using full-precision vectors.
+        return hits.stream()
+                .map(h -> new Hit(h.ordinal(), VectorSimilarity.cosine(query, fullVectors.get(h.ordinal()))))
+                .sorted(Comparator.comparingDouble(Hit::score).reversed())
+                .limit(topK)
+                .toList();
+    }
+
+    private List<Hit> scan(float[] q, int k, IntPredicate accept) {
+        // Encode the query once, using the same encoding as indexed vectors.
+        final var bq = mode == StorageMode.BINARY ? new long[codeLength] : null;
+        if (bq != null) {
+            for (int i = 0; i < dimensions; ++i) {
+                if (q[i] > 0) {
+                    bq[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+        }
+
+        // Keep the best k hits using a min-heap.
+        final var heap = new PriorityQueue<Hit>(k + 1, Comparator.comparingDouble(Hit::score));
+        final var scores = new float[Math.min(SCAN_BLOCK_SIZE, Math.max(size, 1))];
+        final var distances = bq != null ? new int[scores.length] : null;
+        for (int first = 0; first < size; first += scores.length) {
+            // Vectors are scored by blocks using batched kernels, before filters are applied.
+            final int count = Math.min(scores.length, size - first);
+            switch (mode) {
+                case FLOAT32 -> VectorSimilarity.dotMany(q, floatCodes, first, count, scores);
+                case INT8 -> {
+                    // The query is not quantized (asymmetric distance): this improves recall at no memory cost.
+                    VectorSimilarity.dotMany(q, int8Codes, first, count, scores);
+                    for (int i = 0; i < count; ++i) {
+                        scores[i] *= int8Scales[first + i];
+                    }
+                }
+                case BINARY -> {
+                    VectorSimilarity.hammingMany(bq, binaryCodes, first, count, distances);
+                    for (int i = 0; i < count; ++i) {
+                        scores[i] = 1 - 2f * distances[i] / dimensions;
+                    }
+                }
+            }
+            for (int i = 0; i < count; ++i) {
+                final int ord = first + i;
+                if (!accept.test(ord)) {
+                    continue;
+                }
+                final double score = scores[i];
+                if (heap.size() < k) {
+                    heap.add(new Hit(ord, score));
+                } else if (score > heap.peek().score()) {
+                    heap.poll();
+                    heap.add(new Hit(ord, score));
+                }
+            }
+        }
+        final var hits = new ArrayList<>(heap);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    private void ensureCapacity(int n) {
+        final int capacity = switch (mode) {
+            case FLOAT32 -> floatCodes.length / Math.max(codeLength, 1);
+            case INT8 -> int8Scales.length;
+            case BINARY -> binaryCodes.length / Math.max(codeLength, 1);
+        };
+        if (n <= capacity) {
+            return;
+        }
+        final int newCapacity = Math.max(n, Math.max(16, capacity + (capacity >> 1)));
+        switch (mode) {
+            case FLOAT32 -> floatCodes = Arrays.copyOf(floatCodes, newCapacity * codeLength);
+            case INT8 -> {
+                int8Codes = Arrays.copyOf(int8Codes, newCapacity * codeLength);
+                int8Scales = Arrays.copyOf(int8Scales, newCapacity);
+            }
+            case BINARY -> binaryCodes = Arrays.copyOf(binaryCodes, newCapacity * codeLength);
+        }
+    }
+
+    /**
+     * Get the memory used by vector codes, in bytes.
+     */
+    long memoryUsage() {
+        lock.readLock().lock();
+        try {
+            return switch (mode) {
+                case FLOAT32 -> (long) size * codeLength * Float.BYTES;
+                case INT8 -> (long) size * (codeLength + Float.BYTES);
+                case BINARY -> (long) size * codeLength * Long.BYTES;
+            };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keep the first dimensions of a vector, and normalize the result.
+     */
+    static float[] truncate(float[] vector, int dimensions) {
+        final var v = dimensions < vector.length ? Arrays.copyOf(vector, dimensions) : vector.clone();
+        double norm = 0;
+        for (final float x : v) {
+            norm += x * x;
+        }
+        if (norm > 0) {
+            final float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < v.length; ++i) {
+                v[i] *= inv;
+            }
+        }
+        return v;
+    }
+
+    /**
+     * A search hit.
+     *
+     * @param ordinal vector ordinal
+     * @param score   similarity score (higher is better)
+     */
+    record Hit(int ordinal, double score) {
+    }
+}
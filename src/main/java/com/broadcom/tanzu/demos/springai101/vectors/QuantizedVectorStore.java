@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-process {@link VectorStore} keeping compact vector codes in memory.
+ * <p>
+ * Full-precision vectors are stored on disk, and are only used to re-rank the best candidates.
+ */
+public class QuantizedVectorStore implements VectorStore {
+    private final Logger logger = LoggerFactory.getLogger(QuantizedVectorStore.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final FullPrecisionVectors fullVectors;
+    private final StorageMode mode;
+    private final int dimensions;
+    private final int rerankFactor;
+    private final List<Document> docs = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private volatile QuantizedVectorIndex index;
+
+    /**
+     * Create a vector store.
+     *
+     * @param embeddingModel   model used to compute embeddings
+     * @param batchingStrategy how documents are batched when computing embeddings
+     * @param fullVectors      where full-precision vectors are stored
+     * @param mode             how vectors are encoded in memory
+     * @param dimensions       number of dimensions to keep in memory (0 to keep all dimensions)
+     * @param rerankFactor     number of candidates to re-rank, as a multiple of topK (0 to disable re-ranking)
+     */
+    public QuantizedVectorStore(EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy,
+                                FullPrecisionVectors fullVectors, StorageMode mode, int dimensions, int rerankFactor) {
+        this.embeddingModel = embeddingModel;
+        this.batchingStrategy = batchingStrategy;
+        this.fullVectors = fullVectors;
+        this.mode = mode;
+        this.dimensions = dimensions;
+        this.rerankFactor = rerankFactor;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        final var embeddings = embeddingModel.embed(documents, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+        for (int i = 0; i < documents.size(); ++i) {
+            final var doc = documents.get(i);
+            final var vector = embeddings.get(i);
+            final int ord = fullVectors.append(vector);
+            index(vector.length).add(ord, vector);
+
+            lock.writeLock().lock();
+            try {
+                while (docs.size() <= ord) {
+                    docs.add(null);
+                }
+                // Only keep content and metadata: embeddings are already stored.
+                docs.set(ord, new Document(doc.getId(), doc.getContent(), doc.getMetadata()));
+                final var oldOrd = ordinals.put(doc.getId(), ord);
+                if (oldOrd != null) {
+                    docs.set(oldOrd, null);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private QuantizedVectorIndex index(int vectorDimensions) {
+        var idx = index;
+        if (idx == null) {
+            synchronized (this) {
+                idx = index;
+                if (idx == null) {
+                    final int dims = dimensions > 0 ? Math.min(dimensions, vectorDimensions) : vectorDimensions;
+                    logger.info("Creating vector index: mode={}, dimensions={}/{}, rerankFactor={}", mode, dims, vectorDimensions, rerankFactor);
+                    idx = new QuantizedVectorIndex(mode, dims, rerankFactor, fullVectors);
+                    index = idx;
+                }
+            }
+        }
+        return idx;
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            boolean deleted = false;
+            for (final var id : idList) {
+                final var ord = ordinals.remove(id);
+                if (ord != null) {
+                    docs.set(ord, null);
+                    deleted = true;
+                }
+            }
+            return Optional.of(deleted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        final var idx = index;
+        if (idx == null) {
+            return List.of();
+        }
+        final Predicate<Map<String, Object>> filter = request.hasFilterExpression()
+                ? MetadataFilters.toPredicate(request.getFilterExpression()) : m -> true;
+        final var query = embeddingModel.embed(request.getQuery());
+
+        lock.readLock().lock();
+        try {
+            return idx.search(query, request.getTopK(), ord -> ord < docs.size() && docs.get(ord) != null && filter.test(docs.get(ord).getMetadata()))
+                    .stream()
+                    .filter(h -> h.score() >= request.getSimilarityThreshold())
+                    .map(h -> {
+                        final var doc = docs.get(h.ordinal());
+                        final var metadata = new HashMap<>(doc.getMetadata());
+                        metadata.put("distance", 1 - h.score());
+                        return new Document(doc.getId(), doc.getContent(), metadata);
+                    })
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get full-precision vectors held by this store.
+     */
+    public FullPrecisionVectors getFullPrecisionVectors() {
+        return fullVectors;
+    }
+
+    /**
+     * Get the memory used by vector codes, in bytes.
+     */
+    public long getMemoryUsage() {
+        final var idx = index;
+        return idx == null ? 0 : idx.memoryUsage();
+    }
+}
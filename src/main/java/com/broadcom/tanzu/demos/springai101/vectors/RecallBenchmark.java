@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measure recall@K of vector storage modes against full-precision search.
+ * <p>
+ * Indexed vectors are used as queries, so that no embedding call is required:
+ * the query vector itself is excluded from results.
+ */
+class RecallBenchmark {
+    private final FullPrecisionVectors fullVectors;
+
+    RecallBenchmark(FullPrecisionVectors fullVectors) {
+        this.fullVectors = fullVectors;
+    }
+
+    List<Result> run(int k, int queryCount, List<Integer> dimensions, int rerankFactor) {
+        final int size = fullVectors.size();
+        if (size == 0) {
+            return List.of();
+        }
+        final int fullDims = fullVectors.dimensions();
+
+        // Build all indexes in a single pass over full-precision vectors.
+        // The baseline is an exact search, using all dimensions in full precision.
+        final var baseline = new QuantizedVectorIndex(StorageMode.FLOAT32, fullDims, 0, fullVectors);
+        final var configs = new ArrayList<Config>();
+        for (final var mode : StorageMode.values()) {
+            for (final int dims : dimensions) {
+                if (dims <= 0 || dims > fullDims) {
+                    continue;
+                }
+                configs.add(new Config(mode, dims, 0, new QuantizedVectorIndex(mode, dims, 0, fullVectors)));
+                if (rerankFactor > 0) {
+                    configs.add(new Config(mode, dims, rerankFactor, new QuantizedVectorIndex(mode, dims, rerankFactor, fullVectors)));
+                }
+            }
+        }
+        for (int ord = 0; ord < size; ++ord) {
+            final var v = fullVectors.get(ord);
+            baseline.add(ord, v);
+            for (final var c : configs) {
+                c.index().add(ord, v);
+            }
+        }
+
+        final var random = new Random(42);
+        final var queries = random.ints(Math.min(queryCount, size), 0, size).toArray();
+        final var expected = new ArrayList<HashSet<Integer>>(queries.length);
+        for (final int q : queries) {
+            final var hits = baseline.search(fullVectors.get(q), k, ord -> ord != q);
+            expected.add(new HashSet<>(hits.stream().map(QuantizedVectorIndex.Hit::ordinal).toList()));
+        }
+
+        final var results = new ArrayList<Result>(configs.size());
+        for (final var c : configs) {
+            // Warm up before measuring latency.
+            for (int i = 0; i < Math.min(10, queries.length); ++i) {
+                final int q = queries[i];
+                c.index().search(fullVectors.get(q), k, ord -> ord != q);
+            }
+
+            long found = 0;
+            long total = 0;
+            long elapsed = 0;
+            for (int i = 0; i < queries.length; ++i) {
+                final int q = queries[i];
+                final var query = fullVectors.get(q);
+                final long start = System.nanoTime();
+                final var hits = c.index().search(query, k, ord -> ord != q);
+                elapsed += System.nanoTime() - start;
+                final var exp = expected.get(i);
+                found += hits.stream().filter(h -> exp.contains(h.ordinal())).count();
+                total += exp.size();
+            }
+            results.add(new Result(c.mode(), c.dimensions(), c.rerankFactor(),
+                    total == 0 ? 0 : (double) found / total,
+                    queries.length == 0 ? 0 : elapsed / 1000.0 / queries.length,
+                    c.index().memoryUsage() / size));
+        }
+        return results;
+    }
+
+    private record Config(StorageMode mode, int dimensions, int rerankFactor, QuantizedVectorIndex index) {
+    }
+
+    /**
+     * Benchmark result for a storage configuration.
+     *
+     * @param mode           storage mode
+     * @param dimensions     number of dimensions kept in memory
+     * @param rerankFactor   re-ranking factor (0 if candidates are not re-ranked)
+     * @param recall         recall@K against full-precision search
+     * @param latencyMicros  mean search latency, in microseconds
+     * @param bytesPerVector memory used by a vector code
+     */
+    record Result(StorageMode mode, int dimensions, int rerankFactor, double recall, double latencyMicros,
+                  long bytesPerVector) {
+    }
+}
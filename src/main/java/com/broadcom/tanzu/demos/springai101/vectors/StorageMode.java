@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+/**
+ * How vectors are stored in the in-process vector index.
+ */
+public enum StorageMode {
+    /**
+     * 4 bytes per dimension.
+     */
+    FLOAT32,
+    /**
+     * 1 byte per dimension (scalar quantization), plus a scale factor per vector.
+     */
+    INT8,
+    /**
+     * 1 bit per dimension (sign of each component).
+     */
+    BINARY
+}
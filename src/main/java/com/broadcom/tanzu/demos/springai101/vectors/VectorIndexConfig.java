@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import com.broadcom.tanzu.demos.springai101.ingest.PrecomputedEmbeddings;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("'${app.vectors.storage-mode:redis}' != 'redis'")
+class VectorIndexConfig {
+    @Bean(destroyMethod = "close")
+    FullPrecisionVectors fullPrecisionVectors(@Value("${app.vectors.file}") Path file) throws IOException {
+        return new FullPrecisionVectors(file);
+    }
+
+    @Bean
+    @Primary
+    QuantizedVectorStore quantizedVectorStore(EmbeddingModel embeddingModel, PrecomputedEmbeddings precomputedEmbeddings,
+                                              BatchingStrategy batchingStrategy,
+                                              FullPrecisionVectors fullPrecisionVectors,
+                                              @Value("${app.vectors.storage-mode}") String storageMode,
+                                              @Value("${app.vectors.dimensions}") int dimensions,
+                                              @Value("${app.vectors.rerank-factor}") int rerankFactor) {
+        // This vector store is used instead of Redis.
+        final var mode = StorageMode.valueOf(storageMode.toUpperCase(Locale.ROOT));
+        return new QuantizedVectorStore(precomputedEmbeddings.wrap(embeddingModel), batchingStrategy, fullPrecisionVectors, mode, dimensions, rerankFactor);
+    }
+}
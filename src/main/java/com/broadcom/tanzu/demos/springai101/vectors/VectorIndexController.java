@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.vectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@ConditionalOnExpression("'${app.vectors.storage-mode:redis}' != 'redis'")
+class VectorIndexController {
+    private final Logger logger = LoggerFactory.getLogger(VectorIndexController.class);
+    private final QuantizedVectorStore vectorStore;
+    private final int rerankFactor;
+
+    VectorIndexController(QuantizedVectorStore vectorStore, @Value("${app.vectors.rerank-factor}") int rerankFactor) {
+        this.vectorStore = vectorStore;
+        this.rerankFactor = rerankFactor;
+    }
+
+    @GetMapping(value = "/vectors/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    VectorIndexStats stats() {
+        final var fullVectors = vectorStore.getFullPrecisionVectors();
+        return new VectorIndexStats(fullVectors.size(), fullVectors.dimensions(), vectorStore.getMemoryUsage());
+    }
+
+    @GetMapping(value = "/vectors/benchmark", produces = MediaType.APPLICATION_JSON_VALUE)
+    List<RecallBenchmark.Result> benchmark(@RequestParam(name = "k", defaultValue = "10") int k,
+                                           @RequestParam(name = "queries", defaultValue = "100") int queries,
+                                           @RequestParam(name = "dimensions", defaultValue = "256,1024,3072") List<Integer> dimensions) {
+        logger.info("Running recall benchmark: k={}, queries={}, dimensions={}", k, queries, dimensions);
+        return new RecallBenchmark(vectorStore.getFullPrecisionVectors()).run(k, queries, dimensions, rerankFactor);
+    }
+
+    record VectorIndexStats(int vectors, int dimensions, long memoryUsage) {
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Remember cities found in images, using perceptual hashes.
+ * <p>
+ * An image matches a cached entry when the Hamming distance between their hashes
+ * is small enough: near-duplicate images (resized, re-encoded) resolve to the same city.
+ */
+@Component
+class CityImageCache {
+    private final int maxDistance;
+    private final Map<Long, String> cities;
+
+    CityImageCache(@Value("${app.weather.image.max-hash-distance}") int maxDistance,
+                   @Value("${app.weather.image.cache-size}") int cacheSize) {
+        this.maxDistance = maxDistance;
+        // Least recently used entries are evicted first.
+        this.cities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    synchronized Optional<String> find(long hash) {
+        final var exact = cities.get(hash);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        Long best = null;
+        int bestDistance = maxDistance + 1;
+        for (final long h : cities.keySet()) {
+            final int distance = Long.bitCount(h ^ hash);
+            if (distance < bestDistance) {
+                best = h;
+                bestDistance = distance;
+            }
+        }
+        // Use get() to update the entry access order.
+        return best == null ? Optional.empty() : Optional.ofNullable(cities.get(best));
+    }
+
+    synchronized void put(long hash, String city) {
+        // Do not remember images where no city was found.
+        if (city == null || city.isBlank()) {
+            return;
+        }
+        cities.put(hash, city);
+    }
+}
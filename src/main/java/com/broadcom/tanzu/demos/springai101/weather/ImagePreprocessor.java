@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather;
+
+import com.broadcom.tanzu.demos.springai101.deadline.Deadline;
+import com.broadcom.tanzu.demos.springai101.deadline.DeadlineExceededException;
+import io.netty.channel.ChannelOption;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.InetSocketAddressResolver;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import reactor.netty.http.client.HttpClient;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Prepare images before they are sent to a vision model.
+ * <p>
+ * Images are fetched once by the app (not by the AI provider), their actual MIME type is detected
+ * from their content, and large images are downscaled. A perceptual hash (dHash) is computed so that
+ * similar images can be recognized.
+ * <p>
+ * Image URLs are user input: only public HTTP(S) addresses are fetched, and downloads are bounded.
+ * Addresses are checked again when connecting, so that a host cannot be resolved to a public address
+ * when it is checked, and then to an internal address when it is fetched (DNS rebinding).
+ */
+@Component
+class ImagePreprocessor {
+    private static final MimeType IMAGE_WEBP = MimeType.valueOf("image/webp");
+    private static final int MAX_REDIRECTS = 3;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    private final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+    private final HttpClient httpClient;
+    private final RestClient restClient;
+    private final int maxSize;
+    private final long maxBytes;
+    private final long maxPixels;
+
+    ImagePreprocessor(RestClient.Builder restClientBuilder,
+                      @Value("${app.weather.image.max-size}") int maxSize,
+                      @Value("${app.weather.image.max-bytes}") long maxBytes,
+                      @Value("${app.weather.image.max-pixels}") long maxPixels) {
+        // Connections are only made to the addresses returned by this resolver, which are all checked.
+        // Redirects are not followed (this is the default): every target address must be checked.
+        this.httpClient = HttpClient.create()
+                .resolver(PublicAddressResolverGroup.INSTANCE)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) CONNECT_TIMEOUT.toMillis());
+        this.restClient = restClientBuilder.clone().requestFactory(requestFactory(READ_TIMEOUT)).build();
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+    }
+
+    PreparedImage prepare(URL url) throws IOException {
+        final byte[] data;
+        try {
+            data = download(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid image URL: " + url, e);
+        }
+        if (data.length == 0) {
+            throw new IOException("No image found at " + url);
+        }
+
+        final var mimeType = sniffMimeType(data);
+        if (mimeType == null) {
+            throw new IOException("Unsupported image format: " + url);
+        }
+        final var image = mimeType.equals(IMAGE_WEBP) ? null : decode(data);
+        if (image == null) {
+            // This image cannot be decoded here (WebP): send it as is.
+            logger.debug("Sending image as is: {} ({} bytes)", mimeType, data.length);
+            return new PreparedImage(mimeType, data, null);
+        }
+
+        final var decoded = image.image();
+        if (Math.max(image.width(), image.height()) <= maxSize) {
+            return new PreparedImage(mimeType, data, dHash(decoded));
+        }
+
+        // Vision models downscale large images anyway: save bandwidth and tokens by doing it first.
+        final double scale = (double) maxSize / Math.max(decoded.getWidth(), decoded.getHeight());
+        final var scaled = scale >= 1 ? decoded
+                : resize(decoded, (int) Math.round(decoded.getWidth() * scale), (int) Math.round(decoded.getHeight() * scale));
+        final var jpeg = toJpeg(scaled);
+        logger.debug("Downscaled image from {}x{} ({} bytes) to {}x{} ({} bytes)",
+                image.width(), image.height(), data.length, scaled.getWidth(), scaled.getHeight(), jpeg.length);
+        return new PreparedImage(MimeTypeUtils.IMAGE_JPEG, jpeg, dHash(scaled));
+    }
+
+    private ClientHttpRequestFactory requestFactory(Duration timeout) {
+        final var reqFactory = new ReactorNettyClientRequestFactory(httpClient);
+        reqFactory.setReadTimeout(timeout);
+        reqFactory.setExchangeTimeout(timeout);
+        return reqFactory;
+    }
+
+    private RestClient restClient() {
+        // Downloads must not last longer than the request deadline (if any).
+        final var deadline = Deadline.current();
+        if (deadline == null || deadline.remaining().compareTo(READ_TIMEOUT) >= 0) {
+            return restClient;
+        }
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException();
+        }
+        return restClient.mutate().requestFactory(requestFactory(deadline.remaining())).build();
+    }
+
+    private byte[] download(URI uri) throws IOException {
+        var target = uri;
+        for (int i = 0; i <= MAX_REDIRECTS; ++i) {
+            checkAllowed(target);
+            final var current = target;
+            final Download result;
+            try {
+                result = restClient().get().uri(current).exchange((req, resp) -> {
+                    if (resp.getStatusCode().is3xxRedirection() && resp.getHeaders().getLocation() != null) {
+                        return new Download(current.resolve(resp.getHeaders().getLocation()), null);
+                    }
+                    if (!resp.getStatusCode().is2xxSuccessful()) {
+                        throw new IOException("Failed to fetch image " + current + ": " + resp.getStatusCode());
+                    }
+                    final long length = resp.getHeaders().getContentLength();
+                    if (length > maxBytes) {
+                        throw new IOException("Image is too large: " + length + " bytes");
+                    }
+                    return new Download(null, readAtMost(resp.getBody(), maxBytes));
+                });
+            } catch (ResourceAccessException e) {
+                if (Deadline.isCurrentExpired()) {
+                    throw new DeadlineExceededException(e);
+                }
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            if (result.data() != null) {
+                return result.data();
+            }
+            target = result.redirect();
+        }
+        throw new IOException("Too many redirects: " + uri);
+    }
+
+    private static byte[] readAtMost(InputStream in, long maxBytes) throws IOException {
+        // Stop reading as soon as the limit is reached: the Content-Length header may be missing.
+        final var data = in.readNBytes((int) Math.min(maxBytes + 1, Integer.MAX_VALUE - 8));
+        if (data.length > maxBytes) {
+            throw new IOException("Image is too large: more than " + maxBytes + " bytes");
+        }
+        return data;
+    }
+
+    static void checkAllowed(URI uri) throws IOException {
+        final var scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+            throw new IOException("Unsupported image URL: " + uri);
+        }
+        if (uri.getHost() == null) {
+            throw new IOException("Invalid image URL: " + uri);
+        }
+        try {
+            resolvePublic(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new IOException("Image URL is not allowed: " + uri, e);
+        }
+    }
+
+    static InetAddress[] resolvePublic(String host) throws UnknownHostException {
+        // Do not let callers reach internal services (cloud metadata, admin endpoints) through the app.
+        final var addresses = InetAddress.getAllByName(host);
+        for (final var address : addresses) {
+            if (isInternal(address)) {
+                throw new UnknownHostException("Host resolves to an internal address: " + host);
+            }
+        }
+        return addresses;
+    }
+
+    static boolean isInternal(InetAddress address) {
+        final var bytes = address.getAddress();
+        return address.isAnyLocalAddress() || address.isLoopbackAddress()
+                || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isMulticastAddress()
+                // Carrier-grade NAT addresses (100.64.0.0/10).
+                || (address instanceof Inet4Address && (bytes[0] & 0xFF) == 100 && (bytes[1] & 0xC0) == 64)
+                // IPv6 unique local addresses (fc00::/7).
+                || (address instanceof Inet6Address && (bytes[0] & 0xFE) == 0xFC);
+    }
+
+    private DecodedImage decode(byte[] data) throws IOException {
+        try (final var input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            final var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final var reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Check dimensions from the image header before allocating any pixel.
+                final int width = reader.getWidth(0);
+                final int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image is too large: " + width + "x" + height);
+                }
+                // Large images are decoded with subsampling: only keep the pixels needed for the target size.
+                final int step = Math.max(1, Math.max(width, height) / maxSize);
+                final var params = reader.getDefaultReadParam();
+                params.setSourceSubsampling(step, step, 0, 0);
+                return new DecodedImage(reader.read(0, params), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static MimeType sniffMimeType(byte[] data) {
+        // Check magic numbers: the Content-Type header sent by servers cannot be trusted.
+        if (startsWith(data, 0, 0xFF, 0xD8, 0xFF)) {
+            return MimeTypeUtils.IMAGE_JPEG;
+        }
+        if (startsWith(data, 0, 0x89, 'P', 'N', 'G')) {
+            return MimeTypeUtils.IMAGE_PNG;
+        }
+        if (startsWith(data, 0, 'G', 'I', 'F', '8')) {
+            return MimeTypeUtils.IMAGE_GIF;
+        }
+        if (startsWith(data, 0, 'R', 'I', 'F', 'F') && startsWith(data, 8, 'W', 'E', 'B', 'P')) {
+            return IMAGE_WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... magic) {
+        if (data.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; ++i) {
+            if ((data[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute a difference hash: similar images have hashes with a small Hamming distance.
+     */
+    static long dHash(BufferedImage image) {
+        // Average luminance over a 9x8 grid: plain interpolation would only sample a few pixels.
+        final var grid = new long[8][9];
+        final var counts = new int[8][9];
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        // Read pixels one row at a time: getRGB(x, y) is way slower.
+        final var row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            final int gy = y * 8 / height;
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; ++x) {
+                final int gx = x * 9 / width;
+                grid[gy][gx] += luminance(row[x]);
+                counts[gy][gx]++;
+            }
+        }
+        long hash = 0;
+        for (int y = 0; y < 8; ++y) {
+            for (int x = 0; x < 8; ++x) {
+                hash <<= 1;
+                final long left = grid[y][x] * counts[y][x + 1];
+                final long right = grid[y][x + 1] * counts[y][x];
+                if (left > right) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int luminance(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        final var resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final var g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    private static byte[] toJpeg(BufferedImage image) throws IOException {
+        final var writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        final var out = new ByteArrayOutputStream(64 * 1024);
+        try (final var ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            final var params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(0.85f);
+            writer.write(null, new IIOImage(image, null, null), params);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * An image ready to be sent to a model.
+     *
+     * @param mimeType image MIME type
+     * @param data     image content
+     * @param hash     perceptual hash (null if the image could not be decoded)
+     */
+    record PreparedImage(MimeType mimeType, byte[] data, Long hash) {
+    }
+
+    private record DecodedImage(BufferedImage image, int width, int height) {
+    }
+
+    private record Download(URI redirect, byte[] data) {
+    }
+
+    /**
+     * Resolve host names to public addresses only: the connection is made to a checked address.
+     */
+    private static final class PublicAddressResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+        static final PublicAddressResolverGroup INSTANCE = new PublicAddressResolverGroup();
+
+        @Override
+        protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+            // Names are resolved with the JDK resolver, as Netty's DefaultNameResolver does.
+            return new InetSocketAddressResolver(executor, new InetNameResolver(executor) {
+                @Override
+                protected void doResolve(String host, Promise<InetAddress> promise) {
+                    try {
+                        promise.setSuccess(resolvePublic(host)[0]);
+                    } catch (UnknownHostException e) {
+                        promise.setFailure(e);
+                    }
+                }
+
+                @Override
+                protected void doResolveAll(String host, Promise<List<InetAddress>> promise) {
+                    try {
+                        promise.setSuccess(List.of(resolvePublic(host)));
+                    } catch (UnknownHostException e) {
+                        promise.setFailure(e);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather;
+
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive version of weather endpoints (v1 to v3).
+ * <p>
+ * Functions are invoked by Spring AI while the model response is being received, where blocking is not allowed.
+ * Instead, weather data is loaded (without blocking) before calling the model, and included in the prompt.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveWeatherController {
+    private final Logger logger = LoggerFactory.getLogger(ReactiveWeatherController.class);
+    private final ReactiveWeatherService weatherService;
+    private final ChatClient chatClient;
+    private final BeanOutputConverter<TemperatureResponse> temperatureConverter = new BeanOutputConverter<>(TemperatureResponse.class);
+    private final BeanOutputConverter<CitiesResponse> citiesConverter = new BeanOutputConverter<>(CitiesResponse.class);
+
+    ReactiveWeatherController(ReactiveWeatherService weatherService, ChatClient.Builder chatClientBuilder) {
+        this.weatherService = weatherService;
+        this.chatClient = chatClientBuilder.build();
+    }
+
+    @GetMapping(value = "/weather/v1", produces = MediaType.TEXT_PLAIN_VALUE)
+    Flux<String> weather(@RequestParam("city") String city) {
+        return weatherService.getWeatherByCity(city)
+                .flatMapMany(weather -> chatClient.prompt()
+                        .user(p -> p.text("""
+                                        What is the current temperature in {city}?
+                                        Use this weather data (temperature in Celsius): {weather}
+                                        """)
+                                .param("city", city)
+                                .param("weather", weather))
+                        .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v1"))
+                        .stream()
+                        .content());
+    }
+
+    @GetMapping(value = "/weather/v2", produces = MediaType.APPLICATION_JSON_VALUE)
+    Mono<TemperatureResponse> weatherAsEntity(@RequestParam("city") String city) {
+        return weatherService.getWeatherByCity(city)
+                .flatMap(weather -> chatClient.prompt()
+                        .user(p -> p.text("""
+                                        What is the current temperature in {city}?
+                                        Use this weather data (temperature in Celsius): {weather}
+                                        {format}
+                                        """)
+                                .param("city", city)
+                                .param("weather", weather)
+                                .param("format", temperatureConverter.getFormat()))
+                        .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v2"))
+                        .stream()
+                        .content()
+                        .collect(Collectors.joining()))
+                .map(temperatureConverter::convert);
+    }
+
+    @GetMapping(value = "/weather/v3", produces = MediaType.TEXT_PLAIN_VALUE)
+    Flux<String> weatherWithQuery(@RequestParam("q") String query) {
+        // Like function calling, this endpoint requires two model calls:
+        // the first one finds out cities from the query, and the second one answers using weather data.
+        return chatClient.prompt()
+                .user(p -> p.text("""
+                                List the cities mentioned in this query (an empty list if there is none):
+                                {query}
+                                {format}
+                                """)
+                        .param("query", query)
+                        .param("format", citiesConverter.getFormat()))
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v3"))
+                .stream()
+                .content()
+                .collect(Collectors.joining())
+                .map(citiesConverter::convert)
+                .flatMapMany(resp -> {
+                    final var cities = resp.cities() == null ? List.<String>of() : resp.cities();
+                    logger.info("Loading weather from different cities ({}) using OpenWeatherMap", cities);
+                    // Weather data is loaded concurrently for all cities.
+                    return Flux.fromIterable(cities).flatMap(weatherService::getWeatherByCity);
+                })
+                .collectList()
+                .flatMapMany(weather -> chatClient.prompt()
+                        .user(p -> p.text("""
+                                        {query}
+
+                                        Use this weather data if needed (temperature in Celsius):
+                                        {weather}
+                                        """)
+                                .param("query", query)
+                                .param("weather", weather))
+                        .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v3"))
+                        .stream()
+                        .content());
+    }
+
+    record TemperatureResponse(String city, float temperature) {
+    }
+
+    record CitiesResponse(List<String> cities) {
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather;
+
+/**
+ * Start loading weather data before it is actually requested.
+ * <p>
+ * Use this interface when a model is likely to call a weather function:
+ * the weather is loaded while the model is still generating its response.
+ */
+public interface WeatherPrefetcher {
+    /**
+     * Start loading weather for cities mentioned in a text.
+     *
+     * @param text any text, such as a user query
+     */
+    void prefetch(String text);
+
+    /**
+     * Start loading weather for a city.
+     *
+     * @param city city name
+     */
+    void prefetchCity(String city);
+}
@@ -16,9 +16,11 @@
 
 package com.broadcom.tanzu.demos.springai101.weather;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.function.Function;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class WeatherV1Controller {
     private final Logger logger = LoggerFactory.getLogger(WeatherV1Controller.class);
     private final WeatherService weatherService;
@@ -41,6 +44,7 @@ class WeatherV1Controller {
     String weather(@RequestParam("city") String city) {
         // Rely on a function to get additional (live) data.
         return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v1"))
                 .user(p -> p.text("What is the current temperature in {city}?").param("city", city))
                 .function("getWeatherByCity",
                         "Get the current weather in a given city, including temperature (in Celsius).",
@@ -16,13 +16,16 @@
 
 package com.broadcom.tanzu.demos.springai101.weather;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class WeatherV2Controller {
     private final ChatClient chatClient;
 
@@ -35,6 +38,7 @@ class WeatherV2Controller {
         // Note the use of entity() to map the response to a Java construct that you can use in your app.
         // This allows you to use AI generated responses without having to manually parse the content.
         return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v2"))
                 .user(p -> p.text("What is the current temperature in {city}?").param("city", city))
                 .functions(WeatherFunctions.GET_WEATHER_BY_CITY)
                 .call()
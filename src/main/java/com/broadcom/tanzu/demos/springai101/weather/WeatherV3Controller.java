@@ -16,25 +16,34 @@
 
 package com.broadcom.tanzu.demos.springai101.weather;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class WeatherV3Controller {
     private final ChatClient chatClient;
+    private final ObjectProvider<WeatherPrefetcher> weatherPrefetcher;
 
-    WeatherV3Controller(ChatClient.Builder chatClientBuilder) {
+    WeatherV3Controller(ChatClient.Builder chatClientBuilder, ObjectProvider<WeatherPrefetcher> weatherPrefetcher) {
         this.chatClient = chatClientBuilder.build();
+        this.weatherPrefetcher = weatherPrefetcher;
     }
 
     @GetMapping(value = "/weather/v3", produces = MediaType.TEXT_PLAIN_VALUE)
     String weather(@RequestParam("q") String query) {
         // Use this endpoint to query your LLM with any requests.
         // Whenever you ask for weather information from one or more cities, functions are automatically called as needed.
+        // Cities found in the query are prefetched (if enabled) while the model decides which functions to call.
+        weatherPrefetcher.ifAvailable(p -> p.prefetch(query));
         return chatClient.prompt()
+                .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v3"))
                 .user(query)
                 .functions(WeatherFunctions.GET_WEATHER_BY_CITY, WeatherFunctions.GET_WEATHER_BY_CITIES)
                 .call()
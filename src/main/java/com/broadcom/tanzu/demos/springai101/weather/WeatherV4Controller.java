@@ -16,38 +16,79 @@
 
 package com.broadcom.tanzu.demos.springai101.weather;
 
+import com.broadcom.tanzu.demos.springai101.usage.TokenUsageAdvisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
-import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
 import java.net.URL;
 
 @RestController
 class WeatherV4Controller {
+    private final Logger logger = LoggerFactory.getLogger(WeatherV4Controller.class);
     private final ChatClient chatClient;
+    private final ImagePreprocessor imagePreprocessor;
+    private final CityImageCache cityImageCache;
+    private final WeatherService weatherService;
+    private final ObjectProvider<WeatherPrefetcher> weatherPrefetcher;
 
-    WeatherV4Controller(ChatClient.Builder chatClientBuilder) {
+    WeatherV4Controller(ChatClient.Builder chatClientBuilder, ImagePreprocessor imagePreprocessor,
+                        CityImageCache cityImageCache, WeatherService weatherService,
+                        ObjectProvider<WeatherPrefetcher> weatherPrefetcher) {
         this.chatClient = chatClientBuilder.build();
+        this.imagePreprocessor = imagePreprocessor;
+        this.cityImageCache = cityImageCache;
+        this.weatherService = weatherService;
+        this.weatherPrefetcher = weatherPrefetcher;
     }
 
     @GetMapping(value = "/weather/v4", produces = MediaType.APPLICATION_JSON_VALUE)
-    TemperatureResponse weather(@RequestParam("u") URL url) {
-        // This endpoint shows how to build a multimodal prompt:
-        // - a text based prompt
-        // - an image URL included as part of your prompt
-        // - a result mapped to a Java construct
-        return chatClient.prompt()
-                .user(p -> p.text("""
-                                Find out the city in this image.
-                                Then, get the current weather for this city.
-                                """)
-                        .media(MimeTypeUtils.IMAGE_JPEG, url))
-                .functions(WeatherFunctions.GET_WEATHER_BY_CITY)
-                .call()
-                .entity(TemperatureResponse.class);
+    TemperatureResponse weather(@RequestParam("u") URL url) throws IOException {
+        // Image names often include a city name: start loading the weather (if enabled)
+        // while the image is being processed.
+        weatherPrefetcher.ifAvailable(p -> p.prefetch(url.getPath()));
+
+        // Fetch the image once, and prepare it for the model (actual MIME type, optimal size).
+        final var image = imagePreprocessor.prepare(url);
+
+        // Similar images were already seen: no need to call the model again.
+        final var cachedCity = image.hash() == null ? null : cityImageCache.find(image.hash()).orElse(null);
+        final String city;
+        if (cachedCity != null) {
+            logger.debug("Found city for image {} in cache: {}", url, cachedCity);
+            city = cachedCity;
+        } else {
+            // This endpoint shows how to build a multimodal prompt:
+            // - a text based prompt
+            // - an image included as part of your prompt
+            // - a result mapped to a Java construct
+            city = chatClient.prompt()
+                    .advisors(a -> a.param(TokenUsageAdvisor.ENDPOINT, "/weather/v4"))
+                    .user(p -> p.text("""
+                                    Find out the city in this image.
+                                    """)
+                            .media(image.mimeType(), new ByteArrayResource(image.data())))
+                    .call()
+                    .entity(CityResponse.class)
+                    .city();
+            if (image.hash() != null) {
+                cityImageCache.put(image.hash(), city);
+            }
+        }
+
+        // The city is known: get the current weather without going through the model.
+        final var weather = weatherService.getWeatherByCity(city);
+        return new TemperatureResponse(weather.city(), weather.temperature());
+    }
+
+    record CityResponse(String city) {
     }
 
     record TemperatureResponse(String city, float temperature) {
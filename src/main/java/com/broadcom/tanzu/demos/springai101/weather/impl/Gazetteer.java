@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather.impl;
+
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Find known city names in a text.
+ * <p>
+ * This is a cheap dictionary lookup (no model involved): longest names are matched first,
+ * so that "New York" is not also found as "York".
+ */
+class Gazetteer {
+    private final Map<String, String> cities = new HashMap<>(512);
+    private int maxTerms;
+
+    Gazetteer(Resource resource) throws IOException {
+        for (final var line : resource.getContentAsString(StandardCharsets.UTF_8).split("\\R")) {
+            final var name = line.strip();
+            if (name.isEmpty() || name.startsWith("#")) {
+                continue;
+            }
+            final var key = TextNormalizer.normalize(name);
+            cities.put(key, name);
+            maxTerms = Math.max(maxTerms, key.split(" ").length);
+        }
+    }
+
+    Set<String> find(String text) {
+        final var found = new LinkedHashSet<String>(4);
+        final List<String> terms = TextNormalizer.terms(text);
+        for (int i = 0; i < terms.size(); ) {
+            int matched = 0;
+            for (int n = Math.min(maxTerms, terms.size() - i); n > 0 && matched == 0; --n) {
+                final var city = cities.get(String.join(" ", terms.subList(i, i + n)));
+                if (city != null) {
+                    found.add(city);
+                    matched = n;
+                }
+            }
+            i += Math.max(matched, 1);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather.impl;
+
+import com.broadcom.tanzu.demos.springai101.text.TextNormalizer;
+import com.broadcom.tanzu.demos.springai101.weather.Weather;
+import com.broadcom.tanzu.demos.springai101.weather.WeatherPrefetcher;
+import com.broadcom.tanzu.demos.springai101.weather.WeatherService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link WeatherService} implementation serving speculatively loaded weather data.
+ * <p>
+ * Weather lookups are started as soon as a city is found in a user query,
+ * while the model is still deciding to call a weather function.
+ * When the function is eventually called, the result is (almost) ready.
+ * <p>
+ * Use metric <code>weather.prefetch</code> to track prefetch results:
+ * <code>hit</code> (prefetched data was used), <code>waste</code> (prefetched data was not used)
+ * and <code>miss</code> (weather was not prefetched). Each prefetch or lookup is counted once.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.weather.prefetch.enabled", havingValue = "true")
+class PrefetchingWeatherService implements WeatherService, WeatherPrefetcher {
+    private final Logger logger = LoggerFactory.getLogger(PrefetchingWeatherService.class);
+    private final WeatherServiceImpl delegate;
+    private final AsyncTaskExecutor taskExecutor;
+    private final Gazetteer gazetteer;
+    private final Map<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter wasted;
+    private final Counter misses;
+
+    PrefetchingWeatherService(WeatherServiceImpl delegate, AsyncTaskExecutor taskExecutor, MeterRegistry meterRegistry,
+                              @Value("classpath:/cities.txt") Resource cities,
+                              @Value("${app.weather.prefetch.ttl}") Duration ttl,
+                              @Value("${app.weather.prefetch.max-entries}") int maxEntries) throws IOException {
+        this.delegate = delegate;
+        this.taskExecutor = taskExecutor;
+        this.gazetteer = new Gazetteer(cities);
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.hits = counter(meterRegistry, "hit");
+        this.wasted = counter(meterRegistry, "waste");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("weather.prefetch")
+                .description("Weather lookups by prefetch result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void prefetch(String text) {
+        for (final var city : gazetteer.find(text)) {
+            prefetchCity(city);
+        }
+    }
+
+    @Override
+    public void prefetchCity(String city) {
+        final var key = key(city);
+        if (key.isEmpty()) {
+            return;
+        }
+        evictExpired();
+        if (prefetches.size() >= maxEntries) {
+            logger.debug("Too many pending prefetches: skipping weather prefetch for {}", city);
+            return;
+        }
+        prefetches.computeIfAbsent(key, k -> {
+            logger.debug("Prefetching weather in {}", city);
+            return new Prefetch(taskExecutor.submitCompletable(() -> delegate.getWeatherByCity(city)), System.nanoTime());
+        });
+    }
+
+    @Override
+    public Weather getWeatherByCity(String city) {
+        final var prefetch = prefetches.remove(key(city));
+        if (prefetch != null) {
+            if (!prefetch.isExpired(ttlNanos)) {
+                try {
+                    final var weather = prefetch.weather().join();
+                    hits.increment();
+                    logger.debug("Using prefetched weather in {}", city);
+                    // Keep the city name used by the caller.
+                    return new Weather(city, weather.temperature());
+                } catch (CompletionException e) {
+                    logger.debug("Failed to prefetch weather in {}: loading again", city, e.getCause());
+                }
+            }
+            // The prefetch was not usable: this lookup is only counted as waste.
+            wasted.increment();
+        } else {
+            misses.increment();
+        }
+        return delegate.getWeatherByCity(city);
+    }
+
+    private void evictExpired() {
+        for (final var e : prefetches.entrySet()) {
+            if (e.getValue().isExpired(ttlNanos) && prefetches.remove(e.getKey(), e.getValue())) {
+                wasted.increment();
+            }
+        }
+    }
+
+    private static String key(String city) {
+        // Models may add a region or country to city names: "Paris, France".
+        final int i = city.indexOf(',');
+        return TextNormalizer.normalize(i == -1 ? city : city.substring(0, i));
+    }
+
+    private record Prefetch(CompletableFuture<Weather> weather, long startedAt) {
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - startedAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather.impl;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.service.annotation.GetExchange;
+import org.springframework.web.service.annotation.HttpExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking client interface to get weather information leveraging OpenWeatherMap API.
+ */
+@HttpExchange(contentType = MediaType.APPLICATION_JSON_VALUE)
+interface ReactiveWeatherApi {
+    @GetExchange("/data/2.5/weather")
+    Mono<WeatherApi.Weather> getWeather(@RequestParam("q") String city,
+                                        @RequestParam("units") String units);
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.weather.impl;
+
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
+import com.broadcom.tanzu.demos.springai101.weather.ReactiveWeatherService;
+import com.broadcom.tanzu.demos.springai101.weather.Weather;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveWeatherServiceImpl implements ReactiveWeatherService {
+    private final ReactiveWeatherApi api;
+    private final ObservationRegistry observationRegistry;
+    private final CircuitBreakers circuitBreakers;
+
+    ReactiveWeatherServiceImpl(ReactiveWeatherApi api, ObservationRegistry observationRegistry, CircuitBreakers circuitBreakers) {
+        this.api = api;
+        this.observationRegistry = observationRegistry;
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @Override
+    public Mono<Weather> getWeatherByCity(String city) {
+        return Mono.defer(() -> {
+            // The observation is stopped when the response is received (not when this method returns).
+            final var observation = Observation.createNotStarted("getWeatherByCity", observationRegistry)
+                    .highCardinalityKeyValue("city", city)
+                    .start();
+            return circuitBreakers.decorate(circuitBreakers.get(CircuitBreakers.WEATHER), api.getWeather(city, "metric"))
+                    .map(w -> new Weather(city, w.details().temperature()))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    // Make this observation the parent of the HTTP client observation.
+                    .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+}
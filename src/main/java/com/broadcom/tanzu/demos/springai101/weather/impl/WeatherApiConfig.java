@@ -16,14 +16,18 @@
 
 package com.broadcom.tanzu.demos.springai101.weather.impl;
 
+import com.broadcom.tanzu.demos.springai101.deadline.DeadlineAwareClientHttpRequestFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequest;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.support.RestClientAdapter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.support.WebClientAdapter;
 import org.springframework.web.service.invoker.HttpServiceProxyFactory;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -39,7 +43,7 @@ class WeatherApiConfig {
         // Create a RestClient interface bound to OpenWeatherMap API.
         final var restClient = rcb.clone()
                 .baseUrl("https://api.openweathermap.org")
-                .requestFactory(new SimpleClientHttpRequestFactory() {
+                .requestFactory(new DeadlineAwareClientHttpRequestFactory() {
                     @Override
                     public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
                         // Set appid as a query param in every request.
@@ -54,4 +58,22 @@ class WeatherApiConfig {
                 .build()
                 .createClient(WeatherApi.class);
     }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    ReactiveWeatherApi reactiveWeatherApi(WebClient.Builder wcb, @Value("${openweathermap.api-key}") String owmApiKey) {
+        // Same client interface, using WebClient: no thread is blocked while waiting for the response.
+        final var webClient = wcb.clone()
+                .baseUrl("https://api.openweathermap.org")
+                .filter((req, next) -> {
+                    // Set appid as a query param in every request.
+                    final var newUri = UriComponentsBuilder.fromUri(req.url())
+                            .queryParam("appid", owmApiKey).build(true).toUri();
+                    return next.exchange(ClientRequest.from(req).url(newUri).build());
+                })
+                .build();
+        return HttpServiceProxyFactory.builderFor(WebClientAdapter.create(webClient))
+                .build()
+                .createClient(ReactiveWeatherApi.class);
+    }
 }
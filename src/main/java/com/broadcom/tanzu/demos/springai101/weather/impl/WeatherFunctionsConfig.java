@@ -16,6 +16,7 @@
 
 package com.broadcom.tanzu.demos.springai101.weather.impl;
 
+import com.broadcom.tanzu.demos.springai101.deadline.Deadline;
 import com.broadcom.tanzu.demos.springai101.weather.Weather;
 import com.broadcom.tanzu.demos.springai101.weather.WeatherService;
 import org.slf4j.Logger;
@@ -43,6 +44,8 @@ class WeatherFunctionsConfig {
     Function<ByCityRequest, Weather> getWeatherByCity(WeatherService weatherService) {
         // Map a Spring AI function (including description which will be used by the LLM) to your business function.
         return req -> {
+            // The model may call functions after the request deadline has expired.
+            Deadline.checkCurrent();
             logger.info("Loading weather from {} using OpenWeatherMap", req.city());
             return weatherService.getWeatherByCity(req.city());
         };
@@ -56,6 +59,7 @@ class WeatherFunctionsConfig {
             """)
     Function<ByCitiesRequest, Map<String, Weather>> getWeatherByCities(WeatherService weatherService, AsyncTaskExecutor taskExecutor) {
         return req -> {
+            Deadline.checkCurrent();
             if (logger.isInfoEnabled()) {
                 final var citiesStr = String.join(", ", req.cities());
                 logger.info("Loading weather from different cities ({}) using OpenWeatherMap", citiesStr);
@@ -70,8 +74,9 @@ class WeatherFunctionsConfig {
                 tasks.add(task);
             }
 
+            // The deadline is propagated to tasks: do not wait past this deadline.
             return tasks.stream()
-                    .map(CompletableFuture::join)
+                    .map(Deadline::join)
                     .collect(Collectors.toMap(Weather::city, Function.identity()));
         };
     }
@@ -16,8 +16,10 @@
 
 package com.broadcom.tanzu.demos.springai101.weather.impl;
 
+import com.broadcom.tanzu.demos.springai101.resilience.CircuitBreakers;
 import com.broadcom.tanzu.demos.springai101.weather.Weather;
 import com.broadcom.tanzu.demos.springai101.weather.WeatherService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import org.springframework.stereotype.Service;
@@ -26,10 +28,12 @@ import org.springframework.stereotype.Service;
 class WeatherServiceImpl implements WeatherService {
     private final WeatherApi api;
     private final ObservationRegistry observationRegistry;
+    private final CircuitBreaker circuitBreaker;
 
-    WeatherServiceImpl(WeatherApi api, ObservationRegistry observationRegistry) {
+    WeatherServiceImpl(WeatherApi api, ObservationRegistry observationRegistry, CircuitBreakers circuitBreakers) {
         this.api = api;
         this.observationRegistry = observationRegistry;
+        this.circuitBreaker = circuitBreakers.get(CircuitBreakers.WEATHER);
     }
 
     @Override
@@ -41,6 +45,8 @@ class WeatherServiceImpl implements WeatherService {
     }
 
     private Weather doGetWeatherByCity(String city) {
-        return new Weather(city, api.getWeather(city, "metric").details().temperature());
+        // Fail fast when OpenWeatherMap API is not available.
+        final var weather = circuitBreaker.executeSupplier(() -> api.getWeather(city, "metric"));
+        return new Weather(city, weather.details().temperature());
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.embedding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingRequest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compare embeddings with reference values computed by a plain Python implementation
+ * (see <code>src/test/resources/embedding/tiny-bert/generate.py</code>).
+ */
+class LocalEmbeddingModelTest {
+    private static final float TOLERANCE = 1e-5f;
+    private static final float[] FUNNY_MOVIE = {
+            0.054538f, -0.237440f, 0.376198f, -0.028817f, -0.273604f, -0.436539f, -0.719911f, 0.120810f};
+    private static final float[] GOOD_FILM = {
+            0.055853f, -0.238861f, 0.374921f, -0.028236f, -0.273650f, -0.437449f, -0.719943f, 0.117893f};
+    private WordPieceTokenizer tokenizer;
+    private LocalEmbeddingModel model;
+
+    @BeforeEach
+    void loadModel() throws Exception {
+        final var modelDir = Path.of(getClass().getResource("/embedding/tiny-bert").toURI());
+        final var encoder = BertEncoder.load(modelDir, new ObjectMapper());
+        tokenizer = WordPieceTokenizer.load(modelDir.resolve("vocab.txt"), true);
+        model = new LocalEmbeddingModel(encoder, tokenizer, Executors.newFixedThreadPool(2), 16);
+    }
+
+    @Test
+    void tokenizeWithWordPieces() {
+        // [CLS] the movie is fun ##ny ! [SEP]
+        assertArrayEquals(new int[]{2, 4, 5, 6, 7, 8, 11, 3}, tokenizer.encode("The movie is funny!", 16));
+        // [CLS] a good film , play ##ing ! [SEP]
+        assertArrayEquals(new int[]{2, 9, 10, 13, 12, 14, 15, 11, 3}, tokenizer.encode("A good film, playing!", 16));
+    }
+
+    @Test
+    void embeddingsMatchReferenceValues() {
+        assertEquals(8, model.dimensions());
+        assertArrayEquals(FUNNY_MOVIE, model.embed("The movie is funny!"), TOLERANCE);
+        assertArrayEquals(GOOD_FILM, model.embed("A good film, playing!"), TOLERANCE);
+    }
+
+    @Test
+    void batchEmbeddingsMatchReferenceValues() {
+        // Inputs are encoded in parallel: results must keep the input order.
+        final var response = model.call(new EmbeddingRequest(List.of("The movie is funny!", "A good film, playing!"), null));
+        assertEquals(2, response.getResults().size());
+        assertArrayEquals(FUNNY_MOVIE, response.getResults().get(0).getOutput(), TOLERANCE);
+        assertArrayEquals(GOOD_FILM, response.getResults().get(1).getOutput(), TOLERANCE);
+    }
+}
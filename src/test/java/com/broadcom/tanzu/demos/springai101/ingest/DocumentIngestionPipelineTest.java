@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.ingest;
+
+import com.broadcom.tanzu.demos.springai101.text.SentenceTextSplitter;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.RedisVectorStore.MetadataField;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentIngestionPipelineTest {
+    private static final String TEXT = """
+            The lighthouse keeper wakes up before dawn. He climbs the stairs to check the lamp.
+            The sea is calm, and a few boats are leaving the harbor. Seagulls follow them.
+            In the afternoon, a storm comes from the west. The waves hit the rocks below the tower.
+            At night, a lost zebra is found on the beach. Nobody knows where it comes from.
+            """;
+
+    private final RedisLikeVectorStore vectorStore = new RedisLikeVectorStore();
+    private final DocumentIngestionPipeline pipeline = new DocumentIngestionPipeline(
+            vectorStore, new SentenceTextSplitter(24, 0), 2);
+
+    @Test
+    void chunkHitsResolveToTheirParentDocument() {
+        final var parent = new Document("doc-1", TEXT, Map.of(
+                DocumentIngestionPipeline.NAME, "lighthouse.txt",
+                DocumentIngestionPipeline.KIND, DocumentIngestionPipeline.KIND_DOCUMENT));
+        final int chunks = pipeline.ingest(parent);
+        pipeline.flush();
+        assertTrue(chunks > 1, "Document should be split into several chunks");
+        assertEquals(chunks, vectorStore.size());
+
+        final var hits = vectorStore.similaritySearch(SearchRequest.query("zebra"));
+        assertEquals(1, hits.size());
+        final var hit = hits.get(0);
+        assertNotEquals(parent.getId(), hit.getId());
+        assertEquals(parent.getId(), DocumentIngestionPipeline.parentId(hit));
+        assertEquals("lighthouse.txt", hit.getMetadata().get(DocumentIngestionPipeline.NAME));
+        assertEquals(DocumentIngestionPipeline.KIND_DOCUMENT, hit.getMetadata().get(DocumentIngestionPipeline.KIND));
+        assertEquals(String.valueOf(chunks - 1), hit.getMetadata().get(DocumentIngestionPipeline.CHUNK_INDEX));
+    }
+
+    @Test
+    void ingestingTheSameDocumentTwiceReplacesChunks() {
+        final var parent = new Document("doc-1", TEXT, Map.of(DocumentIngestionPipeline.NAME, "lighthouse.txt"));
+        final int chunks = pipeline.ingest(parent);
+        pipeline.ingest(parent);
+        pipeline.flush();
+        assertEquals(chunks, vectorStore.size());
+    }
+
+    @Test
+    void replacingADocumentWithAShorterTextDeletesStaleChunks() {
+        final var parent = new Document("doc-1", TEXT, Map.of(DocumentIngestionPipeline.NAME, "lighthouse.txt"));
+        assertTrue(pipeline.replace(parent) > 1);
+        vectorStore.add(List.of(new Document("doc-2:0", "Another document.", Map.of(DocumentIngestionPipeline.PARENT_ID, "doc-2"))));
+
+        final var shorter = new Document("doc-1", "The lighthouse keeper wakes up before dawn.", parent.getMetadata());
+        assertEquals(1, pipeline.replace(shorter));
+        assertEquals(2, vectorStore.size());
+        assertTrue(vectorStore.similaritySearch(SearchRequest.query("zebra")).isEmpty());
+    }
+
+    /**
+     * A vector store which behaves like Redis: only declared metadata fields are returned, as strings.
+     * Documents are matched using their content, unless a filter on the parent id is set.
+     */
+    private static class RedisLikeVectorStore implements VectorStore {
+        private final Map<String, Document> docs = new LinkedHashMap<>();
+
+        @Override
+        public void add(List<Document> documents) {
+            documents.forEach(d -> docs.put(d.getId(), d));
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> idList) {
+            idList.forEach(docs::remove);
+            return Optional.of(true);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            final var hits = new ArrayList<Document>();
+            for (final var doc : docs.values()) {
+                if (request.hasFilterExpression()) {
+                    if (!matches(request.getFilterExpression(), doc)) {
+                        continue;
+                    }
+                } else if (!doc.getContent().contains(request.getQuery())) {
+                    continue;
+                }
+                final var metadata = new HashMap<String, Object>();
+                for (final var field : DocumentIngestionPipeline.METADATA_FIELDS.stream().map(MetadataField::name).toList()) {
+                    final var value = doc.getMetadata().get(field);
+                    if (value != null) {
+                        metadata.put(field, value.toString());
+                    }
+                }
+                hits.add(new Document(doc.getId(), doc.getContent(), metadata));
+            }
+            return hits.stream().limit(request.getTopK()).toList();
+        }
+
+        private static boolean matches(Filter.Expression expr, Document doc) {
+            // Only equality on the parent id is supported.
+            assertEquals(Filter.ExpressionType.EQ, expr.type());
+            assertEquals(DocumentIngestionPipeline.PARENT_ID, ((Filter.Key) expr.left()).key());
+            return ((Filter.Value) expr.right()).value().equals(doc.getMetadata().get(DocumentIngestionPipeline.PARENT_ID));
+        }
+
+        int size() {
+            return docs.size();
+        }
+    }
+}
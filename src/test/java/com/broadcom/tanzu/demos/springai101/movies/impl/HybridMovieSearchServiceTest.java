@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.movies.impl;
+
+import com.broadcom.tanzu.demos.springai101.movies.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.RedisVectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HybridMovieSearchServiceTest {
+    private final LexicalMovieIndex lexicalIndex = new LexicalMovieIndex();
+    private final StubVectorStore vectorStore = new StubVectorStore();
+    private final HybridMovieSearchService searchService = new HybridMovieSearchService(
+            lexicalIndex, new MovieReranker(lexicalIndex), vectorStore, 10, 0.2, 60, 10, 0.3);
+
+    @BeforeEach
+    void indexMovies() {
+        lexicalIndex.process(movie("620", "Ghostbusters", "Comedy", "Three parapsychologists start a ghost-catching business in New York."));
+        lexicalIndex.process(movie("20352", "Despicable Me", "Animation", "A supervillain adopts three orphan girls."));
+        lexicalIndex.process(movie("137", "Groundhog Day", "Comedy", "A weatherman relives the same day again and again."));
+    }
+
+    @Test
+    void exactTitleDoesNotUseVectorSearch() {
+        final var context = searchService.findContext(List.of("despicable me"), 1);
+        assertEquals(1, context.size());
+        assertTrue(context.get(0).getContent().contains("Title: Despicable Me"));
+        assertTrue(vectorStore.queries.isEmpty());
+    }
+
+    @Test
+    void misspelledTitleIsFoundWithVectorSearch() {
+        // Like Redis, the vector store only returns a distance: the title must come from the lexical index.
+        vectorStore.hits = List.of(new Document("620", "Ghostbusters", Map.of(RedisVectorStore.DISTANCE_FIELD_NAME, 0.2f)));
+        final var context = searchService.findContext(List.of("Gostbusters"), 1);
+        assertEquals(List.of("Gostbusters"), vectorStore.queries);
+        assertEquals(1, context.size());
+        assertTrue(context.get(0).getContent().contains("Title: Ghostbusters"));
+        assertTrue(context.get(0).getContent().contains("Overview: Three parapsychologists"));
+    }
+
+    @Test
+    void weakMatchesAreDropped() {
+        vectorStore.hits = List.of(new Document("137", "Groundhog Day", Map.of(RedisVectorStore.DISTANCE_FIELD_NAME, 0.7f)));
+        assertTrue(searchService.findContext(List.of("Blade Runner"), 1).isEmpty());
+    }
+
+    @Test
+    void movieIsOnlySelectedOnce() {
+        vectorStore.hits = List.of(new Document("620", "Ghostbusters", Map.of(RedisVectorStore.DISTANCE_FIELD_NAME, 0.1f)));
+        final var context = searchService.findContext(List.of("Ghostbusters", "Gostbusters"), 1);
+        assertEquals(1, context.size());
+    }
+
+    private static Movie movie(String id, String title, String genre, String overview) {
+        return new Movie(id, title, new String[]{genre}, LocalDate.of(2000, 1, 1), overview,
+                0, 0, 0, 0, 0, new String[0], new String[0]);
+    }
+
+    private static class StubVectorStore implements VectorStore {
+        private final List<String> queries = new ArrayList<>();
+        private List<Document> hits = List.of();
+
+        @Override
+        public void add(List<Document> documents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> idList) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            queries.add(request.getQuery());
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 Broadcom, Inc. or its affiliates
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.broadcom.tanzu.demos.springai101.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compare SIMD kernels with scalar loops.
+ * <p>
+ * Dimensions include lengths which are not a multiple of any vector length, so that tail loops are used.
+ * Int8 kernels are called directly: they widen byte lanes with different species depending on
+ * the preferred vector size (Maven runs this test again with 256-bit vectors).
+ */
+class SimdSimilarityTest {
+    private static final int[] DIMENSIONS = {3072, 3071, 1536, 1029, 384, 17, 3, 1};
+    // Float sums are reordered: allow a relative error on the sum of absolute products.
+    private static final float RELATIVE_TOLERANCE = 1e-5f;
+    private final Random random = new Random(42);
+
+    @Test
+    void floatDotMatchesScalar() {
+        for (final int dims : DIMENSIONS) {
+            final var a = floats(dims + 5);
+            final var b = floats(dims + 3);
+            assertEquals(ScalarSimilarity.dot(a, 0, b, 0, dims), SimdSimilarity.dot(a, 0, b, 0, dims),
+                    tolerance(a, 0, b, 0, dims), "dims=" + dims);
+            // Offsets are not aligned on vector lengths.
+            assertEquals(ScalarSimilarity.dot(a, 5, b, 3, dims), SimdSimilarity.dot(a, 5, b, 3, dims),
+                    tolerance(a, 5, b, 3, dims), "dims=" + dims + " with offsets");
+        }
+    }
+
+    @Test
+    void cosineMatchesScalar() {
+        for (final int dims : DIMENSIONS) {
+            final var a = floats(dims);
+            final var b = floats(dims);
+            assertEquals(ScalarSimilarity.cosine(a, b), SimdSimilarity.cosine(a, b), RELATIVE_TOLERANCE, "dims=" + dims);
+            assertEquals(1f, SimdSimilarity.cosine(a, a), RELATIVE_TOLERANCE, "dims=" + dims);
+        }
+        assertEquals(0f, SimdSimilarity.cosine(new float[3072], floats(3072)));
+    }
+
+    @Test
+    void floatInt8DotMatchesScalar() {
+        for (final int dims : DIMENSIONS) {
+            final var a = floats(dims + 7);
+            final var b = bytes(dims + 1);
+            assertEquals(ScalarSimilarity.dot(a, 0, b, 0, dims), SimdSimilarity.dot(a, 0, b, 0, dims),
+                    tolerance(a, 0, b, 0, dims), "dims=" + dims);
+            assertEquals(ScalarSimilarity.dot(a, 7, b, 1, dims), SimdSimilarity.dot(a, 7, b, 1, dims),
+                    tolerance(a, 7, b, 1, dims), "dims=" + dims + " with offsets");
+        }
+    }
+
+    @Test
+    void int8DotMatchesScalar() {
+        for (final int dims : DIMENSIONS) {
+            final var a = bytes(dims + 2);
+            final var b = bytes(dims + 9);
+            // Integer sums are exact.
+            assertEquals(ScalarSimilarity.dot(a, 0, b, 0, dims), SimdSimilarity.dot(a, 0, b, 0, dims), "dims=" + dims);
+            assertEquals(ScalarSimilarity.dot(a, 2, b, 9, dims), SimdSimilarity.dot(a, 2, b, 9, dims), "dims=" + dims + " with offsets");
+        }
+        // Extreme values must not overflow byte lanes.
+        final var min = new byte[3072];
+        Arrays.fill(min, Byte.MIN_VALUE);
+        assertEquals(3072 * 128 * 128, SimdSimilarity.dot(min, 0, min, 0, min.length));
+    }
+
+    @Test
+    void dotManyMatchesScalar() {
+        for (final int dims : new int[]{3072, 1029, 17}) {
+            // 11 vectors: 2 blocks of 4 vectors, then 3 vectors scored one at a time.
+            final int first = 2;
+            final int count = 11;
+            final var query = floats(dims);
+            final var vectors = floats((first + count + 1) * dims);
+            final var scores = new float[count];
+            SimdSimilarity.dotMany(query, vectors, first, count, scores);
+            for (int i = 0; i < count; ++i) {
+                final int offset = (first + i) * dims;
+                assertEquals(ScalarSimilarity.dot(query, 0, vectors, offset, dims), scores[i],
+                        tolerance(query, 0, vectors, offset, dims), "dims=" + dims + ", vector=" + i);
+            }
+        }
+    }
+
+    private float[] floats(int length) {
+        final var v = new float[length];
+        for (int i = 0; i < length; ++i) {
+            v[i] = random.nextFloat() * 2 - 1;
+        }
+        return v;
+    }
+
+    private byte[] bytes(int length) {
+        final var v = new byte[length];
+        random.nextBytes(v);
+        return v;
+    }
+
+    private static float tolerance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += Math.abs(a[aOffset + i] * b[bOffset + i]);
+        }
+        return (float) (sum * RELATIVE_TOLERANCE) + Float.MIN_NORMAL;
+    }
+
+    private static float tolerance(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += Math.abs(a[aOffset + i] * b[bOffset + i]);
+        }
+        return (float) (sum * RELATIVE_TOLERANCE) + Float.MIN_NORMAL;
+    }
+}
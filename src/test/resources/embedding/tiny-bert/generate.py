@@ -0,0 +1,72 @@
+# Generate a tiny BERT model (random weights) used by BertEncoderTest,
+# and print reference embeddings computed with a plain Python implementation.
+# Usage: python3 generate.py (run from this directory).
+import json, struct, random, math
+random.seed(3)
+H, HEADS, L, I, P = 8, 2, 2, 16, 16
+vocab = ["[PAD]","[UNK]","[CLS]","[SEP]","the","movie","is","fun","##ny","a","good","!",",","film","play","##ing","cafe"]
+V = len(vocab)
+T = {}
+def r(*shape):
+    n=1
+    for s in shape: n*=s
+    return ([random.uniform(-0.5,0.5) for _ in range(n)], list(shape))
+T["embeddings.word_embeddings.weight"]=r(V,H)
+T["embeddings.position_embeddings.weight"]=r(P,H)
+T["embeddings.token_type_embeddings.weight"]=r(2,H)
+T["embeddings.LayerNorm.weight"]=r(H); T["embeddings.LayerNorm.bias"]=r(H)
+for l in range(L):
+    p=f"encoder.layer.{l}."
+    for n in ["attention.self.query","attention.self.key","attention.self.value","attention.output.dense"]:
+        T[p+n+".weight"]=r(H,H); T[p+n+".bias"]=r(H)
+    T[p+"attention.output.LayerNorm.weight"]=r(H); T[p+"attention.output.LayerNorm.bias"]=r(H)
+    T[p+"intermediate.dense.weight"]=r(I,H); T[p+"intermediate.dense.bias"]=r(I)
+    T[p+"output.dense.weight"]=r(H,I); T[p+"output.dense.bias"]=r(H)
+    T[p+"output.LayerNorm.weight"]=r(H); T[p+"output.LayerNorm.bias"]=r(H)
+header={}; data=b""
+for k,(vals,shape) in T.items():
+    b=struct.pack("<%df"%len(vals),*vals)
+    header[k]={"dtype":"F32","shape":shape,"data_offsets":[len(data),len(data)+len(b)]}; data+=b
+header["__metadata__"]={"format":"pt"}
+hb=json.dumps(header).encode(); hb+=b" "*((8-len(hb)%8)%8)
+open("model.safetensors","wb").write(struct.pack("<Q",len(hb))+hb+data)
+json.dump({"hidden_size":H,"num_hidden_layers":L,"num_attention_heads":HEADS,"intermediate_size":I,"max_position_embeddings":P,"layer_norm_eps":1e-12,"model_type":"bert"},open("config.json","w"))
+open("vocab.txt","w").write("\n".join(vocab)+"\n")
+# reference forward
+W={k:v[0] for k,v in T.items()}
+def lin(x,w,b,inn,out): return [[sum(row[i]*w[o*inn+i] for i in range(inn))+b[o] for o in range(out)] for row in x]
+def ln(x,w,b):
+    res=[]
+    for row in x:
+        m=sum(row)/len(row); v=sum((a-m)**2 for a in row)/len(row)
+        res.append([(a-m)/math.sqrt(v+1e-12)*w[i]+b[i] for i,a in enumerate(row)])
+    return res
+def gelu(x): return 0.5*x*(1+math.erf(x/math.sqrt(2)))
+def embed(ids):
+    x=[[W["embeddings.word_embeddings.weight"][t*H+i]+W["embeddings.position_embeddings.weight"][p*H+i]+W["embeddings.token_type_embeddings.weight"][i] for i in range(H)] for p,t in enumerate(ids)]
+    x=ln(x,W["embeddings.LayerNorm.weight"],W["embeddings.LayerNorm.bias"])
+    d=H//HEADS
+    for l in range(L):
+        p=f"encoder.layer.{l}."
+        q=lin(x,W[p+"attention.self.query.weight"],W[p+"attention.self.query.bias"],H,H)
+        k=lin(x,W[p+"attention.self.key.weight"],W[p+"attention.self.key.bias"],H,H)
+        v=lin(x,W[p+"attention.self.value.weight"],W[p+"attention.self.value.bias"],H,H)
+        ctx=[[0.0]*H for _ in ids]
+        for h in range(HEADS):
+            for i in range(len(ids)):
+                s=[sum(q[i][h*d+c]*k[j][h*d+c] for c in range(d))/math.sqrt(d) for j in range(len(ids))]
+                m=max(s); e=[math.exp(a-m) for a in s]; z=sum(e)
+                for j in range(len(ids)):
+                    for c in range(d): ctx[i][h*d+c]+=e[j]/z*v[j][h*d+c]
+        a=lin(ctx,W[p+"attention.output.dense.weight"],W[p+"attention.output.dense.bias"],H,H)
+        x=ln([[x[i][c]+a[i][c] for c in range(H)] for i in range(len(ids))],W[p+"attention.output.LayerNorm.weight"],W[p+"attention.output.LayerNorm.bias"])
+        it=[[gelu(z) for z in row] for row in lin(x,W[p+"intermediate.dense.weight"],W[p+"intermediate.dense.bias"],H,I)]
+        o=lin(it,W[p+"output.dense.weight"],W[p+"output.dense.bias"],I,H)
+        x=ln([[x[i][c]+o[i][c] for c in range(H)] for i in range(len(ids))],W[p+"output.LayerNorm.weight"],W[p+"output.LayerNorm.bias"])
+    m=[sum(x[i][c] for i in range(len(ids)))/len(ids) for c in range(H)]
+    n=math.sqrt(sum(a*a for a in m)); return [a/n for a in m]
+
+# [CLS] the movie is fun ##ny ! [SEP]
+print(" ".join("%.6f" % a for a in embed([2,4,5,6,7,8,11,3])))
+# [CLS] a good film , play ##ing ! [SEP]
+print(" ".join("%.6f" % a for a in embed([2,9,10,13,12,14,15,11,3])))